@@ -1,62 +1,309 @@
 package org.maxgamer.quickshop;
 
-import com.google.common.cache.CacheBuilder;
+import lombok.Getter;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.shop.Shop;
+import org.maxgamer.quickshop.shop.ShopIndex;
+import org.maxgamer.quickshop.util.collection.LongObjectHashMap;
 
-import java.util.concurrent.TimeUnit;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * The shop lookup cache for the events which query the same blocks again and again (hoppers, redstone).
+ * <p>
+ * Entries are grouped by world and chunk, and keyed by the packed block coordinates, so a lookup allocates nothing.
+ * The absent of shop is cached too, it is safe because the entries around a block are invalidated when a shop
+ * added or removed there, or a block placed or broken there, and all entries in a chunk are dropped when it unloaded.
+ * The least recently used entry is evicted when the cache full.
+ */
 public class Cache {
-    private final QuickShop plugin;
-    private final com.google.common.cache.Cache<Location, CacheContainer> accessCaching = CacheBuilder.newBuilder().expireAfterAccess(10, TimeUnit.SECONDS).initialCapacity(500).build();
+    private final Lookup lookup;
+
+    private final int maximumSize;
+
+    private final Map<String, LongObjectHashMap<ChunkEntries>> worlds = new HashMap<>();
+
+    /* The sentinel of the LRU list, head.next is the most recently used */
+    private final Entry head = new Entry(null, 0, null);
+
+    private int size;
+
+    /* Increased on every invalidation, a lookup raced an invalidation won't be cached */
+    private long generation;
+
+    @Getter
+    private volatile long hits;
+
+    @Getter
+    private volatile long misses;
+
+    @Getter
+    private volatile long evictions;
+
+    @Getter
+    private volatile long invalidations;
 
     public Cache(QuickShop plugin) {
-        this.plugin = plugin;
+        this(plugin.getConfig().getInt("caching-size", 10000), (location, includeAttached) -> includeAttached
+                ? plugin.getShopManager().getShopIncludeAttached(location, false)
+                : plugin.getShopManager().getShop(location));
+    }
+
+    /**
+     * Create the cache with the specified lookup, e.g a test without the plugin
+     *
+     * @param maximumSize The maximum entries, at least 16
+     * @param lookup      The lookup to fill the cache with
+     */
+    Cache(int maximumSize, @NotNull Lookup lookup) {
+        this.lookup = lookup;
+        this.maximumSize = Math.max(16, maximumSize);
+        head.prev = head;
+        head.next = head;
+    }
+
+    public synchronized long getCachingSize() {
+        return size;
     }
 
-    public long getCachingSize() {
-        return accessCaching.size();
+    public int getMaximumSize() {
+        return maximumSize;
     }
 
     @Nullable
     public Shop getCaching(@NotNull Location location, boolean includeAttached) {
-        CacheContainer container;
-            container = accessCaching.getIfPresent(location);
-        if (container == null) {
-            if (includeAttached) {
-                return plugin.getShopManager().getShopIncludeAttached(location);
-            } else {
-                return plugin.getShopManager().getShop(location);
+        final World world = location.getWorld();
+        if (world == null) {
+            return lookup.find(location, includeAttached);
+        }
+        final String worldName = world.getName();
+        final int x = location.getBlockX();
+        final int y = location.getBlockY();
+        final int z = location.getBlockZ();
+        final long startGeneration;
+        synchronized (this) {
+            final Entry entry = find(worldName, x, y, z, includeAttached);
+            if (entry != null) {
+                hits++;
+                unlink(entry);
+                linkFirst(entry);
+                return entry.shop;
+            }
+            misses++;
+            startGeneration = generation;
+        }
+        // Lookup without holding the lock, it may access the blocks
+        final Shop shop = lookup.find(location, includeAttached);
+        synchronized (this) {
+            if (generation == startGeneration) {
+                put(worldName, x, y, z, includeAttached, shop);
             }
-        }else{
-            return container.getShop();
         }
+        return shop;
     }
 
-    public void setCache(@NotNull Location location, @Nullable Shop shop) {
-        accessCaching.put(location, new CacheContainer(shop, System.currentTimeMillis()));
+    /**
+     * Cache the result of the lookup which include the attached shop
+     *
+     * @param location The location
+     * @param shop     The shop, or null if no shop there
+     * @deprecated It bypasses the invalidation guard, {@link #getCaching(Location, boolean)} fills the cache itself
+     */
+    @Deprecated
+    public synchronized void setCache(@NotNull Location location, @Nullable Shop shop) {
+        final World world = location.getWorld();
+        if (world == null) {
+            return;
+        }
+        put(world.getName(), location.getBlockX(), location.getBlockY(), location.getBlockZ(), true, shop);
+    }
+
+    /**
+     * Drop the entries at the block and its horizontal neighbours,
+     * those are all blocks may attached to a shop at the block (double chest, sign).
+     *
+     * @param world The world name
+     * @param x     Block X
+     * @param y     Block Y
+     * @param z     Block Z
+     */
+    public synchronized void invalidateAround(@NotNull String world, int x, int y, int z) {
+        generation++;
+        invalidations++;
+        final LongObjectHashMap<ChunkEntries> inWorld = worlds.get(world);
+        if (inWorld == null) {
+            return;
+        }
+        remove(inWorld, x, y, z);
+        remove(inWorld, x + 1, y, z);
+        remove(inWorld, x - 1, y, z);
+        remove(inWorld, x, y, z + 1);
+        remove(inWorld, x, y, z - 1);
     }
-}
 
-class CacheContainer {
-    private final  Shop shop;
+    /**
+     * Drop all entries in the chunk
+     *
+     * @param world  The world name
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     */
+    public synchronized void invalidateChunk(@NotNull String world, int chunkX, int chunkZ) {
+        generation++;
+        final LongObjectHashMap<ChunkEntries> inWorld = worlds.get(world);
+        if (inWorld == null) {
+            return;
+        }
+        final ChunkEntries inChunk = inWorld.remove(ShopIndex.chunkKey(chunkX, chunkZ));
+        if (inChunk == null) {
+            return;
+        }
+        invalidations++;
+        inChunk.entries.forEachValue(this::unlink);
+        size -= inChunk.entries.size();
+        if (inWorld.isEmpty()) {
+            worlds.remove(world);
+        }
+    }
 
-    private final long time;
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations++;
+        worlds.clear();
+        head.prev = head;
+        head.next = head;
+        size = 0;
+    }
 
-    public CacheContainer(Shop shop, long time) {
-        this.shop = shop;
-        this.time = time;
+    private static long entryKey(int x, int y, int z, boolean includeAttached) {
+        return (ShopIndex.blockKey(x, y, z) << 1) | (includeAttached ? 1 : 0);
     }
 
-    public long getTime() {
-        return time;
+    @Nullable
+    private Entry find(@NotNull String world, int x, int y, int z, boolean includeAttached) {
+        final LongObjectHashMap<ChunkEntries> inWorld = worlds.get(world);
+        if (inWorld == null) {
+            return null;
+        }
+        final ChunkEntries inChunk = inWorld.get(ShopIndex.chunkKey(x >> 4, z >> 4));
+        if (inChunk == null) {
+            return null;
+        }
+        return inChunk.entries.get(entryKey(x, y, z, includeAttached));
     }
-    public Shop getShop() {
-        return shop;
+
+    private void put(@NotNull String world, int x, int y, int z, boolean includeAttached, @Nullable Shop shop) {
+        final LongObjectHashMap<ChunkEntries> inWorld = worlds.computeIfAbsent(world, k -> new LongObjectHashMap<>());
+        final long chunkKey = ShopIndex.chunkKey(x >> 4, z >> 4);
+        ChunkEntries inChunk = inWorld.get(chunkKey);
+        if (inChunk == null) {
+            inChunk = new ChunkEntries(world, chunkKey);
+            inWorld.put(chunkKey, inChunk);
+        }
+        final long key = entryKey(x, y, z, includeAttached);
+        Entry entry = inChunk.entries.get(key);
+        if (entry != null) {
+            entry.shop = shop;
+            unlink(entry);
+        } else {
+            entry = new Entry(inChunk, key, shop);
+            inChunk.entries.put(key, entry);
+            size++;
+        }
+        linkFirst(entry);
+        while (size > maximumSize) {
+            evictions++;
+            remove(head.prev);
+        }
     }
 
+    private void remove(@NotNull LongObjectHashMap<ChunkEntries> inWorld, int x, int y, int z) {
+        final ChunkEntries inChunk = inWorld.get(ShopIndex.chunkKey(x >> 4, z >> 4));
+        if (inChunk == null) {
+            return;
+        }
+        Entry entry = inChunk.entries.get(entryKey(x, y, z, false));
+        if (entry != null) {
+            remove(entry);
+        }
+        entry = inChunk.entries.get(entryKey(x, y, z, true));
+        if (entry != null) {
+            remove(entry);
+        }
+    }
 
-}
+    private void remove(@NotNull Entry entry) {
+        unlink(entry);
+        final ChunkEntries inChunk = entry.owner;
+        inChunk.entries.remove(entry.key);
+        size--;
+        if (inChunk.entries.isEmpty()) {
+            final LongObjectHashMap<ChunkEntries> inWorld = worlds.get(inChunk.world);
+            if (inWorld != null) {
+                inWorld.remove(inChunk.chunkKey);
+                if (inWorld.isEmpty()) {
+                    worlds.remove(inChunk.world);
+                }
+            }
+        }
+    }
+
+    private void linkFirst(@NotNull Entry entry) {
+        entry.prev = head;
+        entry.next = head.next;
+        head.next.prev = entry;
+        head.next = entry;
+    }
+
+    private void unlink(@NotNull Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    /**
+     * Find the shop at the location without the cache
+     */
+    interface Lookup {
+        @Nullable
+        Shop find(@NotNull Location location, boolean includeAttached);
+    }
+
+    private static class ChunkEntries {
+        private final String world;
+
+        private final long chunkKey;
+
+        private final LongObjectHashMap<Entry> entries = new LongObjectHashMap<>();
+
+        private ChunkEntries(String world, long chunkKey) {
+            this.world = world;
+            this.chunkKey = chunkKey;
+        }
+    }
+
+    private static class Entry {
+        private final ChunkEntries owner;
 
+        private final long key;
+
+        @Nullable
+        private Shop shop;
+
+        private Entry prev;
+
+        private Entry next;
+
+        private Entry(ChunkEntries owner, long key, @Nullable Shop shop) {
+            this.owner = owner;
+            this.key = key;
+            this.shop = shop;
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is a part of project QuickShop, the name is ConfigSnapshot.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop;
+
+import lombok.Getter;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.maxgamer.quickshop.shop.DisplayType;
+
+/**
+ * The immutable snapshot of the settings read on hot paths (events, trading, messages).
+ * <p>
+ * Built once when the config loaded and published by QuickShop as a whole,
+ * so the hot code reads final fields instead of looking up the config by path every time.
+ * Use {@link QuickShop#refreshConfigSnapshot()} after changing these settings in memory.
+ */
+@Getter
+public final class ConfigSnapshot {
+    @NotNull
+    private final DisplayType displayType;
+
+    private final boolean interactSwitchMode;
+
+    private final boolean sneakToTrade;
+
+    private final boolean sneakToCreate;
+
+    private final boolean sneakToControl;
+
+    private final boolean disableQuickCreate;
+
+    private final boolean payUnlimitedShopOwners;
+
+    private final boolean ignoreUnlimitedShopMessages;
+
+    private final boolean disableCreativeModeTrading;
+
+    @NotNull
+    private final String wordForTradeAllItems;
+
+    private final double tax;
+
+    private final boolean showTax;
+
+    private final boolean useDecimalFormat;
+
+    private final boolean respectItemFlag;
+
+    private final boolean placeHolderAPI;
+
+    private final boolean soundOnClick;
+
+    private final boolean protectHopper;
+
+    private final boolean protectExplode;
+
+    private final boolean protectEntity;
+
+    private final boolean updateSignWhenInventoryMoving;
+
+    private final boolean locketteEnable;
+
+    @Nullable
+    private final String lockettePrivate;
+
+    @Nullable
+    private final String locketteMoreUsers;
+
+    public ConfigSnapshot(@NotNull FileConfiguration config) {
+        this.displayType = DisplayType.fromID(config.getInt("shop.display-type"));
+        this.interactSwitchMode = config.getBoolean("shop.interact.switch-mode");
+        this.sneakToTrade = config.getBoolean("shop.interact.sneak-to-trade");
+        this.sneakToCreate = config.getBoolean("shop.interact.sneak-to-create");
+        this.sneakToControl = config.getBoolean("shop.interact.sneak-to-control");
+        this.disableQuickCreate = config.getBoolean("shop.disable-quick-create");
+        this.payUnlimitedShopOwners = config.getBoolean("shop.pay-unlimited-shop-owners");
+        this.ignoreUnlimitedShopMessages = config.getBoolean("shop.ignore-unlimited-shop-messages");
+        this.disableCreativeModeTrading = config.getBoolean("shop.disable-creative-mode-trading");
+        this.wordForTradeAllItems = config.getString("shop.word-for-trade-all-items", "all");
+        this.tax = config.getDouble("tax");
+        this.showTax = config.getBoolean("show-tax");
+        this.useDecimalFormat = config.getBoolean("use-decimal-format");
+        this.respectItemFlag = config.getBoolean("respect-item-flag");
+        this.placeHolderAPI = config.getBoolean("plugin.PlaceHolderAPI");
+        this.soundOnClick = config.getBoolean("effect.sound.onclick");
+        this.protectHopper = config.getBoolean("protect.hopper");
+        this.protectExplode = config.getBoolean("protect.explode");
+        this.protectEntity = config.getBoolean("protect.entity");
+        this.updateSignWhenInventoryMoving = config.getBoolean("shop.update-sign-when-inventory-moving", true);
+        this.locketteEnable = config.getBoolean("lockette.enable");
+        this.lockettePrivate = config.getString("lockette.private");
+        this.locketteMoreUsers = config.getString("lockette.more_users");
+    }
+
+}
@@ -131,6 +131,11 @@ public class QuickShop extends JavaPlugin {
     private boolean display = true;
     @Getter
     private int displayItemCheckTicks;
+    /**
+     * The typed settings for hot paths, replaced as a whole when config reloaded
+     */
+    @Nullable
+    private volatile ConfigSnapshot configSnapshot;
     @Getter
     private DisplayWatcher displayWatcher;
     /**
@@ -224,6 +229,9 @@ public class QuickShop extends JavaPlugin {
     @Getter
     private SignUpdateWatcher signUpdateWatcher;
 
+    @Getter
+    private TradeNotificationWatcher tradeNotificationWatcher;
+
     @Getter
     private ShopContainerWatcher shopContainerWatcher;
 
@@ -467,6 +475,32 @@ public class QuickShop extends JavaPlugin {
         this.getLogWatcher().log(s);
     }
 
+    /**
+     * Gets the typed snapshot of the settings used in hot paths
+     *
+     * @return The config snapshot
+     */
+    @NotNull
+    public ConfigSnapshot getConfigSnapshot() {
+        ConfigSnapshot snapshot = this.configSnapshot;
+        if (snapshot == null) {
+            snapshot = refreshConfigSnapshot();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Build the config snapshot from current config and publish it
+     *
+     * @return The new snapshot
+     */
+    @NotNull
+    public ConfigSnapshot refreshConfigSnapshot() {
+        final ConfigSnapshot snapshot = new ConfigSnapshot(getConfig());
+        this.configSnapshot = snapshot;
+        return snapshot;
+    }
+
     /**
      * Reloads QuickShops config
      */
@@ -483,7 +517,11 @@ public class QuickShop extends JavaPlugin {
         this.priceChangeRequiresFee = this.getConfig().getBoolean("shop.price-change-requires-fee");
         this.displayItemCheckTicks = this.getConfig().getInt("shop.display-items-check-ticks");
         this.allowStack = this.getConfig().getBoolean("shop.allow-stacks");
+        refreshConfigSnapshot();
         language = new Language(this); // Init locale
+        if (logWatcher != null) {
+            logWatcher.close(); // Release the file, it will be opened again if still enabled
+        }
         if (this.getConfig().getBoolean("log-actions")) {
             logWatcher = new LogWatcher(this, new File(getDataFolder(), "qs.log"));
         } else {
@@ -541,6 +579,10 @@ public class QuickShop extends JavaPlugin {
             // ignore, we didn't care that
         }
 
+        if (tradeNotificationWatcher != null) {
+            tradeNotificationWatcher.flushAll(); // Save the pending notifications before the database closed
+        }
+
         Util.debugLog("Cleaning up database queues...");
         if (this.getDatabaseManager() != null) {
             this.getDatabaseManager().unInit();
@@ -552,6 +594,9 @@ public class QuickShop extends JavaPlugin {
         if (logWatcher != null) {
             logWatcher.close(); // Closes the file
         }
+        if (permissionManager != null) {
+            permissionManager.close();
+        }
         /* Unload UpdateWatcher */
         UpdateWatcher.uninit();
         Util.debugLog("Cleaning up resources and unloading all shops...");
@@ -663,7 +708,8 @@ public class QuickShop extends JavaPlugin {
             if (getConfig().getBoolean("shop.display-auto-despawn")) {
                 this.enabledAsyncDisplayDespawn = true;
                 this.displayAutoDespawnWatcher = new DisplayAutoDespawnWatcher(this);
-                this.displayAutoDespawnWatcher.runTaskTimerAsynchronously(this, 20, getConfig().getInt("shop.display-check-time")); // not worth async
+                // Runs every tick, the passes are spread across ticks by the watcher itself
+                this.displayAutoDespawnWatcher.runTaskTimer(this, 20, 1);
             }
         }
         this.shopManager = new ShopManager(this);
@@ -688,7 +734,8 @@ public class QuickShop extends JavaPlugin {
             this.shopCache = null;
         }
 
-        signUpdateWatcher = new SignUpdateWatcher();
+        signUpdateWatcher = new SignUpdateWatcher(this);
+        tradeNotificationWatcher = new TradeNotificationWatcher(this);
         shopContainerWatcher = new ShopContainerWatcher();
         if (display && DisplayItem.getNowUsing() != DisplayType.VIRTUALITEM) {
             displayDupeRemoverWatcher = new DisplayDupeRemoverWatcher();
@@ -709,6 +756,8 @@ public class QuickShop extends JavaPlugin {
         new ChunkListener(this).register();
         new CustomInventoryListener(this).register();
         new ShopProtectionListener(this, this.shopCache).register();
+        new StockCacheListener(this).register();
+        new PermissionCacheListener(this).register();
 
         syncTaskWatcher = new SyncTaskWatcher(this);
         // shopVaildWatcher = new ShopVaildWatcher(this);
@@ -734,7 +783,6 @@ public class QuickShop extends JavaPlugin {
             ;
         }
         getLogger().info("Cleaning MsgUtils...");
-        MsgUtil.loadTransactionMessages();
         MsgUtil.clean();
 
         getLogger().info("Registering UpdateWatcher...");
@@ -752,6 +800,7 @@ public class QuickShop extends JavaPlugin {
         Util.debugLog("Registering shop watcher...");
         // shopVaildWatcher.runTaskTimer(this, 0, 20 * 60); // Nobody use it
         signUpdateWatcher.runTaskTimer(this, 0, 10);
+        tradeNotificationWatcher.runTaskTimer(this, 20, 20);
         shopContainerWatcher.runTaskTimer(this, 0, 5); // Nobody use it
         if (display && DisplayItem.getNowUsing() != DisplayType.VIRTUALITEM) {
             displayDupeRemoverWatcher.runTaskTimerAsynchronously(this, 0, 1);
@@ -1600,6 +1649,73 @@ public class QuickShop extends JavaPlugin {
             getConfig().set("config-version", 108);
             selectedVersion = 108;
         }
+        if (selectedVersion == 108) {
+            getConfig().set("database.queue-batch-size", 500);
+            getConfig().set("config-version", 109);
+            selectedVersion = 109;
+        }
+        if (selectedVersion == 109) {
+            getConfig().set("database.pool.min-idle", 2);
+            getConfig().set("database.pool.max-size", 8);
+            getConfig().set("database.pool.borrow-timeout", 5000);
+            getConfig().set("database.pool.validation-interval", 30000);
+            getConfig().set("database.pool.leak-threshold", 60000);
+            getConfig().set("config-version", 110);
+            selectedVersion = 110;
+        }
+        if (selectedVersion == 110) {
+            getConfig().set("shop.loading.fetch-size", 1000);
+            getConfig().set("shop.loading.decode-threads", 0);
+            getConfig().set("shop.loading.materialize-budget", 10);
+            getConfig().set("config-version", 111);
+            selectedVersion = 111;
+        }
+        if (selectedVersion == 111) {
+            getConfig().set("shop.display-despawn-budget", 2);
+            getConfig().set("config-version", 112);
+            selectedVersion = 112;
+        }
+        if (selectedVersion == 112) {
+            getConfig().set("shop.display-items-check-budget", 2000000);
+            getConfig().set("config-version", 113);
+            selectedVersion = 113;
+        }
+        if (selectedVersion == 113) {
+            getConfig().set("shop.sign-update-budget", 2);
+            getConfig().set("config-version", 114);
+            selectedVersion = 114;
+        }
+        if (selectedVersion == 114) {
+            getConfig().set("log-actions-rotate-size", 16);
+            getConfig().set("log-actions-compress", true);
+            getConfig().set("config-version", 115);
+            selectedVersion = 115;
+        }
+        if (selectedVersion == 115) {
+            getConfig().set("caching-size", 10000);
+            getConfig().set("config-version", 116);
+            selectedVersion = 116;
+        }
+        if (selectedVersion == 116) {
+            getConfig().set("permission-cache-ttl", 3000);
+            getConfig().set("config-version", 117);
+            selectedVersion = 117;
+        }
+        if (selectedVersion == 117) {
+            getConfig().set("shop.find-results", 5);
+            getConfig().set("config-version", 118);
+            selectedVersion = 118;
+        }
+        if (selectedVersion == 118) {
+            getConfig().set("shop.offline-messages-limit", 20);
+            getConfig().set("config-version", 119);
+            selectedVersion = 119;
+        }
+        if (selectedVersion == 119) {
+            getConfig().set("shop.trade-notification-window", 5);
+            getConfig().set("config-version", 120);
+            selectedVersion = 120;
+        }
 
 
         saveConfig();
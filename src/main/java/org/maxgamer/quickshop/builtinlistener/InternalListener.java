@@ -25,7 +25,6 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.event.*;
-import org.maxgamer.quickshop.shop.ShopType;
 
 @AllArgsConstructor
 public class InternalListener implements Listener {
@@ -67,38 +66,8 @@ public class InternalListener implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void shopPurchase(ShopSuccessPurchaseEvent event) {
-        if (event.getShop().getShopType() == ShopType.BUYING) {
-            plugin.log(
-                    "Player "
-                            + event.getPlayer().getName()
-                            + " sold "
-                            + event.getShop().ownerName()
-                            + " shop "
-                            + event.getShop()
-                            + " for items x"
-                            + event.getAmount()
-                            + " for "
-                            + plugin.getEconomy().format(event.getBalance())
-                            + " ("
-                            + plugin.getEconomy().format(event.getTax())
-                            + " tax).");
-        }
-        if (event.getShop().getShopType() == ShopType.SELLING) {
-            plugin.log(
-                    "Player "
-                            + event.getPlayer().getName()
-                            + " bought "
-                            + event.getShop().ownerName()
-                            + " shop "
-                            + event.getShop()
-                            + " for items x"
-                            + event.getAmount()
-                            + " for "
-                            + plugin.getEconomy().format(event.getBalance())
-                            + " ("
-                            + plugin.getEconomy().format(event.getTax())
-                            + " tax).");
-
+        if (plugin.getLogWatcher() != null) {
+            plugin.getLogWatcher().logTransaction(event.getShop(), event.getPlayer(), event.getAmount(), event.getBalance(), event.getTax());
         }
         plugin.log("Player " + event.getPlayer().getName() + " had " + plugin.getEconomy().getBalance(event.getPlayer().getUniqueId()) + " after trading.");
     }
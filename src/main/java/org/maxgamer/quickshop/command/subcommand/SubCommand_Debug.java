@@ -27,6 +27,8 @@ import org.bukkit.plugin.RegisteredListener;
 import org.jetbrains.annotations.NotNull;
 import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.command.CommandProcesser;
+import org.maxgamer.quickshop.database.ConnectionPool;
+import org.maxgamer.quickshop.database.DatabaseManager;
 import org.maxgamer.quickshop.util.MsgUtil;
 import org.maxgamer.quickshop.util.Util;
 
@@ -39,7 +41,7 @@ import java.util.*;
 public class SubCommand_Debug implements CommandProcesser {
 
     private final QuickShop plugin;
-    private final List<String> tabCompleteList = Collections.unmodifiableList(Arrays.asList("debug", "dev", "devmode", "handlerlist", "jvm"));
+    private final List<String> tabCompleteList = Collections.unmodifiableList(Arrays.asList("debug", "dev", "devmode", "handlerlist", "jvm", "database", "permission"));
 
     @Override
     public void onCommand(
@@ -82,6 +84,14 @@ public class SubCommand_Debug implements CommandProcesser {
                 MsgUtil.sendMessage(sender,
                         ChatColor.GOLD + "Sys Pro: " + ChatColor.AQUA + Util.list2String(sysData));
                 break;
+            case "database":
+                printDatabaseStatus(sender);
+                break;
+            case "permission":
+                final String stats = QuickShop.getPermissionManager().getCacheStats();
+                MsgUtil.sendMessage(sender,
+                        ChatColor.GOLD + "Permission Cache: " + ChatColor.AQUA + (stats == null ? "Disabled" : stats));
+                break;
             default:
                 MsgUtil.sendMessage(sender, "Error, no correct args given.");
                 break;
@@ -114,6 +124,26 @@ public class SubCommand_Debug implements CommandProcesser {
         MsgUtil.sendMessage(sender, MsgUtil.getMessage("command.now-debuging", sender));
     }
 
+    public void printDatabaseStatus(@NotNull CommandSender sender) {
+        final DatabaseManager databaseManager = plugin.getDatabaseManager();
+        if (databaseManager == null) {
+            MsgUtil.sendMessage(sender, "Database not initialized.");
+            return;
+        }
+        MsgUtil.sendMessage(sender,
+                ChatColor.GOLD + "Core: " + ChatColor.AQUA + plugin.getDatabase().getCore().getName());
+        MsgUtil.sendMessage(sender,
+                ChatColor.GOLD + "Queue Depth: " + ChatColor.AQUA + databaseManager.getQueueDepth());
+        MsgUtil.sendMessage(sender,
+                ChatColor.GOLD + "Last Flush: " + ChatColor.AQUA + databaseManager.getLastFlushTasks() + " tasks in "
+                        + databaseManager.getLastFlushBatches() + " batches, took " + databaseManager.getLastFlushLatency() + "ms");
+        MsgUtil.sendMessage(sender,
+                ChatColor.GOLD + "Coalesced Pending: " + ChatColor.AQUA + databaseManager.getCoalescedPending());
+        final ConnectionPool pool = plugin.getDatabase().getCore().getConnectionPool();
+        MsgUtil.sendMessage(sender,
+                ChatColor.GOLD + "Connection Pool: " + ChatColor.AQUA + (pool == null ? "None" : pool.getStatus()));
+    }
+
     public void printHandlerList(@NotNull CommandSender sender, String event) {
         try {
             final Class<?> clazz = Class.forName(event);
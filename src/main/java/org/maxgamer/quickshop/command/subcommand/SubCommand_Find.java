@@ -20,7 +20,6 @@
 package org.maxgamer.quickshop.command.subcommand;
 
 import lombok.AllArgsConstructor;
-import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -32,8 +31,9 @@ import org.maxgamer.quickshop.shop.Shop;
 import org.maxgamer.quickshop.util.MsgUtil;
 import org.maxgamer.quickshop.util.Util;
 
-import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 @AllArgsConstructor
 public class SubCommand_Find implements CommandProcesser {
@@ -59,65 +59,66 @@ public class SubCommand_Find implements CommandProcesser {
             sb.append(" ").append(cmdArg[i]);
         }
 
-        final String lookFor = sb.toString().toLowerCase();
+        final String lookFor = sb.toString();
         final Player p = (Player) sender;
         final Location loc = p.getEyeLocation().clone();
-        final double minDistance = plugin.getConfig().getInt("shop.find-distance");
-        double minDistanceSquared = minDistance * minDistance;
-        final int chunkRadius = (int) minDistance / 16 + 1;
-        Shop closest = null;
-        CompletableFuture<Chunk> future = new CompletableFuture<>();
-        plugin.getBukkitAPIWrapper().getChunkAt(loc.getWorld(), loc, future);
-        final Chunk c;
-        try {
-            c = future.get();
-        } catch (Exception asyncErr) {
-            MsgUtil.sendMessage(sender, "Cannot execute the command, see console for details.");
-            plugin.getSentryErrorReporter().sendError(asyncErr, "Unknown errors");
-            plugin.getSentryErrorReporter().ignoreThrow();
-            asyncErr.printStackTrace();
-            return;
-        }
-        for (int x = -chunkRadius + c.getX(); x < chunkRadius + c.getX(); x++) {
-            for (int z = -chunkRadius + c.getZ(); z < chunkRadius + c.getZ(); z++) {
-                final Chunk d = c.getWorld().getChunkAt(x, z);
-                final Map<Location, Shop> inChunk = plugin.getShopManager().getShops(d);
-
-                if (inChunk == null) {
-                    continue;
-                }
-
-                for (Shop shop : inChunk.values()) {
-                    if (!Util.getItemStackName(shop.getItem()).toLowerCase().contains(lookFor)) {
-                        continue;
-                    }
-
-                    if (shop.getLocation().distanceSquared(loc) >= minDistanceSquared) {
-                        continue;
-                    }
+        final double maxDistance = plugin.getConfig().getInt("shop.find-distance");
+        final int limit = Math.max(1, plugin.getConfig().getInt("shop.find-results", 5));
+        // Search from the shop index, no chunk will be loaded, so it can be done off the main thread
+        plugin
+                .getServer()
+                .getScheduler()
+                .runTaskAsynchronously(
+                        plugin,
+                        () -> {
+                            final Set<Shop> matched = plugin.getShopManager().searchShopsByItemName(lookFor);
+                            final List<Shop> nearest = matched.isEmpty()
+                                    ? Collections.emptyList()
+                                    : plugin.getShopManager().findNearestShops(loc, maxDistance, limit, matched::contains);
+                            plugin
+                                    .getServer()
+                                    .getScheduler()
+                                    .runTask(plugin, () -> sendResults(p, loc, cmdArg[0], nearest));
+                        });
+    }
 
-                    closest = shop;
-                    minDistanceSquared = shop.getLocation().distanceSquared(loc);
-                }
-            }
+    private void sendResults(@NotNull Player p, @NotNull Location loc, @NotNull String lookFor, @NotNull List<Shop> nearest) {
+        if (!p.isOnline()) {
+            return;
         }
-
-        if (closest == null) {
-            MsgUtil.sendMessage(sender, MsgUtil.getMessage("no-nearby-shop", sender, cmdArg[0]));
+        if (nearest.isEmpty()) {
+            MsgUtil.sendMessage(p, MsgUtil.getMessage("no-nearby-shop", p, lookFor));
             return;
         }
-
+        final Shop closest = nearest.get(0);
         final Location lookat = closest.getLocation().clone().add(0.5, 0.5, 0.5);
         // Hack fix to make /qs find not used by /back
         plugin
                 .getBukkitAPIWrapper()
                 .teleportEntity(
                         p,
-                        Util.lookAt(loc, lookat).add(0, -1.62, 0),
+                        Util.lookAt(p.getEyeLocation(), lookat).add(0, -1.62, 0),
                         PlayerTeleportEvent.TeleportCause.UNKNOWN);
         MsgUtil.sendMessage(p,
                 MsgUtil.getMessage(
-                        "nearby-shop-this-way", sender, Integer.toString((int) Math.floor(Math.sqrt(minDistanceSquared)))));
+                        "nearby-shop-this-way", p, Integer.toString(distance(closest, loc))));
+        if (nearest.size() < 2) {
+            return;
+        }
+        for (Shop shop : nearest) {
+            final Location shopLoc = shop.getLocation();
+            MsgUtil.sendMessage(p,
+                    MsgUtil.getMessage("nearby-shop-entry", p,
+                            Util.getItemStackName(shop.getItem()),
+                            Integer.toString(shopLoc.getBlockX()),
+                            Integer.toString(shopLoc.getBlockY()),
+                            Integer.toString(shopLoc.getBlockZ()),
+                            Integer.toString(distance(shop, loc))));
+        }
+    }
+
+    private static int distance(@NotNull Shop shop, @NotNull Location loc) {
+        return (int) Math.floor(Math.sqrt(shop.getLocation().distanceSquared(loc)));
     }
 
 }
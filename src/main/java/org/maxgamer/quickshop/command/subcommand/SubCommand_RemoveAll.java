@@ -10,7 +10,6 @@ import org.maxgamer.quickshop.command.CommandProcesser;
 import org.maxgamer.quickshop.shop.Shop;
 import org.maxgamer.quickshop.util.MsgUtil;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -23,8 +22,6 @@ public class SubCommand_RemoveAll implements CommandProcesser {
     @Override
     public void onCommand(@NotNull CommandSender sender, @NotNull String commandLabel, @NotNull String[] cmdArg) {
         if (cmdArg.length == 1) {
-            //copy it first
-            List<Shop> tempList = new ArrayList<>(plugin.getShopManager().getAllShops());
             OfflinePlayer shopOwner = null;
             for (OfflinePlayer player : plugin.getServer().getOfflinePlayers()) {
                 if (player.getName() != null && player.getName().equalsIgnoreCase(cmdArg[0])) {
@@ -37,12 +34,11 @@ public class SubCommand_RemoveAll implements CommandProcesser {
                 return;
             }
             int i = 0;
-            for (Shop shop : tempList) {
-                if (shop.getOwner().equals(shopOwner.getUniqueId())) {
-                    plugin.log("Deleting shop "+shop+" request by /qs removeall command.");
-                    shop.delete();
-                    i++;
-                }
+            //it is a copy, so we can delete while iterating
+            for (Shop shop : plugin.getShopManager().getPlayerAllShops(shopOwner.getUniqueId())) {
+                plugin.log("Deleting shop "+shop+" request by /qs removeall command.");
+                shop.delete();
+                i++;
             }
 
             MsgUtil.sendMessage(sender, MsgUtil.getMessage("command.some-shops-removed", sender, Integer.toString(i)));
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import org.bukkit.block.Block;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
 import org.bukkit.util.BlockIterator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -52,8 +53,10 @@ public class SubCommand_Size implements CommandProcesser {
                         MsgUtil.sendMessage(sender, MsgUtil.getMessage("command.invalid-bulk-amount", sender, Integer.toString(amount)));
                         return;
                     }
-                    shop.getItem().setAmount(amount);
-                    shop.refresh();
+                    // Set a new item, so the match key and stock cache of the shop are refreshed
+                    final ItemStack pendingItemStack = shop.getItem().clone();
+                    pendingItemStack.setAmount(amount);
+                    shop.setItem(pendingItemStack);
                     MsgUtil.sendMessage(sender, MsgUtil.getMessage("command.bulk-size-now", sender, Integer.toString(shop.getItem().getAmount()), Util.getItemStackName(shop.getItem())));
                     return;
                 } else {
@@ -0,0 +1,421 @@
+/*
+ * This file is a part of project QuickShop, the name is ConnectionPool.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.database;
+
+import org.jetbrains.annotations.NotNull;
+import org.maxgamer.quickshop.util.Util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded JDBC connection pool.
+ * <p>
+ * Connections are validated when borrowed only if they were idle longer than the validation interval,
+ * borrowing waits at most the borrow timeout, and connections held longer than the leak threshold are reported.
+ */
+public class ConnectionPool {
+    private final ConnectionFactory factory;
+
+    private final Logger logger;
+
+    private final int minIdle;
+
+    private final int maxSize;
+
+    private final long borrowTimeoutMillis;
+
+    private final long validationIntervalMillis;
+
+    private final long leakThresholdMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition available = lock.newCondition();
+
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+
+    private final Map<Connection, Lease> leases = new IdentityHashMap<>();
+
+    private final AtomicLong totalBorrows = new AtomicLong();
+
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private final AtomicLong created = new AtomicLong();
+
+    private final AtomicLong validationFailures = new AtomicLong();
+
+    private final AtomicLong leaks = new AtomicLong();
+
+    /**
+     * Connections created or being created, include idle and borrowed
+     */
+    private int total;
+
+    private int waiting;
+
+    private boolean closed;
+
+    /**
+     * Create a connection pool
+     *
+     * @param factory                  The factory to open new connections
+     * @param logger                   The logger to report leaks
+     * @param minIdle                  How many connections should be opened when pool created
+     * @param maxSize                  The max connections can be opened
+     * @param borrowTimeoutMillis      How long to wait a connection when the pool exhausted
+     * @param validationIntervalMillis Validate the connection when borrowing if it idle longer than this
+     * @param leakThresholdMillis      Report the connection which borrowed longer than this, 0 to disable
+     */
+    public ConnectionPool(@NotNull ConnectionFactory factory, @NotNull Logger logger, int minIdle, int maxSize,
+                          long borrowTimeoutMillis, long validationIntervalMillis, long leakThresholdMillis) {
+        this.factory = factory;
+        this.logger = logger;
+        this.maxSize = Math.max(1, maxSize);
+        this.minIdle = Math.max(0, Math.min(minIdle, this.maxSize));
+        this.borrowTimeoutMillis = Math.max(0, borrowTimeoutMillis);
+        this.validationIntervalMillis = Math.max(0, validationIntervalMillis);
+        this.leakThresholdMillis = Math.max(0, leakThresholdMillis);
+        for (int i = 0; i < this.minIdle; i++) {
+            try {
+                final Connection connection = factory.create();
+                created.incrementAndGet();
+                lock.lock();
+                try {
+                    total++;
+                    idle.push(new IdleConnection(connection));
+                } finally {
+                    lock.unlock();
+                }
+            } catch (SQLException e) {
+                logger.log(Level.WARNING, "Failed to open the initial database connections", e);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Borrow a connection, must give it back by release(Connection) after using.
+     *
+     * @return The connection
+     * @throws SQLException Failed to open a connection or timed out
+     */
+    @NotNull
+    public Connection borrow() throws SQLException {
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        checkLeaks();
+        while (true) {
+            IdleConnection candidate = null;
+            boolean create = false;
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("The connection pool was closed");
+                    }
+                    candidate = idle.poll();
+                    if (candidate != null) {
+                        break;
+                    }
+                    if (total < maxSize) {
+                        // Reserve the slot, open the connection outside the lock
+                        total++;
+                        create = true;
+                        break;
+                    }
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeouts.incrementAndGet();
+                        throw new SQLException("Timed out after " + borrowTimeoutMillis + "ms waiting for a database connection, " + getStatus());
+                    }
+                    waiting++;
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection", e);
+                    } finally {
+                        waiting--;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            Connection connection;
+            if (create) {
+                try {
+                    connection = factory.create();
+                    created.incrementAndGet();
+                } catch (SQLException e) {
+                    discard(null);
+                    throw e;
+                }
+            } else {
+                connection = candidate.connection;
+                if (System.currentTimeMillis() - candidate.idleSince > validationIntervalMillis && !isValid(connection)) {
+                    validationFailures.incrementAndGet();
+                    Util.debugLog("Discard the invalid database connection from the pool.");
+                    discard(connection);
+                    continue;
+                }
+            }
+            lock.lock();
+            try {
+                leases.put(connection, new Lease());
+            } finally {
+                lock.unlock();
+            }
+            final long waited = System.nanoTime() - start;
+            totalBorrows.incrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            return connection;
+        }
+    }
+
+    /**
+     * Give back the borrowed connection
+     *
+     * @param connection The connection
+     * @param broken     Is the connection broken, e.g it thrown a SQLException. Broken connection will be validated.
+     */
+    public void release(@NotNull Connection connection, boolean broken) {
+        lock.lock();
+        try {
+            if (leases.remove(connection) == null) {
+                return; // Not borrowed from this pool or already released
+            }
+        } finally {
+            lock.unlock();
+        }
+        boolean usable;
+        try {
+            usable = !connection.isClosed() && (!broken || isValid(connection));
+            if (usable && !connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            usable = false;
+        }
+        if (!usable) {
+            discard(connection);
+            return;
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                total--;
+                closeQuietly(connection);
+                return;
+            }
+            idle.push(new IdleConnection(connection));
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isValid(@NotNull Connection connection) {
+        try {
+            return connection.isValid(3);
+        } catch (SQLException | AbstractMethodError e) {
+            return false;
+        }
+    }
+
+    private void discard(Connection connection) {
+        if (connection != null) {
+            closeQuietly(connection);
+        }
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeQuietly(@NotNull Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * Report the connections borrowed longer than leak threshold, every connection only report once.
+     */
+    public void checkLeaks() {
+        if (leakThresholdMillis <= 0) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            for (Lease lease : leases.values()) {
+                if (!lease.reported && now - lease.borrowedAt > leakThresholdMillis) {
+                    lease.reported = true;
+                    leaks.incrementAndGet();
+                    logger.log(Level.WARNING, "A database connection was borrowed by thread " + lease.thread + " " + (now - lease.borrowedAt) + "ms ago and not given back, it may leaked.", lease.trace);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close all idle connections, the borrowed connections will be closed when they released.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            IdleConnection idleConnection;
+            while ((idleConnection = idle.poll()) != null) {
+                total--;
+                closeQuietly(idleConnection.connection);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getActive() {
+        lock.lock();
+        try {
+            return leases.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdle() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getTotalBorrows() {
+        return totalBorrows.get();
+    }
+
+    /**
+     * @return The average time in milliseconds to borrow a connection
+     */
+    public double getAverageWaitMillis() {
+        final long borrows = totalBorrows.get();
+        return borrows == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / borrows;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getCreated() {
+        return created.get();
+    }
+
+    public long getValidationFailures() {
+        return validationFailures.get();
+    }
+
+    public long getLeaks() {
+        return leaks.get();
+    }
+
+    /**
+     * @return The one line summary of this pool
+     */
+    @NotNull
+    public String getStatus() {
+        return "active=" + getActive()
+                + ", idle=" + getIdle()
+                + ", waiting=" + getWaiting()
+                + ", max=" + maxSize
+                + ", borrows=" + getTotalBorrows()
+                + ", avgWait=" + String.format("%.2f", getAverageWaitMillis()) + "ms"
+                + ", maxWait=" + String.format("%.2f", getMaxWaitMillis()) + "ms"
+                + ", timeouts=" + getTimeouts()
+                + ", created=" + getCreated()
+                + ", invalid=" + getValidationFailures()
+                + ", leaks=" + getLeaks();
+    }
+
+    public interface ConnectionFactory {
+        @NotNull Connection create() throws SQLException;
+    }
+
+    private static class IdleConnection {
+        private final Connection connection;
+
+        private final long idleSince = System.currentTimeMillis();
+
+        private IdleConnection(@NotNull Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    private static class Lease {
+        private final long borrowedAt = System.currentTimeMillis();
+
+        private final String thread = Thread.currentThread().getName();
+
+        private final Throwable trace = Util.isDevMode() ? new Throwable("Borrowed at") : null;
+
+        private boolean reported;
+    }
+
+}
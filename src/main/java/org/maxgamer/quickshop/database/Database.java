@@ -130,6 +130,27 @@ public class Database {
         return core.getConnection();
     }
 
+    /**
+     * Borrow a connection from the core, must give it back by returnConnection
+     *
+     * @return The connection
+     * @throws SQLException No connection available
+     */
+    @NotNull
+    public Connection borrowConnection() throws SQLException {
+        return core.borrowConnection();
+    }
+
+    /**
+     * Give back the connection borrowed by borrowConnection
+     *
+     * @param connection The connection
+     * @param broken     Is the connection thrown SQLException while using
+     */
+    public void returnConnection(@NotNull Connection connection, boolean broken) {
+        core.returnConnection(connection, broken);
+    }
+
     /**
      * Returns the database core object, that this database runs on.
      *
@@ -21,8 +21,10 @@ package org.maxgamer.quickshop.database;
 
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 
 public interface DatabaseCore {
 
@@ -34,6 +36,40 @@ public interface DatabaseCore {
 
     Connection getConnection();
 
+    /**
+     * Borrow a connection for a while, the caller must give it back by returnConnection after using.
+     *
+     * @return The connection
+     * @throws SQLException No connection available
+     */
+    @NotNull
+    default Connection borrowConnection() throws SQLException {
+        Connection connection = getConnection();
+        if (connection == null) {
+            throw new SQLException("No database connection available");
+        }
+        return connection;
+    }
+
+    /**
+     * Give back the connection borrowed by borrowConnection
+     *
+     * @param connection The connection
+     * @param broken     Is the connection thrown SQLException while using
+     */
+    default void returnConnection(@NotNull Connection connection, boolean broken) {
+    }
+
+    /**
+     * Gets the connection pool used by this core
+     *
+     * @return The connection pool, null if this core not using a pool
+     */
+    @Nullable
+    default ConnectionPool getConnectionPool() {
+        return null;
+    }
+
     @NotNull String getName();
 
     @NotNull Plugin getPlugin();
@@ -19,6 +19,7 @@
 
 package org.maxgamer.quickshop.database;
 
+import lombok.Getter;
 import org.bukkit.Location;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
@@ -28,10 +29,16 @@ import org.maxgamer.quickshop.shop.Shop;
 import org.maxgamer.quickshop.shop.ShopModerator;
 import org.maxgamer.quickshop.util.Util;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
 import java.util.UUID;
 import java.util.function.Consumer;
 
@@ -39,6 +46,14 @@ import java.util.function.Consumer;
  * A Util to execute all SQLs.
  */
 public class DatabaseHelper {
+    /* The columns of the shops table can be updated, used as the bit flags */
+    public static final int SHOP_COLUMN_OWNER = 1;
+    public static final int SHOP_COLUMN_ITEM = 1 << 1;
+    public static final int SHOP_COLUMN_UNLIMITED = 1 << 2;
+    public static final int SHOP_COLUMN_TYPE = 1 << 3;
+    public static final int SHOP_COLUMN_PRICE = 1 << 4;
+    public static final int SHOP_COLUMN_EXTRA = 1 << 5;
+    public static final int SHOP_COLUMN_ALL = (1 << 6) - 1;
 
     @NotNull
     private final Database db;
@@ -136,6 +151,25 @@ public class DatabaseHelper {
                 //ignore
             }
         }
+        // The primary key starts with x, it can't be used by the per-world loading
+        // MySQL doesn't support IF NOT EXISTS for the indexes
+        try (PreparedStatement indexPs = db.getConnection().prepareStatement("CREATE INDEX "
+                + (plugin.getDatabase().getCore() instanceof MySQLCore ? "" : "IF NOT EXISTS ")
+                + plugin.getDbPrefix() + "shops_world ON " + plugin.getDbPrefix() + "shops (world, x, y, z)")) {
+            indexPs.execute();
+        } catch (SQLException e) {
+            //ignore, already exists
+            Util.debugLog("Skipped to create the world index: " + e.getMessage());
+        }
+        // The messages are loaded per player when joined
+        try (PreparedStatement indexPs = db.getConnection().prepareStatement("CREATE INDEX "
+                + (plugin.getDatabase().getCore() instanceof MySQLCore ? "" : "IF NOT EXISTS ")
+                + plugin.getDbPrefix() + "messages_owner ON " + plugin.getDbPrefix() + "messages (owner, time)")) {
+            indexPs.execute();
+        } catch (SQLException e) {
+            //ignore, already exists
+            Util.debugLog("Skipped to create the messages index: " + e.getMessage());
+        }
 
     }
 
@@ -152,6 +186,77 @@ public class DatabaseHelper {
         plugin.getDatabaseManager().add(new DatabaseTask(sqlString, (ps) -> ps.setString(1, player.toString())));
     }
 
+    /**
+     * Delete the messages of the player which sent before the time, the messages sent at or after it are kept
+     *
+     * @param player The player uuid
+     * @param name   The player name, the very old messages are saved by name, or null
+     * @param until  The time to delete the messages before, exclusive
+     */
+    public void cleanMessageForPlayer(@NotNull UUID player, @Nullable String name, long until) {
+        String sqlString = "DELETE FROM " + plugin.getDbPrefix() + "messages WHERE (owner = ? OR owner = ?) AND time < ?";
+        plugin.getDatabaseManager().add(new DatabaseTask(sqlString, (ps) -> {
+            ps.setString(1, player.toString());
+            ps.setString(2, name == null ? player.toString() : name);
+            ps.setLong(3, until);
+        }));
+    }
+
+    /**
+     * Select the latest messages of the player, blocking, don't call it on the main thread.
+     *
+     * @param player The player uuid
+     * @param name   The player name, the very old messages are saved by name, or null
+     * @param limit  How many messages at most to select
+     * @return The messages backlog
+     * @throws SQLException Failed to execute the query
+     */
+    @NotNull
+    public MessageBacklog selectMessagesForPlayer(@NotNull UUID player, @Nullable String name, int limit) throws SQLException {
+        final String owner = player.toString();
+        final String legacyOwner = name == null ? owner : name;
+        // The messages have no id, so select and delete by an exclusive time bound. The messages sent
+        // in the same millisecond or later may be inserted while or after selecting, they are left for next time
+        final long until = System.currentTimeMillis();
+        final Connection connection = db.borrowConnection();
+        boolean broken = false;
+        try {
+            final int total;
+            try (PreparedStatement ps = connection.prepareStatement("SELECT COUNT(*) FROM " + plugin
+                    .getDbPrefix() + "messages WHERE (owner = ? OR owner = ?) AND time < ?")) {
+                ps.setString(1, owner);
+                ps.setString(2, legacyOwner);
+                ps.setLong(3, until);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    total = rs.getInt(1);
+                }
+            }
+            final List<String> messages = new ArrayList<>(Math.min(total, limit));
+            if (total > 0) {
+                try (PreparedStatement ps = connection.prepareStatement("SELECT message FROM " + plugin
+                        .getDbPrefix() + "messages WHERE (owner = ? OR owner = ?) AND time < ? ORDER BY time DESC LIMIT ?")) {
+                    ps.setString(1, owner);
+                    ps.setString(2, legacyOwner);
+                    ps.setLong(3, until);
+                    ps.setInt(4, limit);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            messages.add(rs.getString("message"));
+                        }
+                    }
+                }
+                Collections.reverse(messages);
+            }
+            return new MessageBacklog(messages, total, until);
+        } catch (SQLException e) {
+            broken = true;
+            throw e;
+        } finally {
+            db.returnConnection(connection, broken);
+        }
+    }
+
     public void createShop(@NotNull Shop shop, @Nullable Runnable onSuccess, @Nullable Consumer<SQLException> onFailed) {
         plugin.getDatabaseHelper().removeShop(shop); //First purge old exist shop before create new shop.
         String sqlString = "INSERT INTO " + plugin.getDbPrefix() + "shops (owner, price, itemConfig, x, y, z, world, unlimited, type, extra) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
@@ -201,8 +306,10 @@ public class DatabaseHelper {
                 + plugin.getDbPrefix()
                 + "shops WHERE x = ? AND y = ? AND z = ? AND world = ?"
                 + (db.getCore() instanceof MySQLCore ? " LIMIT 1" : "");
+        Location location = shop.getLocation();
+        // Pending update is useless now, and it may overwrite the new shop created at the same location
+        plugin.getDatabaseManager().discardCoalesced(shopKey(location.getBlockX(), location.getBlockY(), location.getBlockZ(), location.getWorld().getName()));
         plugin.getDatabaseManager().add(new DatabaseTask(sqlString, (ps) -> {
-            Location location = shop.getLocation();
             ps.setInt(1, location.getBlockX());
             ps.setInt(2, location.getBlockY());
             ps.setInt(3, location.getBlockZ());
@@ -211,6 +318,10 @@ public class DatabaseHelper {
 
     }
 
+    private static String shopKey(int x, int y, int z, @NotNull String world) {
+        return "shop:" + world + ":" + x + ":" + y + ":" + z;
+    }
+
     public ResultSet selectAllMessages() throws SQLException {
         Statement st = db.getConnection().createStatement();
         String selectAllShops = "SELECT * FROM " + plugin.getDbPrefix() + "messages";
@@ -223,6 +334,40 @@ public class DatabaseHelper {
         return st.executeQuery(selectAllShops);
     }
 
+    /**
+     * Select all shops and stream the rows, instead of reading the whole table into memory.
+     * The caller should close the statement of the ResultSet after reading.
+     *
+     * @param connection The connection to use, must not be used by others until the ResultSet closed
+     * @param fetchSize  How many rows fetched in one round-trip
+     * @return The forward-only ResultSet
+     * @throws SQLException Failed to execute the query
+     */
+    public ResultSet selectAllShops(@NotNull Connection connection, int fetchSize) throws SQLException {
+        Statement st = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        // MySQL driver only streams the rows with Integer.MIN_VALUE, otherwise it reads all rows at once
+        st.setFetchSize(db.getCore() instanceof MySQLCore ? Integer.MIN_VALUE : fetchSize);
+        String selectAllShops = "SELECT * FROM " + plugin.getDbPrefix() + "shops";
+        return st.executeQuery(selectAllShops);
+    }
+
+    /**
+     * Select the shops in the world and stream the rows, same as {@link #selectAllShops(Connection, int)}.
+     * The caller should close the statement of the ResultSet after reading.
+     *
+     * @param connection The connection to use, must not be used by others until the ResultSet closed
+     * @param fetchSize  How many rows fetched in one round-trip
+     * @param world      The world name
+     * @return The forward-only ResultSet
+     * @throws SQLException Failed to execute the query
+     */
+    public ResultSet selectShopsInWorld(@NotNull Connection connection, int fetchSize, @NotNull String world) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement("SELECT * FROM " + plugin.getDbPrefix() + "shops WHERE world = ?", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(db.getCore() instanceof MySQLCore ? Integer.MIN_VALUE : fetchSize);
+        ps.setString(1, world);
+        return ps.executeQuery();
+    }
+
     public void sendMessage(@NotNull UUID player, @NotNull String message, long time) {
 
         String sqlString = "INSERT INTO " + plugin.getDbPrefix() + "messages (owner, message, time) VALUES (?, ?, ?)";
@@ -257,21 +402,150 @@ public class DatabaseHelper {
     public void updateShop(@NotNull String owner, @NotNull ItemStack item, int unlimited, int shopType,
                            double price, int x, int y, int z, String world, String extra) {
         String sqlString = "UPDATE " + plugin
-                .getDbPrefix() + "shops SET owner = ?, itemConfig = ?, unlimited = ?, type = ?, price = ? WHERE x = ? AND y = ? and z = ? and world = ? and extra = ?";
-        plugin.getDatabaseManager().add(new DatabaseTask(sqlString, ps -> {
+                .getDbPrefix() + "shops SET owner = ?, itemConfig = ?, unlimited = ?, type = ?, price = ?, extra = ? WHERE x = ? AND y = ? and z = ? and world = ?";
+        // Only the latest update of a shop will be written in a commit interval
+        plugin.getDatabaseManager().addCoalesced(shopKey(x, y, z, world), new DatabaseTask(sqlString, ps -> {
             ps.setString(1, owner);
             ps.setString(2, Util.serialize(item));
             ps.setInt(3, unlimited);
             ps.setInt(4, shopType);
             ps.setDouble(5, price);
-            ps.setInt(6, x);
-            ps.setInt(7, y);
-            ps.setInt(8, z);
-            ps.setString(9, world);
-            ps.setString(10,extra);
+            ps.setString(6, extra);
+            ps.setInt(7, x);
+            ps.setInt(8, y);
+            ps.setInt(9, z);
+            ps.setString(10, world);
         }));
         //db.execute(q, owner, Util.serialize(item), unlimited, shopType, price, x, y, z, world);
 
     }
 
-}
\ No newline at end of file
+    /**
+     * Update the changed columns of the shop, see the SHOP_COLUMN_* flags.
+     * <p>
+     * The update is coalesced with the pending update of the same shop,
+     * so the columns of the replaced update are written by this one.
+     *
+     * @param shop    The shop
+     * @param columns The columns changed
+     */
+    public void updateShop(@NotNull Shop shop, int columns) {
+        if ((columns & SHOP_COLUMN_ALL) == 0) {
+            return;
+        }
+        final Location location = shop.getLocation();
+        final String key = shopKey(location.getBlockX(), location.getBlockY(), location.getBlockZ(), Objects.requireNonNull(location.getWorld()).getName());
+        final ShopUpdateTask task = new ShopUpdateTask(shop, columns & SHOP_COLUMN_ALL);
+        final DatabaseTask replaced = plugin.getDatabaseManager().addCoalesced(key, new DatabaseTask(task.buildStatement(), task));
+        if (replaced == null) {
+            return;
+        }
+        final int replacedColumns = replaced.getTask() instanceof ShopUpdateTask ? ((ShopUpdateTask) replaced.getTask()).columns : SHOP_COLUMN_ALL;
+        if ((replacedColumns & ~task.columns) != 0) {
+            // The replaced update will never run, write its columns too
+            final ShopUpdateTask merged = new ShopUpdateTask(shop, task.columns | replacedColumns);
+            plugin.getDatabaseManager().addCoalesced(key, new DatabaseTask(merged.buildStatement(), merged));
+        }
+    }
+
+    private class ShopUpdateTask implements DatabaseTask.Task {
+        private final int columns;
+
+        private final String owner;
+
+        private final ItemStack item;
+
+        private final int unlimited;
+
+        private final int type;
+
+        private final double price;
+
+        private final String extra;
+
+        private final Location location;
+
+        private ShopUpdateTask(@NotNull Shop shop, int columns) {
+            this.columns = columns;
+            this.owner = (columns & SHOP_COLUMN_OWNER) != 0 ? ShopModerator.serialize(shop.getModerator().clone()) : null;
+            this.item = shop.getItem();
+            this.unlimited = shop.isUnlimited() ? 1 : 0;
+            this.type = shop.getShopType().toID();
+            this.price = shop.getPrice();
+            this.extra = (columns & SHOP_COLUMN_EXTRA) != 0 ? shop.saveExtraToJson() : null;
+            this.location = shop.getLocation();
+        }
+
+        @NotNull
+        private String buildStatement() {
+            final StringJoiner set = new StringJoiner(", ");
+            if ((columns & SHOP_COLUMN_OWNER) != 0) {
+                set.add("owner = ?");
+            }
+            if ((columns & SHOP_COLUMN_ITEM) != 0) {
+                set.add("itemConfig = ?");
+            }
+            if ((columns & SHOP_COLUMN_UNLIMITED) != 0) {
+                set.add("unlimited = ?");
+            }
+            if ((columns & SHOP_COLUMN_TYPE) != 0) {
+                set.add("type = ?");
+            }
+            if ((columns & SHOP_COLUMN_PRICE) != 0) {
+                set.add("price = ?");
+            }
+            if ((columns & SHOP_COLUMN_EXTRA) != 0) {
+                set.add("extra = ?");
+            }
+            return "UPDATE " + plugin.getDbPrefix() + "shops SET " + set + " WHERE x = ? AND y = ? and z = ? and world = ?";
+        }
+
+        @Override
+        public void edit(PreparedStatement ps) throws SQLException {
+            int index = 1;
+            if ((columns & SHOP_COLUMN_OWNER) != 0) {
+                ps.setString(index++, owner);
+            }
+            if ((columns & SHOP_COLUMN_ITEM) != 0) {
+                ps.setString(index++, Util.serialize(item));
+            }
+            if ((columns & SHOP_COLUMN_UNLIMITED) != 0) {
+                ps.setInt(index++, unlimited);
+            }
+            if ((columns & SHOP_COLUMN_TYPE) != 0) {
+                ps.setInt(index++, type);
+            }
+            if ((columns & SHOP_COLUMN_PRICE) != 0) {
+                ps.setDouble(index++, price);
+            }
+            if ((columns & SHOP_COLUMN_EXTRA) != 0) {
+                ps.setString(index++, extra);
+            }
+            ps.setInt(index++, location.getBlockX());
+            ps.setInt(index++, location.getBlockY());
+            ps.setInt(index++, location.getBlockZ());
+            ps.setString(index, Objects.requireNonNull(location.getWorld()).getName());
+        }
+    }
+
+    /**
+     * The latest messages of a player, and how many messages the player have in total
+     */
+    @Getter
+    public static class MessageBacklog {
+        @NotNull
+        private final List<String> messages;
+
+        private final int total;
+
+        /* The messages sent before this time are counted, exclusive */
+        private final long until;
+
+        private MessageBacklog(@NotNull List<String> messages, int total, long until) {
+            this.messages = messages;
+            this.total = total;
+            this.until = until;
+        }
+    }
+
+}
@@ -19,6 +19,7 @@
 
 package org.maxgamer.quickshop.database;
 
+import lombok.Getter;
 import org.bukkit.plugin.IllegalPluginAccessException;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
@@ -30,9 +31,16 @@ import org.maxgamer.quickshop.util.Util;
 import org.maxgamer.quickshop.util.WarningSender;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 /**
@@ -42,6 +50,11 @@ public class DatabaseManager {
 
     private final Queue<DatabaseTask> sqlQueue = new LinkedBlockingQueue<>();
 
+    /**
+     * The tasks waiting next flush, only the latest task of a key will be kept
+     */
+    private final Map<String, DatabaseTask> coalescedTasks = new ConcurrentHashMap<>();
+
     @NotNull
     private final Database database;
 
@@ -51,9 +64,41 @@ public class DatabaseManager {
     @NotNull
     private final WarningSender warningSender;
     private final boolean useQueue;
+
+    private final int maxBatchSize;
     @Nullable
     private BukkitTask task;
 
+    /**
+     * How many tasks executed in the last flush
+     */
+    @Getter
+    private volatile int lastFlushTasks;
+
+    /**
+     * How many batches executed in the last flush
+     */
+    @Getter
+    private volatile int lastFlushBatches;
+
+    /**
+     * How long the last flush took, in milliseconds
+     */
+    @Getter
+    private volatile long lastFlushLatency;
+
+    /**
+     * The max size of the batches ever executed
+     */
+    @Getter
+    private volatile int maxFlushedBatchSize;
+
+    private final AtomicLong totalFlushedTasks = new AtomicLong();
+
+    private final AtomicLong totalFlushedBatches = new AtomicLong();
+
+    private final AtomicLong totalCoalescedTasks = new AtomicLong();
+
     /**
      * Queued database manager. Use queue to solve run SQL make server lagg issue.
      *
@@ -65,6 +110,7 @@ public class DatabaseManager {
         this.warningSender = new WarningSender(plugin, 600000);
         this.database = db;
         this.useQueue = plugin.getConfig().getBoolean("database.queue");
+        this.maxBatchSize = Math.max(1, plugin.getConfig().getInt("database.queue-batch-size", 500));
 
         if (!useQueue) {
             return;
@@ -85,29 +131,63 @@ public class DatabaseManager {
 
     /**
      * Internal method, runTasks in queue.
+     * <p>
+     * The continuous tasks which have the same SQL statement will be executed as a JDBC batch with one PreparedStatement.
      */
     private void runTask() {
+        drainCoalescedTasks();
+        if (sqlQueue.isEmpty()) {
+            return;
+        }
+        Connection connection;
+        try {
+            connection = this.database.borrowConnection();
+        } catch (SQLException sqle) {
+            plugin.getSentryErrorReporter().ignoreThrow();
+            this.plugin
+                    .getLogger()
+                    .log(Level.WARNING, "Database connection may lost, we are trying reconnecting, if this message appear too many times, you should check your database file(sqlite) and internet connection(mysql).", sqle);
+            return;
+        }
+        boolean broken = false;
         try {
-            Connection connection = this.database.getConnection();
             //start our commit
             connection.setAutoCommit(false);
             Timer ctimer = new Timer(true);
+            final List<DatabaseTask> batch = new ArrayList<>();
+            DatabaseTask pending = null;
+            int flushedTasks = 0;
+            int flushedBatches = 0;
+            // The connection was validated by the pool when borrowed, no need to validate it for every task
             while (true) {
-                if (!connection.isValid(3000)) {
-                    warningSender.sendWarn("Database connection may lost, we are trying reconnecting, if this message appear too many times, you should check your database file(sqlite) and internet connection(mysql).");
-                    //connection isn't stable, let autocommit on
-                    connection = database.getConnection();
-                    continue; // Waiting next crycle and hope it success reconnected.
-                }
-
                 Timer timer = new Timer(true);
-                DatabaseTask task = sqlQueue.poll();
-                if (task == null) {
+                DatabaseTask head = pending == null ? sqlQueue.poll() : pending;
+                pending = null;
+                if (head == null) {
                     break;
                 }
-                Util.debugLog("Executing the SQL task: " + task);
+                // Collect the following tasks with same statement, stop at the first different one to keep the order
+                batch.clear();
+                batch.add(head);
+                while (batch.size() < maxBatchSize) {
+                    DatabaseTask next = sqlQueue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (!head.getStatement().equals(next.getStatement())) {
+                        pending = next;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                Util.debugLog("Executing the SQL task: " + head + (batch.size() > 1 ? " (batched " + batch.size() + " tasks)" : ""));
 
-                task.run(connection);
+                runBatch(connection, batch);
+                flushedTasks += batch.size();
+                flushedBatches++;
+                if (batch.size() > this.maxFlushedBatchSize) {
+                    this.maxFlushedBatchSize = batch.size();
+                }
                 long tookTime = timer.endTimer();
                 if (tookTime > 300) {
                     warningSender.sendWarn(
@@ -121,6 +201,13 @@ public class DatabaseManager {
                 connection.setAutoCommit(true);
             }
             long tookTime = ctimer.endTimer();
+            if (flushedTasks > 0) {
+                this.lastFlushTasks = flushedTasks;
+                this.lastFlushBatches = flushedBatches;
+                this.lastFlushLatency = tookTime;
+                this.totalFlushedTasks.addAndGet(flushedTasks);
+                this.totalFlushedBatches.addAndGet(flushedBatches);
+            }
             if (tookTime > 5500) {
                 warningSender.sendWarn(
                         "Database performance warning: It took too long time ("
@@ -128,10 +215,13 @@ public class DatabaseManager {
                                 + "ms) to execute the task, it may cause the network connection with MySQL server or just MySQL server too slow, change to a better MySQL server or switch to a local SQLite database!");
             }
         } catch (SQLException sqle) {
+            broken = true;
             plugin.getSentryErrorReporter().ignoreThrow();
             this.plugin
                     .getLogger()
                     .log(Level.WARNING, "Database connection may lost, we are trying reconnecting, if this message appear too many times, you should check your database file(sqlite) and internet connection(mysql).", sqle);
+        } finally {
+            this.database.returnConnection(connection, broken);
         }
 
 //        try {
@@ -144,6 +234,78 @@ public class DatabaseManager {
 //        }
     }
 
+    /**
+     * Execute the tasks which have the same statement with one PreparedStatement.
+     * If the batch failed, rollback it and execute the tasks one by one, so every task still get its own callback.
+     *
+     * @param connection The connection in transaction
+     * @param batch      The tasks have the same statement
+     */
+    private void runBatch(@NotNull Connection connection, @NotNull List<DatabaseTask> batch) {
+        if (batch.size() == 1) {
+            batch.get(0).run(connection);
+            return;
+        }
+        final Savepoint savepoint;
+        try {
+            savepoint = connection.setSavepoint();
+        } catch (SQLException | UnsupportedOperationException e) {
+            Util.debugLog("Savepoint not supported, fallback to execute tasks one by one: " + e.getMessage());
+            batch.forEach(task -> task.run(connection));
+            return;
+        }
+        final List<DatabaseTask> added = new ArrayList<>(batch.size());
+        try (final PreparedStatement ps = connection.prepareStatement(batch.get(0).getStatement())) {
+            for (DatabaseTask task : batch) {
+                try {
+                    task.getTask().edit(ps);
+                    ps.addBatch();
+                    added.add(task);
+                } catch (SQLException e) {
+                    ps.clearParameters();
+                    task.getTask().onFailed(e);
+                }
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            Util.debugLog("Batch execute failed, rollback and retry one by one: " + e.getMessage());
+            try {
+                connection.rollback(savepoint);
+            } catch (SQLException rollbackErr) {
+                plugin.getLogger().log(Level.WARNING, "Failed to rollback the failed batch", rollbackErr);
+            }
+            added.forEach(task -> task.run(connection));
+            return;
+        }
+        try {
+            connection.releaseSavepoint(savepoint);
+        } catch (SQLException | UnsupportedOperationException ignored) {
+            // Will be released when commit
+        }
+        added.forEach(task -> task.getTask().onSuccess());
+    }
+
+    /**
+     * Move the coalesced tasks into the queue, they will be executed after the tasks already queued.
+     */
+    private void drainCoalescedTasks() {
+        for (String key : coalescedTasks.keySet()) {
+            DatabaseTask task = coalescedTasks.remove(key);
+            if (task != null) {
+                sqlQueue.offer(task);
+            }
+        }
+    }
+
+    /**
+     * Gets how many tasks waiting in the queue
+     *
+     * @return The queue depth
+     */
+    public int getQueueDepth() {
+        return sqlQueue.size();
+    }
+
     /**
      * Add DatabaseTask to queue waiting flush to database,
      *
@@ -157,6 +319,63 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Add DatabaseTask waiting flush to database, but only the latest task of the same key will be executed
+     * in a commit interval, the older one will be dropped.
+     * Use it for the tasks which overwrite the whole row, e.g shop updates.
+     *
+     * @param key  The key of the data this task writes, e.g the shop location.
+     * @param task The DatabaseTask you want add in queue.
+     * @return The task replaced by this task, it will never run
+     */
+    @Nullable
+    public DatabaseTask addCoalesced(@NotNull String key, @NotNull DatabaseTask task) {
+        if (!useQueue) {
+            task.run();
+            return null;
+        }
+        final DatabaseTask replaced = coalescedTasks.put(key, task);
+        if (replaced != null) {
+            totalCoalescedTasks.incrementAndGet();
+        }
+        return replaced;
+    }
+
+    /**
+     * Drop the coalesced task of the key which not flushed yet, e.g the shop was removed.
+     *
+     * @param key The key of the data
+     */
+    public void discardCoalesced(@NotNull String key) {
+        coalescedTasks.remove(key);
+    }
+
+    /**
+     * Gets how many coalesced tasks waiting next flush
+     *
+     * @return The pending coalesced tasks
+     */
+    public int getCoalescedPending() {
+        return coalescedTasks.size();
+    }
+
+    /**
+     * Gets how many tasks dropped because a newer task with the same key replaced it
+     *
+     * @return The coalesced tasks count
+     */
+    public long getTotalCoalescedTasks() {
+        return totalCoalescedTasks.get();
+    }
+
+    public long getTotalFlushedTasks() {
+        return totalFlushedTasks.get();
+    }
+
+    public long getTotalFlushedBatches() {
+        return totalFlushedBatches.get();
+    }
+
     /**
      * Unload the DatabaseManager, run at onDisable()
      */
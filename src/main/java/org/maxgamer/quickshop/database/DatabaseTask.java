@@ -21,13 +21,35 @@ public class DatabaseTask {
         this.task = task;
     }
 
+    /**
+     * @return The SQL statement of this task, tasks have the same statement can be batched together.
+     */
+    String getStatement() {
+        return statement;
+    }
+
+    Task getTask() {
+        return task;
+    }
+
     public void run() {
-        try (final PreparedStatement ps = database.getConnection().prepareStatement(statement)) {
+        final Connection connection;
+        try {
+            connection = database.borrowConnection();
+        } catch (SQLException e) {
+            task.onFailed(e);
+            return;
+        }
+        boolean broken = false;
+        try (final PreparedStatement ps = connection.prepareStatement(statement)) {
             task.edit(ps);
             ps.execute();
             task.onSuccess();
         } catch (SQLException e) {
+            broken = true;
             task.onFailed(e);
+        } finally {
+            database.returnConnection(connection, broken);
         }
     }
 
@@ -28,16 +28,10 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Properties;
 
 public class MySQLCore implements DatabaseCore {
 
-    private final List<Connection> POOL = new ArrayList<>();
-
-    private final int MAX_CONNECTIONS = 8;
-
     /**
      * The connection properties... user, pass, autoReconnect..
      */
@@ -50,6 +44,19 @@ public class MySQLCore implements DatabaseCore {
     @NotNull
     private final QuickShop plugin;
 
+    @NotNull
+    private final ConnectionPool pool;
+
+    private final long validationInterval;
+
+    /**
+     * The connection for the legacy callers of getConnection() which never give back the connection
+     */
+    @Nullable
+    private Connection sharedConnection;
+
+    private long sharedConnectionLastValidated;
+
     public MySQLCore(
             @NotNull QuickShop plugin,
             @NotNull String host,
@@ -67,14 +74,29 @@ public class MySQLCore implements DatabaseCore {
         info.setProperty("characterEncoding", "utf8");
         info.setProperty("useSSL", String.valueOf(useSSL));
         this.url = "jdbc:mysql://" + host + ":" + port + "/" + database;
-        for (int i = 0; i < MAX_CONNECTIONS; i++) {
-            POOL.add(null);
-        }
+        this.validationInterval = plugin.getConfig().getLong("database.pool.validation-interval", 30000);
+        this.pool = new ConnectionPool(
+                () -> DriverManager.getConnection(this.url, info),
+                plugin.getLogger(),
+                plugin.getConfig().getInt("database.pool.min-idle", 2),
+                plugin.getConfig().getInt("database.pool.max-size", 8),
+                plugin.getConfig().getLong("database.pool.borrow-timeout", 5000),
+                validationInterval,
+                plugin.getConfig().getLong("database.pool.leak-threshold", 60000));
     }
 
     @Override
     public void close() {
-        // Nothing, because queries are executed immediately for MySQL
+        pool.close();
+        synchronized (this) {
+            if (sharedConnection != null) {
+                try {
+                    sharedConnection.close();
+                } catch (SQLException ignored) {
+                }
+                sharedConnection = null;
+            }
+        }
     }
 
     @Override
@@ -84,54 +106,70 @@ public class MySQLCore implements DatabaseCore {
 
     @Override
     public void queue(@NotNull BufferStatement bs) {
+        Connection con;
         try {
-            Connection con = this.getConnection();
-            while (con == null) {
-                try {
-                    Thread.sleep(15);
-                } catch (InterruptedException e) {
-                    // ignore
-                }
-                // Try again
-                con = this.getConnection();
-            }
-            PreparedStatement ps = bs.prepareStatement(con);
+            con = pool.borrow();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return;
+        }
+        boolean broken = false;
+        try (PreparedStatement ps = bs.prepareStatement(con)) {
             ps.execute();
-            ps.close();
         } catch (SQLException e) {
+            broken = true;
             e.printStackTrace();
+        } finally {
+            pool.release(con, broken);
         }
     }
 
     /**
      * Gets the database connection for executing queries on.
+     * <p>
+     * It is a shared connection which not managed by the pool, prefer borrowConnection if you can give it back.
      *
      * @return The database connection
      */
     @Nullable
     @Override
-    public Connection getConnection() {
-        for (int i = 0; i < MAX_CONNECTIONS; i++) {
-            Connection connection = POOL.get(i);
-            try {
-                // If we have a current connection, fetch it
-                if (connection != null && !connection.isClosed()) {
-                    if (connection.isValid(10)) {
-                        return connection;
-                    }
-                    // Else, it is invalid, so we return another connection.
+    public synchronized Connection getConnection() {
+        try {
+            if (sharedConnection != null && !sharedConnection.isClosed()) {
+                // Only validate it if not validated for a while, validating is a round-trip
+                if (System.currentTimeMillis() - sharedConnectionLastValidated <= validationInterval) {
+                    return sharedConnection;
                 }
-                connection = DriverManager.getConnection(this.url, info);
-
-                POOL.set(i, connection);
-                return connection;
-            } catch (SQLException e) {
-                e.printStackTrace();
+                if (sharedConnection.isValid(3)) {
+                    sharedConnectionLastValidated = System.currentTimeMillis();
+                    return sharedConnection;
+                }
+                // Else, it is invalid, so we return another connection.
             }
+            sharedConnection = DriverManager.getConnection(this.url, info);
+            sharedConnectionLastValidated = System.currentTimeMillis();
+            return sharedConnection;
+        } catch (SQLException e) {
+            e.printStackTrace();
         }
         return null;
     }
 
+    @Override
+    public @NotNull Connection borrowConnection() throws SQLException {
+        return pool.borrow();
+    }
+
+    @Override
+    public void returnConnection(@NotNull Connection connection, boolean broken) {
+        pool.release(connection, broken);
+    }
+
+    @Override
+    public @NotNull ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
     @Override
     public @NotNull String getName() {
         return "BuiltIn-MySQL";
@@ -61,9 +61,9 @@ public class BlockListener extends ProtectionListenerBase {
 
         if (b.getState() instanceof Sign) { //FIXME: It seems dupe with LockListener, remove it if can be removed
             Sign sign = (Sign) b.getState();
-            if (super.getPlugin().getConfig().getBoolean("lockette.enable")
-                    && sign.getLine(0).equals(super.getPlugin().getConfig().getString("lockette.private"))
-                    || sign.getLine(0).equals(super.getPlugin().getConfig().getString("lockette.more_users"))) {
+            if (super.getPlugin().getConfigSnapshot().isLocketteEnable()
+                    && sign.getLine(0).equals(super.getPlugin().getConfigSnapshot().getLockettePrivate())
+                    || sign.getLine(0).equals(super.getPlugin().getConfigSnapshot().getLocketteMoreUsers())) {
                 // Ignore break lockette sign
                 Util.debugLog("Skipped a dead-lock shop sign.(Lockette or other sign-lock plugin)");
                 return;
@@ -117,8 +117,8 @@ public class BlockListener extends ProtectionListenerBase {
         } else if (Util.isWallSign(b.getType())) {
             if (b.getState() instanceof Sign) {
                 Sign sign = (Sign) b.getState();
-                if (sign.getLine(0).equals(super.getPlugin().getConfig().getString("lockette.private"))
-                        || sign.getLine(0).equals(super.getPlugin().getConfig().getString("lockette.more_users"))) {
+                if (sign.getLine(0).equals(super.getPlugin().getConfigSnapshot().getLockettePrivate())
+                        || sign.getLine(0).equals(super.getPlugin().getConfigSnapshot().getLocketteMoreUsers())) {
                     // Ignore break lockette sign
                     return;
                 }
@@ -176,9 +176,40 @@ public class BlockListener extends ProtectionListenerBase {
         return getShopPlayer(b.getLocation(), false);
     }
 
+    /*
+     * Drop the cached lookups around the block and the cached sign positions of the shop when a sign placed or broken next to it.
+     */
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onPlaceMonitor(BlockPlaceEvent e) {
+        invalidateShopCache(e.getBlock());
+        invalidateSignCache(e.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBreakMonitor(BlockBreakEvent e) {
+        invalidateShopCache(e.getBlock());
+        invalidateSignCache(e.getBlock());
+    }
+
+    private void invalidateShopCache(@NotNull Block block) {
+        if (getPlugin().getShopCache() != null) {
+            getPlugin().getShopCache().invalidateAround(block.getWorld().getName(), block.getX(), block.getY(), block.getZ());
+        }
+    }
+
+    private void invalidateSignCache(@NotNull Block block) {
+        if (!Util.isWallSign(block.getType())) {
+            return;
+        }
+        final Shop shop = getShopNextTo(block.getLocation());
+        if (shop != null) {
+            shop.invalidateSignCache();
+        }
+    }
+
     @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
     public void onInventoryMove(InventoryMoveItemEvent event) {
-        if (!super.getPlugin().getConfig().getBoolean("shop.update-sign-when-inventory-moving", true)) {
+        if (!super.getPlugin().getConfigSnapshot().isUpdateSignWhenInventoryMoving()) {
             return;
         }
 
@@ -48,12 +48,19 @@ public class ChunkListener extends QSListener {
         Bukkit.getScheduler().runTaskLater(plugin, () -> {
             for (Shop shop : inChunk.values()) {
                 shop.onLoad();
+                // The display entities may load later than the chunk, check them again soon
+                if (plugin.getDisplayWatcher() != null && shop.isLoaded()) {
+                    plugin.getDisplayWatcher().scheduleCheck(shop);
+                }
             }
         }, 1);
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onChunkUnload(ChunkUnloadEvent e) {
+        if (plugin.getShopCache() != null) {
+            plugin.getShopCache().invalidateChunk(e.getWorld().getName(), e.getChunk().getX(), e.getChunk().getZ());
+        }
         final Map<Location, Shop> inChunk = plugin.getShopManager().getShops(e.getChunk());
         if (inChunk == null) {
             return;
@@ -53,8 +53,8 @@ public class LockListener extends ProtectionListenerBase{
         if (b.getState() instanceof Sign) {
             final Sign sign = (Sign) b.getState();
 
-            if (sign.getLine(0).equals(super.getPlugin().getConfig().getString("lockette.private"))
-                    || sign.getLine(0).equals(super.getPlugin().getConfig().getString("lockette.more_users"))) {
+            if (sign.getLine(0).equals(super.getPlugin().getConfigSnapshot().getLockettePrivate())
+                    || sign.getLine(0).equals(super.getPlugin().getConfigSnapshot().getLocketteMoreUsers())) {
                 // Ignore break lockette sign
                 Util.debugLog("Skipped a dead-lock shop sign.(Lockette or other sign-lock plugin)");
                 return;
@@ -79,8 +79,8 @@ public class LockListener extends ProtectionListenerBase{
             if (b instanceof Sign) {
                 final Sign sign = (Sign) b;
 
-                if (sign.getLine(0).equals(super.getPlugin().getConfig().getString("lockette.private"))
-                        || sign.getLine(0).equals(super.getPlugin().getConfig().getString("lockette.more_users"))) {
+                if (sign.getLine(0).equals(super.getPlugin().getConfigSnapshot().getLockettePrivate())
+                        || sign.getLine(0).equals(super.getPlugin().getConfigSnapshot().getLocketteMoreUsers())) {
                     // Ignore break lockette sign
                     return;
                 }
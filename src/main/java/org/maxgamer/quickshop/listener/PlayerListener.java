@@ -54,7 +54,7 @@ public class PlayerListener extends QSListener {
     }
 
     private void playClickSound(@NotNull Player player) {
-        if (plugin.getConfig().getBoolean("effect.sound.onclick")) {
+        if (plugin.getConfigSnapshot().isSoundOnClick()) {
             player.playSound(player.getLocation(), Sound.BLOCK_DISPENSER_FAIL, 80.f, 1.0f);
         }
     }
@@ -116,7 +116,7 @@ public class PlayerListener extends QSListener {
         }
         // Purchase handling
         if (shop != null && QuickShop.getPermissionManager().hasPermission(p, "quickshop.use")) {
-            if (plugin.getConfig().getBoolean("shop.interact.switch-mode") ? !p.isSneaking() && plugin.getConfig().getBoolean("shop.interact.sneak-to-trade") : plugin.getConfig().getBoolean("shop.interact.sneak-to-trade") && !p.isSneaking()) {
+            if (plugin.getConfigSnapshot().isInteractSwitchMode() ? !p.isSneaking() && plugin.getConfigSnapshot().isSneakToTrade() : plugin.getConfigSnapshot().isSneakToTrade() && !p.isSneaking()) {
                 return;
             }
             shop.onClick();
@@ -130,7 +130,7 @@ public class PlayerListener extends QSListener {
             final double money = plugin.getEconomy().getBalance(p.getUniqueId());
 
             if (shop.isSelling()) {
-                int itemAmount = Math.min(Util.countSpace(p.getInventory(), shop.getItem()), (int) Math.floor(money / price));
+                int itemAmount = Math.min(Util.countSpace(p.getInventory(), shop.getMatchKey()), (int) Math.floor(money / price));
                 if (!shop.isUnlimited()) {
                     itemAmount = Math.min(itemAmount, shop.getRemainingStock());
                 }
@@ -144,7 +144,7 @@ public class PlayerListener extends QSListener {
                 }
             } else {
                 final double ownerBalance = eco.getBalance(shop.getOwner());
-                int items = Util.countItems(p.getInventory(), shop.getItem());
+                int items = Util.countItems(p.getInventory(), shop.getMatchKey());
                 final int ownerCanAfford = (int) (ownerBalance / shop.getPrice());
 
                 if (!shop.isUnlimited()) {
@@ -152,7 +152,7 @@ public class PlayerListener extends QSListener {
                     items = Math.min(items, shop.getRemainingSpace());
                     // Amount check player selling item total cost and the shop owner's balance
                     items = Math.min(items, ownerCanAfford);
-                } else if (plugin.getConfig().getBoolean("shop.pay-unlimited-shop-owners")) {
+                } else if (plugin.getConfigSnapshot().isPayUnlimitedShopOwners()) {
                     // even if the shop is unlimited, the config option pay-unlimited-shop-owners is set to
                     // true,
                     // the unlimited shop owner should have enough money.
@@ -180,8 +180,8 @@ public class PlayerListener extends QSListener {
                 && QuickShop.getPermissionManager().hasPermission(p, "quickshop.create.sell")
                 && p.getGameMode() != GameMode.CREATIVE) {
             if (e.useInteractedBlock() == Result.DENY
-                    || (plugin.getConfig().getBoolean("shop.interact.switch-mode") ? !p.isSneaking() && plugin.getConfig().getBoolean("shop.interact.sneak-to-create") : plugin.getConfig().getBoolean("shop.interact.sneak-to-create") && !p.isSneaking())
-                    || plugin.getConfig().getBoolean("shop.disable-quick-create")
+                    || (plugin.getConfigSnapshot().isInteractSwitchMode() ? !p.isSneaking() && plugin.getConfigSnapshot().isSneakToCreate() : plugin.getConfigSnapshot().isSneakToCreate() && !p.isSneaking())
+                    || plugin.getConfigSnapshot().isDisableQuickCreate()
                     || !plugin.getShopManager().canBuildShop(p, b, e.getBlockFace())) {
                 // As of the new checking system, most plugins will tell the
                 // player why they can't create a shop there.
@@ -247,12 +247,15 @@ public class PlayerListener extends QSListener {
         }
         final Shop shop = plugin.getShopManager().getShopIncludeAttached(location);
         if (shop != null) {
+            shop.invalidateStockCache();
             shop.setSignText();
         }
     }
 
     @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
     public void onJoin(PlayerJoinEvent e) {
+        // Send the trades aggregating now, the player is online to receive them
+        plugin.getTradeNotificationWatcher().flush(e.getPlayer().getUniqueId());
         // Notify the player any messages they were sent
         if (plugin.getConfig().getBoolean("shop.auto-fetch-shop-messages")) {
             MsgUtil.flush(e.getPlayer());
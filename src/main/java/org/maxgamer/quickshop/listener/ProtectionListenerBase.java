@@ -31,6 +31,9 @@ public class ProtectionListenerBase extends QSListener {
     @SuppressWarnings("SpellCheckingInspection")
     @Nullable
     public Shop getShopRedstone(@NotNull Location location, boolean includeAttached) {
+        if (!plugin.getShopManager().hasShopsAround(location)) {
+            return null; // Fast path, no shops nearby
+        }
         if (cache == null) {
             if (includeAttached) {
                 return plugin.getShopManager().getShopIncludeAttached(location);
@@ -63,6 +66,9 @@ public class ProtectionListenerBase extends QSListener {
      */
     @Nullable
     public Shop getShopNature(@NotNull Location location, boolean includeAttached) {
+        if (!plugin.getShopManager().hasShopsAround(location)) {
+            return null; // Fast path, no shops nearby
+        }
         return includeAttached ? plugin.getShopManager().getShopIncludeAttached(location, false) : plugin.getShopManager().getShop(location);
     }
 
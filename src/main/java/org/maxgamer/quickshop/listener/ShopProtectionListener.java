@@ -65,7 +65,7 @@ public class ShopProtectionListener extends ProtectionListenerBase {
                 shop = getShopNextTo(b.getLocation());
             }
             if (shop != null) {
-                if (plugin.getConfig().getBoolean("protect.explode")) {
+                if (plugin.getConfigSnapshot().isProtectExplode()) {
                     e.setCancelled(true);
                 } else {
                     plugin.log("Deleting shop "+shop+" request by block break (explode).");
@@ -159,7 +159,7 @@ public class ShopProtectionListener extends ProtectionListenerBase {
             if (shop == null) {
                 continue;
             }
-            if (plugin.getConfig().getBoolean("protect.explode")) {
+            if (plugin.getConfigSnapshot().isProtectExplode()) {
                 e.setCancelled(true);
             } else {
                 plugin.log("Deleting shop "+shop+" request by block break (explode).");
@@ -170,7 +170,7 @@ public class ShopProtectionListener extends ProtectionListenerBase {
 
     @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
     public void onInventoryMove(InventoryMoveItemEvent event) {
-        if (!plugin.getConfig().getBoolean("protect.hopper")) {
+        if (!plugin.getConfigSnapshot().isProtectHopper()) {
             return;
         }
         final Location loc = event.getSource().getLocation();
@@ -199,7 +199,7 @@ public class ShopProtectionListener extends ProtectionListenerBase {
         } else if (holder instanceof Block) {
             location.getBlock().breakNaturally();
         } else {
-            Util.debugLog("Unknown location = " + loc);
+            Util.debugLog(() -> "Unknown location = " + loc);
         }
 
         if (sendProtectionAlert) {
@@ -220,7 +220,7 @@ public class ShopProtectionListener extends ProtectionListenerBase {
             return;
         }
 
-        if (plugin.getConfig().getBoolean("protect.entity")) {
+        if (plugin.getConfigSnapshot().isProtectEntity()) {
             event.setCancelled(true);
             return;
         }
@@ -0,0 +1,129 @@
+/*
+ * This file is a part of project QuickShop, the name is StockCacheListener.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.listener;
+
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.DoubleChestInventory;
+import org.bukkit.inventory.Inventory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.maxgamer.quickshop.QuickShop;
+import org.maxgamer.quickshop.shop.Shop;
+
+/**
+ * Drop the cached stock and space of the shops which container changed
+ */
+public class StockCacheListener extends QSListener {
+    private static final BlockFace[] AROUND = {BlockFace.SELF, BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST};
+
+    public StockCacheListener(QuickShop plugin) {
+        super(plugin);
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onInventoryMove(InventoryMoveItemEvent event) {
+        invalidate(event.getSource());
+        invalidate(event.getDestination());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onInventoryClick(InventoryClickEvent event) {
+        // Shift clicking in the bottom inventory also moves items into the top one
+        invalidate(event.getView().getTopInventory());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        invalidate(event.getView().getTopInventory());
+    }
+
+    /*
+     * Placing or breaking a chest nearby may turn the shop chest into a double chest or back.
+     */
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        invalidateAround(event.getBlock());
+    }
+
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onBlockBreak(BlockBreakEvent event) {
+        invalidateAround(event.getBlock());
+    }
+
+    private void invalidate(@Nullable Inventory inventory) {
+        if (inventory == null) {
+            return;
+        }
+        if (inventory.getType() == InventoryType.PLAYER || inventory.getType() == InventoryType.CRAFTING) {
+            return;
+        }
+        final Location location;
+        try {
+            location = inventory.getLocation();
+        } catch (NullPointerException ex) {
+            //for strange NPE from spigot API fix
+            return;
+        }
+        // Fast path, hoppers almost never next to a shop. The double chest location is between its halves
+        if (location == null || !plugin.getShopManager().hasShopsAround(location)) {
+            return;
+        }
+        if (inventory instanceof DoubleChestInventory) {
+            invalidateSide(((DoubleChestInventory) inventory).getLeftSide());
+            invalidateSide(((DoubleChestInventory) inventory).getRightSide());
+            return;
+        }
+        invalidate(location);
+    }
+
+    private void invalidateSide(@NotNull Inventory side) {
+        final Location location = side.getLocation();
+        if (location != null) {
+            invalidate(location);
+        }
+    }
+
+    private void invalidateAround(@NotNull Block block) {
+        if (!plugin.getShopManager().hasShopsAround(block.getLocation())) {
+            return;
+        }
+        for (BlockFace face : AROUND) {
+            invalidate(block.getRelative(face).getLocation());
+        }
+    }
+
+    private void invalidate(@NotNull Location location) {
+        final Shop shop = plugin.getShopManager().getShop(location);
+        if (shop != null) {
+            shop.invalidateStockCache();
+        }
+    }
+
+}
@@ -28,11 +28,10 @@ import org.bukkit.event.world.WorldLoadEvent;
 import org.bukkit.event.world.WorldUnloadEvent;
 import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.shop.Shop;
-import org.maxgamer.quickshop.shop.ShopChunk;
+import org.maxgamer.quickshop.shop.ShopIndex;
 
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 public class WorldListener extends QSListener {
 
     public WorldListener(QuickShop plugin) {
@@ -50,32 +49,20 @@ public class WorldListener extends QSListener {
         final World world = e.getWorld();
 
         plugin.getShopLoader().loadShops(world.getName());
-        // New world data
-        final Map<ShopChunk, Map<Location, Shop>> inWorld = new HashMap<>(1);
         // Old world data
-        final Map<ShopChunk, Map<Location, Shop>> oldInWorld =
-                plugin.getShopManager().getShops(world.getName());
+        final List<ShopIndex.ChunkShops> oldInWorld =
+                plugin.getShopManager().getShopIndex().getChunks(world.getName());
         // Nothing in the old world, therefore we don't care. No locations to
         // update.
         if (oldInWorld == null) {
             return;
         }
-
-        for (Entry<ShopChunk, Map<Location, Shop>> oldInChunk : oldInWorld.entrySet()) {
-            final Map<Location, Shop> inChunk = new HashMap<>(1);
-            // Put the new chunk were the old chunk was
-            inWorld.put(oldInChunk.getKey(), inChunk);
-
-            for (Entry<Location, Shop> entry : oldInChunk.getValue().entrySet()) {
-                final Shop shop = entry.getValue();
-
+        // The index keyed by world name and block coordinates, so we only need update the references.
+        for (ShopIndex.ChunkShops inChunk : oldInWorld) {
+            for (Shop shop : inChunk.values()) {
                 shop.getLocation().setWorld(world);
-                inChunk.put(shop.getLocation(), shop);
             }
         }
-        // Done - Now we can store the new world dataz!
-
-        plugin.getShopManager().getShops().put(world.getName(), inWorld);
         // This is a workaround, because I don't get parsed chunk events when a
         // world first loads....
         // So manually tell all of these shops they're loaded.
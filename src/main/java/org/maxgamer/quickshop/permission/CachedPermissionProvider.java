@@ -0,0 +1,129 @@
+/*
+ * This file is a part of project QuickShop, the name is CachedPermissionProvider.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.permission;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache the permission decisions of the online players for a short time.
+ * <p>
+ * A shop interaction checks many nodes, and permission plugins may resolve every check through
+ * the group inheritance. The decisions of a player are dropped when joined, quit, changed the world
+ * or the permission plugin recalculated the player, and all of them expire after the ttl anyway.
+ * The other senders (e.g console) are never cached.
+ */
+public class CachedPermissionProvider implements PermissionProvider {
+    private final PermissionProvider provider;
+
+    private final long ttlMillis;
+
+    private final Map<UUID, Decisions> players = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public CachedPermissionProvider(@NotNull PermissionProvider provider, long ttlMillis) {
+        this.provider = provider;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public boolean hasPermission(@NotNull CommandSender sender, @NotNull String permission) {
+        if (!(sender instanceof Player)) {
+            return provider.hasPermission(sender, permission);
+        }
+        final UUID uuid = ((Player) sender).getUniqueId();
+        final long now = System.currentTimeMillis();
+        Decisions decisions = players.get(uuid);
+        if (decisions == null || decisions.expireAt <= now) {
+            decisions = new Decisions(now + ttlMillis);
+            players.put(uuid, decisions);
+        }
+        final Boolean cached = decisions.results.get(permission);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        final boolean result = provider.hasPermission(sender, permission);
+        decisions.results.put(permission, result);
+        return result;
+    }
+
+    /**
+     * Drop the cached decisions of the player
+     *
+     * @param player The player unique id
+     */
+    public void invalidate(@NotNull UUID player) {
+        if (players.remove(player) != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public void invalidateAll() {
+        players.clear();
+        invalidations.incrementAndGet();
+    }
+
+    @Override
+    public @NotNull String getName() {
+        return provider.getName();
+    }
+
+    @Override
+    public @NotNull PermissionInfomationContainer getDebugInfo(@NotNull CommandSender sender, @NotNull String permission) {
+        return provider.getDebugInfo(sender, permission);
+    }
+
+    /**
+     * Gets the stats of this cache
+     *
+     * @return The stats in human readable
+     */
+    public @NotNull String getStats() {
+        final long hit = hits.get();
+        final long total = hit + misses.get();
+        return "players " + players.size() + ", hits " + hit + ", misses " + (total - hit)
+                + ", hit rate " + (total == 0 ? 0 : hit * 100 / total) + "%, invalidations " + invalidations.get()
+                + ", ttl " + ttlMillis + "ms";
+    }
+
+    private static class Decisions {
+        private final long expireAt;
+
+        private final Map<String, Boolean> results = new ConcurrentHashMap<>();
+
+        private Decisions(long expireAt) {
+            this.expireAt = expireAt;
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * This file is a part of project QuickShop, the name is LuckPermsCacheInvalidator.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.permission;
+
+import me.lucko.luckperms.LuckPerms;
+import me.lucko.luckperms.api.event.EventHandler;
+import me.lucko.luckperms.api.event.user.UserDataRecalculateEvent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Drop the cached permission decisions of a player when LuckPerms recalculated the player data.
+ * Only load this class when LuckPerms installed.
+ */
+class LuckPermsCacheInvalidator {
+    private final EventHandler<UserDataRecalculateEvent> handler;
+
+    LuckPermsCacheInvalidator(@NotNull CachedPermissionProvider provider) {
+        this.handler = LuckPerms.getApi().getEventBus().subscribe(UserDataRecalculateEvent.class,
+                event -> provider.invalidate(event.getUser().getUuid()));
+    }
+
+    void unregister() {
+        handler.unregister();
+    }
+
+}
@@ -19,18 +19,31 @@
 
 package org.maxgamer.quickshop.permission;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.util.Util;
 
+import java.util.UUID;
+
 @Getter
 public class PermissionManager {
     private final QuickShop plugin;
 
     private final PermissionProvider provider;
 
+    @Getter(AccessLevel.NONE)
+    @Nullable
+    private final CachedPermissionProvider cachedProvider;
+
+    @Getter(AccessLevel.NONE)
+    @Nullable
+    private LuckPermsCacheInvalidator luckPermsInvalidator;
+
     /**
      * The manager to call permission providers
      *
@@ -38,8 +51,62 @@ public class PermissionManager {
      */
     public PermissionManager(QuickShop plugin) {
         this.plugin = plugin;
-        provider = new BukkitPermsProvider();
-        plugin.getLogger().info("Selected permission provider: " + provider.getName());
+        final PermissionProvider bukkitProvider = new BukkitPermsProvider();
+        final long cacheTtl = plugin.getConfig().getLong("permission-cache-ttl", 3000);
+        if (cacheTtl > 0) {
+            cachedProvider = new CachedPermissionProvider(bukkitProvider, cacheTtl);
+            provider = cachedProvider;
+            if (Bukkit.getPluginManager().getPlugin("LuckPerms") != null) {
+                try {
+                    luckPermsInvalidator = new LuckPermsCacheInvalidator(cachedProvider);
+                } catch (Throwable th) {
+                    // Not the LuckPerms API we know, the cache will expire by ttl
+                    Util.debugLog("Failed to listen LuckPerms recalculation: " + th.getMessage());
+                }
+            }
+        } else {
+            cachedProvider = null;
+            provider = bukkitProvider;
+        }
+        plugin.getLogger().info("Selected permission provider: " + provider.getName() + (cachedProvider != null ? " (cached)" : ""));
+    }
+
+    /**
+     * Drop the cached permission decisions of the player
+     *
+     * @param player The player unique id
+     */
+    public void invalidate(@NotNull UUID player) {
+        if (cachedProvider != null) {
+            cachedProvider.invalidate(player);
+        }
+    }
+
+    public void invalidateAll() {
+        if (cachedProvider != null) {
+            cachedProvider.invalidateAll();
+        }
+    }
+
+    /**
+     * Stop listening the permission plugins and drop the cache
+     */
+    public void close() {
+        if (luckPermsInvalidator != null) {
+            luckPermsInvalidator.unregister();
+            luckPermsInvalidator = null;
+        }
+        invalidateAll();
+    }
+
+    /**
+     * Gets the stats of the permission cache
+     *
+     * @return The stats, or null if cache disabled
+     */
+    @Nullable
+    public String getCacheStats() {
+        return cachedProvider == null ? null : cachedProvider.getStats();
     }
 
     /**
@@ -27,6 +27,7 @@ import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
 import org.bukkit.block.Sign;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Player;
@@ -38,15 +39,18 @@ import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
+import org.maxgamer.quickshop.database.DatabaseHelper;
 import org.maxgamer.quickshop.event.*;
 import org.maxgamer.quickshop.util.JsonUtil;
 import org.maxgamer.quickshop.util.MsgUtil;
 import org.maxgamer.quickshop.util.PriceLimiter;
 import org.maxgamer.quickshop.util.Util;
+import org.maxgamer.quickshop.util.matcher.item.ItemMatchKey;
 
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 /**
@@ -54,6 +58,15 @@ import java.util.logging.Level;
  */
 @EqualsAndHashCode
 public class ContainerShop implements Shop {
+    private static final int STOCK_UNKNOWN = Integer.MIN_VALUE;
+    /* Recount the stock and space after this time even not invalidated, in case the container changed by others */
+    private static final long STOCK_CACHE_MAX_AGE_MILLIS = 2000;
+    private static final AtomicLong stockCacheHits = new AtomicLong();
+    private static final AtomicLong stockCacheMisses = new AtomicLong();
+    private static final AtomicLong stockCacheInvalidations = new AtomicLong();
+    /* Rescan the sign positions after this time even not invalidated, in case the signs changed by others */
+    private static final long SIGN_CACHE_MAX_AGE_MILLIS = 30000;
+    private static final BlockFace[] SIGN_FACES = {BlockFace.EAST, BlockFace.NORTH, BlockFace.SOUTH, BlockFace.WEST};
     @NotNull
     private ItemStack item;
 
@@ -77,8 +90,33 @@ public class ContainerShop implements Shop {
     private boolean unlimited;
     @EqualsAndHashCode.Exclude
     private long lastChangedAt;
+    /* The columns changed since last update, see DatabaseHelper.SHOP_COLUMN_* */
+    @EqualsAndHashCode.Exclude
+    private volatile int dirtyColumns;
 
     private final Map<String, Map<String, String>> extra;
+    @EqualsAndHashCode.Exclude
+    @Nullable
+    private volatile ItemMatchKey matchKey;
+    /* The cached stock and space, STOCK_UNKNOWN if not counted or invalidated */
+    @EqualsAndHashCode.Exclude
+    private volatile int cachedStock = STOCK_UNKNOWN;
+    @EqualsAndHashCode.Exclude
+    private volatile long cachedStockAt;
+    @EqualsAndHashCode.Exclude
+    private volatile int cachedSpace = STOCK_UNKNOWN;
+    @EqualsAndHashCode.Exclude
+    private volatile long cachedSpaceAt;
+    /* The faces of the wall signs attached to this shop, null if not resolved or invalidated */
+    @EqualsAndHashCode.Exclude
+    @Nullable
+    private volatile BlockFace[] signFaces;
+    @EqualsAndHashCode.Exclude
+    private volatile long signFacesAt;
+    /* The lines last written to the signs, null if unknown */
+    @EqualsAndHashCode.Exclude
+    @Nullable
+    private volatile String[] renderedLines;
 
     private ContainerShop(@NotNull ContainerShop s) {
         this.displayItem = s.displayItem;
@@ -159,6 +197,7 @@ public class ContainerShop implements Shop {
                         Arrays.stream(e.getStackTrace()).forEach(ex -> Util.debugLog(ex.getClassName() + "#" + ex.getMethodName() + "#" + ex.getLineNumber()));
                         plugin.getConfig().set("shop.display-type", 0);
                         plugin.saveConfig();
+                        plugin.refreshConfigSnapshot();
                         this.displayItem = new RealDisplayItem(this);
                         //do not throw
                         plugin.getLogger().log(Level.SEVERE, "Failed to initialize VirtualDisplayItem, fallback to RealDisplayItem, are you using the latest version of ProtocolLib?", e);
@@ -196,6 +235,7 @@ public class ContainerShop implements Shop {
             Objects.requireNonNull(inv).addItem(item);
             remains -= stackSize;
         }
+        this.invalidateStockCache();
         this.setSignText();
     }
 
@@ -203,6 +243,7 @@ public class ContainerShop implements Shop {
     public boolean addStaff(@NotNull UUID player) {
         this.lastChangedAt = System.currentTimeMillis();
         boolean result = this.moderator.addStaff(player);
+        markDirty(DatabaseHelper.SHOP_COLUMN_OWNER);
         update();
         if (result) {
             Bukkit.getPluginManager().callEvent(new ShopModeratorChangedEvent(this, this.moderator));
@@ -237,7 +278,8 @@ public class ContainerShop implements Shop {
             }
             // Send the players new inventory to them
             p.getInventory().setContents(contents);
-            this.setSignText();
+            this.invalidateStockCache();
+            plugin.getSignUpdateWatcher().scheduleSignUpdate(this);
             // This should not happen.
             if (amount > 0) {
                 plugin
@@ -275,7 +317,8 @@ public class ContainerShop implements Shop {
             }
             // Now update the players inventory.
             p.getInventory().setContents(contents);
-            this.setSignText();
+            this.invalidateStockCache();
+            plugin.getSignUpdateWatcher().scheduleSignUpdate(this);
         }
     }
 
@@ -300,7 +343,12 @@ public class ContainerShop implements Shop {
 
         if (!this.displayItem.isSpawned()) {
             /* Not spawned yet. */
-            Util.debugLog("Target item not spawned, spawning for shop " + this.getLocation());
+            // Capture the coordinates, the location is mutable and the log may be read off the main thread
+            final String world = this.location.getWorld() == null ? "unknown" : this.location.getWorld().getName();
+            final int x = this.location.getBlockX();
+            final int y = this.location.getBlockY();
+            final int z = this.location.getBlockZ();
+            Util.debugLog(() -> "Target item not spawned, spawning for shop at " + world + " " + x + ", " + y + ", " + z);
             this.displayItem.spawn();
         } else {
             /* If not spawned, we didn't need check these, only check them when we need. */
@@ -323,6 +371,7 @@ public class ContainerShop implements Shop {
     public void clearStaffs() {
         this.lastChangedAt = System.currentTimeMillis();
         this.moderator.clearStaffs();
+        markDirty(DatabaseHelper.SHOP_COLUMN_OWNER);
         Bukkit.getPluginManager().callEvent(new ShopModeratorChangedEvent(this, this.moderator));
         update();
     }
@@ -331,6 +380,7 @@ public class ContainerShop implements Shop {
     public boolean delStaff(@NotNull UUID player) {
         this.lastChangedAt = System.currentTimeMillis();
         boolean result = this.moderator.delStaff(player);
+        markDirty(DatabaseHelper.SHOP_COLUMN_OWNER);
         update();
         if (result) {
             Bukkit.getPluginManager().callEvent(new ShopModeratorChangedEvent(this, this.moderator));
@@ -368,6 +418,7 @@ public class ContainerShop implements Shop {
         for (Sign s : this.getSigns()) {
             s.getBlock().setType(Material.AIR);
         }
+        this.invalidateSignCache();
         // Delete it from the database
         // Refund if necessary
         if (plugin.getConfig().getBoolean("shop.refund")) {
@@ -395,7 +446,7 @@ public class ContainerShop implements Shop {
      */
     @Override
     public boolean matches(@Nullable ItemStack item) {
-        return plugin.getItemMatcher().matches(this.item, item);
+        return plugin.getItemMatcher().matches(getMatchKey(), item);
     }
 
     @Override
@@ -434,10 +485,12 @@ public class ContainerShop implements Shop {
                 if (price < priceRestriction.getKey()) {
                     this.lastChangedAt = System.currentTimeMillis();
                     price = priceRestriction.getKey();
+                    markDirty(DatabaseHelper.SHOP_COLUMN_PRICE);
                     this.update();
                 } else if (price > priceRestriction.getValue()) {
                     this.lastChangedAt = System.currentTimeMillis();
                     price = priceRestriction.getValue();
+                    markDirty(DatabaseHelper.SHOP_COLUMN_PRICE);
                     this.update();
                 }
             }
@@ -514,6 +567,7 @@ public class ContainerShop implements Shop {
             Objects.requireNonNull(inv).removeItem(item);
             remains -= stackSize;
         }
+        this.invalidateStockCache();
         this.setSignText();
     }
 
@@ -565,7 +619,8 @@ public class ContainerShop implements Shop {
             }
             // We now have to update the chests inventory manually.
             this.getInventory().setContents(chestContents);
-            this.setSignText();
+            this.invalidateStockCache();
+            plugin.getSignUpdateWatcher().scheduleSignUpdate(this);
         }
         for (ItemStack stack : floor) {
             p.getWorld().dropItem(p.getLocation(), stack);
@@ -641,36 +696,27 @@ public class ContainerShop implements Shop {
     }
 
     /**
-     * Upates the shop into the database.
+     * Upates the changed columns of the shop into the database, do nothing if the shop is clean.
      */
     @Override
     public void update() {
+        if (this.dirtyColumns == 0) {
+            return;
+        }
         ShopUpdateEvent shopUpdateEvent = new ShopUpdateEvent(this);
         if (Util.fireCancellableEvent(shopUpdateEvent)) {
             Util.debugLog("The Shop update action was canceled by a plugin.");
             return;
         }
-
-        int x = this.getLocation().getBlockX();
-        int y = this.getLocation().getBlockY();
-        int z = this.getLocation().getBlockZ();
-        String world = Objects.requireNonNull(this.getLocation().getWorld()).getName();
-        int unlimited = this.isUnlimited() ? 1 : 0;
+        final int columns;
+        synchronized (this) {
+            columns = this.dirtyColumns;
+            this.dirtyColumns = 0;
+        }
         try {
-            plugin
-                    .getDatabaseHelper()
-                    .updateShop(
-                            ShopModerator.serialize(this.moderator.clone()),
-                            this.getItem(),
-                            unlimited,
-                            shopType.toID(),
-                            this.getPrice(),
-                            x,
-                            y,
-                            z,
-                            world,
-                            this.saveExtraToJson());
+            plugin.getDatabaseHelper().updateShop(this, columns);
         } catch (Exception e) {
+            markDirty(columns);
             e.printStackTrace();
             plugin
                     .getLogger()
@@ -680,6 +726,20 @@ public class ContainerShop implements Shop {
         }
     }
 
+    @Override
+    public void setDirty() {
+        markDirty(DatabaseHelper.SHOP_COLUMN_ALL);
+    }
+
+    @Override
+    public boolean isDirty() {
+        return this.dirtyColumns != 0;
+    }
+
+    private synchronized void markDirty(int columns) {
+        this.dirtyColumns |= columns;
+    }
+
     /**
      * @return The durability of the item
      */
@@ -696,9 +756,26 @@ public class ContainerShop implements Shop {
         return item;
     }
 
+    @Override
+    public @NotNull ItemMatchKey getMatchKey() {
+        ItemMatchKey key = this.matchKey;
+        // The item may changed in place (e.g the amount), the key and the stock cache must follow it
+        if (key == null || key.getStack().getAmount() != this.item.getAmount()) {
+            if (key != null) {
+                invalidateStockCache();
+            }
+            key = this.matchKey = new ItemMatchKey(this.item);
+        }
+        return key;
+    }
+
     @Override
     public void setItem(@NotNull ItemStack item) {
         this.item = item;
+        this.matchKey = null;
+        invalidateStockCache();
+        plugin.getShopManager().reindexShop(this);
+        markDirty(DatabaseHelper.SHOP_COLUMN_ITEM);
         update();
         refresh();
     }
@@ -720,6 +797,9 @@ public class ContainerShop implements Shop {
      */
     @Override
     public void setSignText(@NotNull String[] lines) {
+        if (isSignCacheFresh() && Arrays.equals(this.renderedLines, lines)) {
+            return; // Same content as last rendered, and the signs not changed since then
+        }
         for (Sign sign : this.getSigns()) {
             if (Arrays.equals(sign.getLines(), lines)) {
                 Util.debugLog("Skipped new sign text setup: Same content");
@@ -730,6 +810,7 @@ public class ContainerShop implements Shop {
             }
             sign.update(true);
         }
+        this.renderedLines = lines.clone();
     }
 
     /**
@@ -749,6 +830,8 @@ public class ContainerShop implements Shop {
     public void setModerator(@NotNull ShopModerator shopModerator) {
         this.lastChangedAt = System.currentTimeMillis();
         this.moderator = shopModerator;
+        plugin.getShopManager().reindexShop(this);
+        markDirty(DatabaseHelper.SHOP_COLUMN_OWNER);
         update();
         Bukkit.getPluginManager().callEvent(new ShopModeratorChangedEvent(this, this.moderator));
     }
@@ -773,12 +856,15 @@ public class ContainerShop implements Shop {
         List<Sign> signs = this.getSigns();
         //then setOwner
         this.moderator.setOwner(owner);
+        plugin.getShopManager().reindexShop(this);
+        markDirty(DatabaseHelper.SHOP_COLUMN_OWNER);
         //then change the sign
         for (Sign shopSign : signs) {
             shopSign.setLine(0, MsgUtil.getMessageOfflinePlayer("signs.header", offlinePlayer, ownerName(false)));
             //Don't forgot update it
             shopSign.update(true);
         }
+        this.renderedLines = null;
         //Event
         Bukkit.getPluginManager().callEvent(new ShopModeratorChangedEvent(this, this.moderator));
         update();
@@ -806,6 +892,7 @@ public class ContainerShop implements Shop {
         }
         this.lastChangedAt = System.currentTimeMillis();
         this.price = price;
+        markDirty(DatabaseHelper.SHOP_COLUMN_PRICE);
         setSignText();
         update();
     }
@@ -820,7 +907,17 @@ public class ContainerShop implements Shop {
         if (this.unlimited) {
             return -1;
         }
-        return Util.countSpace(this.getInventory(), this.getItem());
+        int space = this.cachedSpace;
+        long now = System.currentTimeMillis();
+        if (space != STOCK_UNKNOWN && now - this.cachedSpaceAt < STOCK_CACHE_MAX_AGE_MILLIS) {
+            stockCacheHits.incrementAndGet();
+            return space;
+        }
+        stockCacheMisses.incrementAndGet();
+        space = Util.countSpace(this.getInventory(), this.getMatchKey());
+        this.cachedSpace = space;
+        this.cachedSpaceAt = now;
+        return space;
     }
 
     /**
@@ -833,7 +930,60 @@ public class ContainerShop implements Shop {
         if (this.unlimited) {
             return -1;
         }
-        return Util.countItems(this.getInventory(), this.getItem());
+        int stock = this.cachedStock;
+        long now = System.currentTimeMillis();
+        if (stock != STOCK_UNKNOWN && now - this.cachedStockAt < STOCK_CACHE_MAX_AGE_MILLIS) {
+            stockCacheHits.incrementAndGet();
+            return stock;
+        }
+        stockCacheMisses.incrementAndGet();
+        stock = Util.countItems(this.getInventory(), this.getMatchKey());
+        this.cachedStock = stock;
+        this.cachedStockAt = now;
+        return stock;
+    }
+
+    @Override
+    public int countRemainingSpace() {
+        if (this.unlimited) {
+            return -1;
+        }
+        final int space = Util.countSpace(this.getInventory(), this.getMatchKey());
+        this.cachedSpace = space;
+        this.cachedSpaceAt = System.currentTimeMillis();
+        return space;
+    }
+
+    @Override
+    public int countRemainingStock() {
+        if (this.unlimited) {
+            return -1;
+        }
+        final int stock = Util.countItems(this.getInventory(), this.getMatchKey());
+        this.cachedStock = stock;
+        this.cachedStockAt = System.currentTimeMillis();
+        return stock;
+    }
+
+    @Override
+    public void invalidateStockCache() {
+        if (this.cachedStock != STOCK_UNKNOWN || this.cachedSpace != STOCK_UNKNOWN) {
+            stockCacheInvalidations.incrementAndGet();
+        }
+        this.cachedStock = STOCK_UNKNOWN;
+        this.cachedSpace = STOCK_UNKNOWN;
+    }
+
+    public static long getStockCacheHits() {
+        return stockCacheHits.get();
+    }
+
+    public static long getStockCacheMisses() {
+        return stockCacheMisses.get();
+    }
+
+    public static long getStockCacheInvalidations() {
+        return stockCacheInvalidations.get();
     }
 
     @Override
@@ -850,6 +1000,7 @@ public class ContainerShop implements Shop {
     public void setShopType(@NotNull ShopType shopType) {
         this.lastChangedAt = System.currentTimeMillis();
         this.shopType = shopType;
+        markDirty(DatabaseHelper.SHOP_COLUMN_TYPE);
         this.setSignText();
         update();
     }
@@ -865,29 +1016,24 @@ public class ContainerShop implements Shop {
         if (this.getLocation().getWorld() == null) {
             return signs;
         }
-        Block[] blocks = new Block[4];
-        blocks[0] = location.getBlock().getRelative(BlockFace.EAST);
-        blocks[1] = location.getBlock().getRelative(BlockFace.NORTH);
-        blocks[2] = location.getBlock().getRelative(BlockFace.SOUTH);
-        blocks[3] = location.getBlock().getRelative(BlockFace.WEST);
+        final Block chest = location.getBlock();
+        final BlockFace[] faces = resolveSignFaces(chest);
+        if (faces.length == 0) {
+            return signs;
+        }
         String adminShopHeader =
                 MsgUtil.getMessageOfflinePlayer("signs.header", null,MsgUtil.getMessageOfflinePlayer(
                         "admin-shop", Bukkit.getOfflinePlayer(this.getOwner())));
         String signHeaderUsername =
                 MsgUtil.getMessageOfflinePlayer("signs.header", null, this.ownerName(true));
-        for (Block b : blocks) {
-            if (b == null) {
-                Util.debugLog("Null signs in the queue, skipping");
+        for (BlockFace face : faces) {
+            BlockState state = chest.getRelative(face).getState();
+            if (!(state instanceof Sign)) {
+                // The sign gone since resolved, rescan next time
+                invalidateSignCache();
                 continue;
             }
-
-            if (!(b.getState() instanceof Sign)) {
-                continue;
-            }
-            if (!isAttached(b)) {
-                continue;
-            }
-            Sign sign = (Sign) b.getState();
+            Sign sign = (Sign) state;
             String[] lines = sign.getLines();
             String header = lines[0];
             if (lines[0].isEmpty() && lines[1].isEmpty() && lines[2].isEmpty() && lines[3].isEmpty() ){
@@ -919,6 +1065,36 @@ public class ContainerShop implements Shop {
         return signs;
     }
 
+    /* Gets the faces of the wall signs attached to the shop, only the block types are checked so no BlockState created */
+    private @NotNull BlockFace[] resolveSignFaces(@NotNull Block chest) {
+        BlockFace[] faces = this.signFaces;
+        if (faces != null && isSignCacheFresh()) {
+            return faces;
+        }
+        List<BlockFace> found = new ArrayList<>(SIGN_FACES.length);
+        for (BlockFace face : SIGN_FACES) {
+            Block b = chest.getRelative(face);
+            if (Util.isWallSign(b.getType()) && isAttached(b)) {
+                found.add(face);
+            }
+        }
+        faces = found.toArray(new BlockFace[0]);
+        this.renderedLines = null;
+        this.signFacesAt = System.currentTimeMillis();
+        this.signFaces = faces;
+        return faces;
+    }
+
+    private boolean isSignCacheFresh() {
+        return this.signFaces != null && System.currentTimeMillis() - this.signFacesAt < SIGN_CACHE_MAX_AGE_MILLIS;
+    }
+
+    @Override
+    public void invalidateSignCache() {
+        this.signFaces = null;
+        this.renderedLines = null;
+    }
+
     /**
      * @return The list of players who can manage the shop.
      */
@@ -951,6 +1127,7 @@ public class ContainerShop implements Shop {
     @Override
     public void setUnlimited(boolean unlimited) {
         this.unlimited = unlimited;
+        markDirty(DatabaseHelper.SHOP_COLUMN_UNLIMITED);
         this.setSignText();
         update();
     }
@@ -1178,6 +1355,7 @@ public class ContainerShop implements Shop {
         this.extra.put(plugin.getName(), data);
         synchronized (this) {
             this.lastChangedAt = System.currentTimeMillis();
+            markDirty(DatabaseHelper.SHOP_COLUMN_EXTRA);
             this.update();
         }
     }
@@ -120,7 +120,7 @@ public abstract class DisplayItem {
      */
     @NotNull
     public static DisplayType getNowUsing() {
-        return DisplayType.fromID(plugin.getConfig().getInt("shop.display-type"));
+        return plugin.getConfigSnapshot().getDisplayType();
     }
 
     /**
@@ -27,6 +27,7 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.maxgamer.quickshop.util.matcher.item.ItemMatchKey;
 
 import java.util.List;
 import java.util.Map;
@@ -163,10 +164,27 @@ public interface Shop {
     void setSignText();
 
     /**
-     * Update shop data to database
+     * Update the changed shop data to database, do nothing if nothing changed since last update
      */
     void update();
 
+    /**
+     * Mark all shop data changed, call it if you changed the shop data without the setters
+     * (e.g modified the item or moderator directly), so the next {@link #update()} writes them.
+     * Do nothing by default, for the implementations always write all data on update.
+     */
+    default void setDirty() {
+    }
+
+    /**
+     * Gets is there any shop data changed but not updated to database
+     *
+     * @return The shop is dirty, always true by default since the changes are not tracked
+     */
+    default boolean isDirty() {
+        return true;
+    }
+
     /**
      * Get shop's item durability, if have.
      *
@@ -182,6 +200,17 @@ public interface Shop {
     @NotNull
     ItemStack getItem();
 
+    /**
+     * Get the precompiled match key of shop item, it is faster than matching with getItem() many times.
+     * The implementations should keep the key and rebuild it when the item changed, this default builds a new one every call.
+     *
+     * @return The match key of shop item
+     */
+    @NotNull
+    default ItemMatchKey getMatchKey() {
+        return new ItemMatchKey(getItem());
+    }
+
     /**
      * Set shop item's ItemStack
      *
@@ -267,6 +296,40 @@ public interface Shop {
      */
     int getRemainingStock();
 
+    /**
+     * Count the shop remaining space from the container now, without any cache.
+     * Use it to check a trade, the cached space may be outdated.
+     *
+     * @return Remaining space.
+     */
+    default int countRemainingSpace() {
+        return getRemainingSpace();
+    }
+
+    /**
+     * Count the shop remaining stock from the container now, without any cache.
+     * Use it to check a trade, the cached stock may be outdated.
+     *
+     * @return Remaining stock.
+     */
+    default int countRemainingStock() {
+        return getRemainingStock();
+    }
+
+    /**
+     * Drop the cached stock and space, call it after the container of shop changed.
+     * Do nothing by default, for the implementations without cache.
+     */
+    default void invalidateStockCache() {
+    }
+
+    /**
+     * Drop the cached sign positions and rendered lines, call it after a sign placed or broken next to the shop.
+     * Do nothing by default, for the implementations without cache.
+     */
+    default void invalidateSignCache() {
+    }
+
     /**
      * Get shop type
      *
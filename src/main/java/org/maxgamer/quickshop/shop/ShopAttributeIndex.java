@@ -0,0 +1,117 @@
+/*
+ * This file is a part of project QuickShop, the name is ShopAttributeIndex.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * The secondary index of shops, Attribute - Shops.
+ * <p>
+ * Shops are compared by identity, because the shop equals and hashCode changes when the shop changes.
+ * It also remember the attribute which the shop indexed with, so changed shop can be moved to the new bucket.
+ *
+ * @param <K> The attribute type
+ */
+class ShopAttributeIndex<K> {
+    private final Map<K, Set<Shop>> buckets = new HashMap<>();
+
+    private final Map<Shop, K> indexed = new IdentityHashMap<>();
+
+    /**
+     * Index the shop with the attribute, move it if it indexed with another attribute
+     *
+     * @param shop The shop
+     * @param key  The attribute
+     */
+    synchronized void put(@NotNull Shop shop, @NotNull K key) {
+        final K old = indexed.put(shop, key);
+        if (key.equals(old)) {
+            return;
+        }
+        if (old != null) {
+            removeFromBucket(old, shop);
+        }
+        buckets.computeIfAbsent(key, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(shop);
+    }
+
+    /**
+     * Move the shop to the new attribute, only if the shop already indexed
+     *
+     * @param shop The shop
+     * @param key  The new attribute
+     */
+    synchronized void update(@NotNull Shop shop, @NotNull K key) {
+        if (indexed.containsKey(shop)) {
+            put(shop, key);
+        }
+    }
+
+    synchronized void remove(@NotNull Shop shop) {
+        final K old = indexed.remove(shop);
+        if (old != null) {
+            removeFromBucket(old, shop);
+        }
+    }
+
+    private void removeFromBucket(@NotNull K key, @NotNull Shop shop) {
+        final Set<Shop> bucket = buckets.get(key);
+        if (bucket == null) {
+            return;
+        }
+        bucket.remove(shop);
+        if (bucket.isEmpty()) {
+            buckets.remove(key);
+        }
+    }
+
+    /**
+     * Gets the shops indexed with the attribute
+     *
+     * @param key The attribute
+     * @return The unmodifiable list of shops
+     */
+    @NotNull
+    synchronized List<Shop> get(@NotNull K key) {
+        final Set<Shop> bucket = buckets.get(key);
+        if (bucket == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(bucket));
+    }
+
+    /**
+     * Counts the shops indexed with the attribute without copying them
+     *
+     * @param key The attribute
+     * @return The amount of shops
+     */
+    synchronized int count(@NotNull K key) {
+        final Set<Shop> bucket = buckets.get(key);
+        return bucket == null ? 0 : bucket.size();
+    }
+
+    synchronized void clear() {
+        buckets.clear();
+        indexed.clear();
+    }
+
+}
@@ -0,0 +1,484 @@
+/*
+ * This file is a part of project QuickShop, the name is ShopIndex.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import lombok.Getter;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.maxgamer.quickshop.util.collection.LongObjectHashMap;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The index of all shops, World name - Chunk key - Block key - Shop.
+ * <p>
+ * Chunk and block coordinates are packed into primitive longs, so lookup a shop not need to
+ * clone or hash a Location and allocates nothing.
+ * Writes are guarded by a StampedLock, reads are optimistic and only take the read lock when
+ * they raced a write.
+ */
+public class ShopIndex {
+    private final Map<String, LongObjectHashMap<ChunkShops>> worlds = new ConcurrentHashMap<>();
+
+    private final StampedLock lock = new StampedLock();
+
+    private volatile int size;
+
+    /**
+     * Pack the chunk coordinates into a long
+     *
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     * @return The chunk key
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return (chunkX & 0xFFFFFFFFL) | ((chunkZ & 0xFFFFFFFFL) << 32);
+    }
+
+    /**
+     * Pack the block coordinates into a long, only unique in the same chunk
+     *
+     * @param x Block X
+     * @param y Block Y
+     * @param z Block Z
+     * @return The block key in the chunk
+     */
+    public static long blockKey(int x, int y, int z) {
+        return ((long) y << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    /**
+     * Gets the shop at the block
+     *
+     * @param world The world name
+     * @param x     Block X
+     * @param y     Block Y
+     * @param z     Block Z
+     * @return The shop, or null if not exists
+     */
+    public @Nullable Shop get(@NotNull String world, int x, int y, int z) {
+        final LongObjectHashMap<ChunkShops> inWorld = worlds.get(world);
+        if (inWorld == null) {
+            return null;
+        }
+        final long chunkKey = chunkKey(x >> 4, z >> 4);
+        final long blockKey = blockKey(x, y, z);
+        long stamp = lock.tryOptimisticRead();
+        Shop shop = lookup(inWorld, chunkKey, blockKey);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                shop = lookup(inWorld, chunkKey, blockKey);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return shop;
+    }
+
+    /**
+     * Gets the shop at the location
+     *
+     * @param location The location, only block coordinates are used
+     * @return The shop, or null if not exists
+     */
+    public @Nullable Shop get(@NotNull Location location) {
+        final World world = location.getWorld();
+        if (world == null) {
+            return null;
+        }
+        return get(world.getName(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    private static @Nullable Shop lookup(@NotNull LongObjectHashMap<ChunkShops> inWorld, long chunkKey, long blockKey) {
+        final ChunkShops inChunk = inWorld.get(chunkKey);
+        return inChunk == null ? null : inChunk.shops.get(blockKey);
+    }
+
+    /**
+     * Gets the shops in the chunk
+     *
+     * @param world  The world name
+     * @param chunkX Chunk X
+     * @param chunkZ Chunk Z
+     * @return The read-only view of shops in chunk, or null if this chunk never have a shop
+     */
+    public @Nullable ChunkShops getChunk(@NotNull String world, int chunkX, int chunkZ) {
+        final LongObjectHashMap<ChunkShops> inWorld = worlds.get(world);
+        if (inWorld == null) {
+            return null;
+        }
+        final long chunkKey = chunkKey(chunkX, chunkZ);
+        long stamp = lock.tryOptimisticRead();
+        ChunkShops inChunk = inWorld.get(chunkKey);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                inChunk = inWorld.get(chunkKey);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return inChunk;
+    }
+
+    /**
+     * Check is there any shop in the chunks of the block and its horizontal neighbours.
+     * <p>
+     * A shop can only be found at or attached to (double chest, sign) a block when this returns true,
+     * so it is the fast negative filter for the block events which almost never near a shop.
+     *
+     * @param world The world name
+     * @param x     Block X
+     * @param z     Block Z
+     * @return false if no shop at or next to the block for sure
+     */
+    public boolean hasShopsAround(@NotNull String world, int x, int z) {
+        final LongObjectHashMap<ChunkShops> inWorld = worlds.get(world);
+        if (inWorld == null) {
+            return false;
+        }
+        long stamp = lock.tryOptimisticRead();
+        boolean found = hasShopsAround(inWorld, x, z);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                found = hasShopsAround(inWorld, x, z);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    private static boolean hasShopsAround(@NotNull LongObjectHashMap<ChunkShops> inWorld, int x, int z) {
+        final int maxChunkX = (x + 1) >> 4;
+        final int maxChunkZ = (z + 1) >> 4;
+        for (int chunkX = (x - 1) >> 4; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = (z - 1) >> 4; chunkZ <= maxChunkZ; chunkZ++) {
+                final ChunkShops inChunk = inWorld.get(chunkKey(chunkX, chunkZ));
+                if (inChunk != null && !inChunk.shops.isEmpty()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets all chunks which had shops in the world
+     *
+     * @param world The world name
+     * @return The chunks snapshot, or null if this world never have a shop
+     */
+    public @Nullable List<ChunkShops> getChunks(@NotNull String world) {
+        final LongObjectHashMap<ChunkShops> inWorld = worlds.get(world);
+        if (inWorld == null) {
+            return null;
+        }
+        final long stamp = lock.readLock();
+        try {
+            final List<ChunkShops> chunks = new ArrayList<>(inWorld.size());
+            inWorld.copyValuesTo(chunks);
+            return chunks;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets the shops in the chunks in the range, no chunk will be loaded
+     *
+     * @param world     The world name
+     * @param minChunkX Min chunk X, inclusive
+     * @param minChunkZ Min chunk Z, inclusive
+     * @param maxChunkX Max chunk X, inclusive
+     * @param maxChunkZ Max chunk Z, inclusive
+     * @return The shops snapshot
+     */
+    public @NotNull List<Shop> getShopsInChunks(@NotNull String world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+        final List<Shop> shops = new ArrayList<>();
+        final LongObjectHashMap<ChunkShops> inWorld = worlds.get(world);
+        if (inWorld == null) {
+            return shops;
+        }
+        final long area = ((long) maxChunkX - minChunkX + 1) * ((long) maxChunkZ - minChunkZ + 1);
+        final long stamp = lock.readLock();
+        try {
+            if (area > inWorld.size()) {
+                // Less chunks have shops than the chunks in range, walk the chunks have shops instead
+                inWorld.forEachValue(inChunk -> {
+                    if (inChunk.x >= minChunkX && inChunk.x <= maxChunkX && inChunk.z >= minChunkZ && inChunk.z <= maxChunkZ) {
+                        inChunk.shops.copyValuesTo(shops);
+                    }
+                });
+                return shops;
+            }
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    final ChunkShops inChunk = inWorld.get(chunkKey(chunkX, chunkZ));
+                    if (inChunk != null) {
+                        inChunk.shops.copyValuesTo(shops);
+                    }
+                }
+            }
+            return shops;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets all chunks which had shops in all worlds
+     *
+     * @return The chunks snapshot
+     */
+    public @NotNull List<ChunkShops> getChunks() {
+        final long stamp = lock.readLock();
+        try {
+            final List<ChunkShops> chunks = new ArrayList<>();
+            for (LongObjectHashMap<ChunkShops> inWorld : worlds.values()) {
+                inWorld.copyValuesTo(chunks);
+            }
+            return chunks;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets the world names which had shops
+     *
+     * @return The world names
+     */
+    public @NotNull Set<String> getWorlds() {
+        return Collections.unmodifiableSet(worlds.keySet());
+    }
+
+    /**
+     * Put the shop into index, replace the exists shop at the same block
+     *
+     * @param world The world name
+     * @param shop  The shop
+     * @return The replaced shop, or null
+     */
+    public @Nullable Shop put(@NotNull String world, @NotNull Shop shop) {
+        final Location loc = shop.getLocation();
+        final int chunkX = loc.getBlockX() >> 4;
+        final int chunkZ = loc.getBlockZ() >> 4;
+        final long stamp = lock.writeLock();
+        try {
+            final LongObjectHashMap<ChunkShops> inWorld = worlds.computeIfAbsent(world, k -> new LongObjectHashMap<>());
+            final long chunkKey = chunkKey(chunkX, chunkZ);
+            ChunkShops inChunk = inWorld.get(chunkKey);
+            if (inChunk == null) {
+                inChunk = new ChunkShops(world, chunkX, chunkZ);
+                inWorld.put(chunkKey, inChunk);
+            }
+            final Shop old = inChunk.shops.put(blockKey(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()), shop);
+            if (old == null) {
+                size++;
+            }
+            return old;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove the shop at the block from index
+     *
+     * @param world The world name
+     * @param x     Block X
+     * @param y     Block Y
+     * @param z     Block Z
+     * @return The removed shop, or null
+     */
+    public @Nullable Shop remove(@NotNull String world, int x, int y, int z) {
+        final LongObjectHashMap<ChunkShops> inWorld = worlds.get(world);
+        if (inWorld == null) {
+            return null;
+        }
+        final long stamp = lock.writeLock();
+        try {
+            final ChunkShops inChunk = inWorld.get(chunkKey(x >> 4, z >> 4));
+            if (inChunk == null) {
+                return null;
+            }
+            final Shop old = inChunk.shops.remove(blockKey(x, y, z));
+            if (old != null) {
+                size--;
+            }
+            return old;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Gets how many shops in the index
+     *
+     * @return The shops count
+     */
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        final long stamp = lock.writeLock();
+        try {
+            worlds.clear();
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * The read-only Location - Shop view of the shops in a chunk.
+     * Iterating it iterates a snapshot, so it is safe to create or remove shops while iterating.
+     */
+    public final class ChunkShops extends AbstractMap<Location, Shop> {
+        @Getter
+        @NotNull
+        private final String world;
+        @Getter
+        private final int x;
+        @Getter
+        private final int z;
+
+        private final LongObjectHashMap<Shop> shops = new LongObjectHashMap<>();
+
+        private ChunkShops(@NotNull String world, int x, int z) {
+            this.world = world;
+            this.x = x;
+            this.z = z;
+        }
+
+        public @NotNull ShopChunk getShopChunk() {
+            return new ShopChunk(world, x, z);
+        }
+
+        /**
+         * Gets the shop at the block
+         *
+         * @param blockX Block X
+         * @param blockY Block Y
+         * @param blockZ Block Z
+         * @return The shop, or null
+         */
+        public @Nullable Shop getShop(int blockX, int blockY, int blockZ) {
+            if (blockX >> 4 != x || blockZ >> 4 != z) {
+                return null;
+            }
+            final long blockKey = blockKey(blockX, blockY, blockZ);
+            long stamp = lock.tryOptimisticRead();
+            Shop shop = shops.get(blockKey);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    shop = shops.get(blockKey);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return shop;
+        }
+
+        @Override
+        public @Nullable Shop get(@Nullable Object key) {
+            if (!(key instanceof Location)) {
+                return null;
+            }
+            final Location loc = (Location) key;
+            if (loc.getWorld() != null && !loc.getWorld().getName().equals(world)) {
+                return null;
+            }
+            return getShop(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+        }
+
+        @Override
+        public boolean containsKey(@Nullable Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            long stamp = lock.tryOptimisticRead();
+            int size = shops.size();
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    size = shops.size();
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        /**
+         * Gets the snapshot of the shops in this chunk
+         *
+         * @return The shops
+         */
+        @Override
+        public @NotNull Collection<Shop> values() {
+            final long stamp = lock.readLock();
+            try {
+                final List<Shop> snapshot = new ArrayList<>(shops.size());
+                shops.copyValuesTo(snapshot);
+                return snapshot;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @Override
+        public @NotNull Set<Entry<Location, Shop>> entrySet() {
+            final Collection<Shop> snapshot = values();
+            final Set<Entry<Location, Shop>> entries = new LinkedHashSet<>(snapshot.size() * 2);
+            for (Shop shop : snapshot) {
+                entries.add(new SimpleImmutableEntry<>(shop.getLocation(), shop));
+            }
+            return Collections.unmodifiableSet(entries);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+}
@@ -30,6 +30,7 @@ import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
@@ -37,28 +38,38 @@ import org.maxgamer.quickshop.util.JsonUtil;
 import org.maxgamer.quickshop.util.Timer;
 import org.maxgamer.quickshop.util.Util;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
  * A class allow plugin load shops fast and simply.
  */
 public class ShopLoader {
-    private final List<Long> loadTimes = new ArrayList<>();
-
-    private final Map<Timer, Double> costCache = new HashMap<>();
+    /* How many rows decoded in one task */
+    private static final int DECODE_CHUNK_SIZE = 256;
 
     private final QuickShop plugin;
     /* This may contains broken shop, must use null check before load it. */
-    private final List<Shop> shopsInDatabase = new CopyOnWriteArrayList<>();
-    private final List<ShopDatabaseInfoOrigin> originShopsInDatabase = new CopyOnWriteArrayList<>();
-    private int errors;
+    /* Keyed by the shop location, so loading a world again replaces its rows instead of appending */
+    private final Map<String, Shop> shopsInDatabase = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, ShopDatabaseInfoOrigin> originShopsInDatabase = Collections.synchronizedMap(new LinkedHashMap<>());
+    /* The shops in loaded chunks which waiting for onLoad, grouped by chunk */
+    private final Map<ShopChunk, List<Shop>> pendingMaterialize = new LinkedHashMap<>();
+    private final AtomicInteger errors = new AtomicInteger();
     private int loadAfterChunkLoaded = 0;
     private int loadAfterWorldLoaded = 0;
     private int totalLoaded = 0;
+    private boolean backupedDatabaseInDeleteProcess = false;
+    @Nullable
+    private BukkitTask materializeTask;
+    /* The time budget per tick of the materializeTask, read when the task scheduled */
+    private long materializeBudgetNanos;
 
     /**
      * The shop load allow plugin load shops fast and simply.
@@ -74,83 +85,73 @@ public class ShopLoader {
     }
 
     /**
-     * Load all shops
+     * Load all shops, or the shops in the world only
+     * <p>
+     * The rows are streamed from the database, the items and moderators are decoded on worker threads,
+     * and the shops are registered on the main thread in the order of rows.
+     * The shops in loaded chunks are materialized (onLoad) later, chunk by chunk within a time budget per tick.
      *
-     * @param worldName The world name
+     * @param worldName The world name, or null to load all worlds
      */
     public void loadShops(@Nullable String worldName) {
-        boolean backupedDatabaseInDeleteProcess = false;
         Timer totalLoadTimer = new Timer(true);
+        final int decodeThreads = getDecodeThreads();
+        final AtomicInteger threadId = new AtomicInteger();
+        final ExecutorService decoder = Executors.newFixedThreadPool(decodeThreads, runnable -> {
+            Thread thread = new Thread(runnable, "QuickShop-ShopLoader-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        final Deque<Future<List<ShopDatabaseInfo>>> decoding = new ArrayDeque<>();
+        final int loadedBefore = totalLoaded;
+        Connection connection = null;
+        boolean broken = false;
         try {
             this.plugin.getLogger().info("Loading shops from the database...");
             Timer fetchTimer = new Timer(true);
-            ResultSet rs = plugin.getDatabaseHelper().selectAllShops();
+            connection = plugin.getDatabase().borrowConnection();
+            final int fetchSize = plugin.getConfig().getInt("shop.loading.fetch-size", 1000);
+            ResultSet rs = worldName == null
+                    ? plugin.getDatabaseHelper().selectAllShops(connection, fetchSize)
+                    : plugin.getDatabaseHelper().selectShopsInWorld(connection, fetchSize, worldName);
+            try {
+                List<ShopDatabaseInfoOrigin> rows = new ArrayList<>(DECODE_CHUNK_SIZE);
+                while (rs.next()) {
+                    ShopDatabaseInfoOrigin origin = new ShopDatabaseInfoOrigin(rs);
+                    originShopsInDatabase.put(registryKey(origin.getWorld(), origin.getX(), origin.getY(), origin.getZ()), origin);
+                    rows.add(origin);
+                    if (rows.size() >= DECODE_CHUNK_SIZE) {
+                        decoding.add(decoder.submit(decodeTask(rows)));
+                        rows = new ArrayList<>(DECODE_CHUNK_SIZE);
+                        // Register the decoded shops while streaming, and keep the decoded rows in memory bounded
+                        registerDecoded(decoding, decoding.size() >= decodeThreads * 4);
+                    }
+                }
+                if (!rows.isEmpty()) {
+                    decoding.add(decoder.submit(decodeTask(rows)));
+                }
+            } finally {
+                Statement st = rs.getStatement();
+                rs.close();
+                st.close();
+            }
             this.plugin
                     .getLogger()
                     .info("Used " + fetchTimer.endTimer() + "ms to fetch all shops from the database.");
-            while (rs.next()) {
-                Timer singleShopLoadTimer = new Timer(true);
-                ShopDatabaseInfoOrigin origin = new ShopDatabaseInfoOrigin(rs);
-                originShopsInDatabase.add(origin);
-                if (worldName != null && !origin.getWorld().equals(worldName)) {
-                    singleShopLoaded(singleShopLoadTimer);
-                    continue;
-                }
-                ShopDatabaseInfo data = new ShopDatabaseInfo(origin);
-                Shop shop =
-                        new ContainerShop(plugin,
-                                data.getLocation(),
-                                data.getPrice(),
-                                data.getItem(),
-                                data.getModerators(),
-                                data.isUnlimited(),
-                                data.getType(),
-                                data.getExtra());
-                shopsInDatabase.add(shop);
-                this.costCalc(singleShopLoadTimer);
-                if (shopNullCheck(shop)) {
-                    Util.debugLog("Somethings gone wrong, skipping the loading...");
-                    loadAfterWorldLoaded++;
-                    singleShopLoaded(singleShopLoadTimer);
-                    continue;
-                }
-                // Load to RAM
-                plugin.getShopManager().loadShop(data.getWorld().getName(), shop);
-                if (Util.isLoaded(shop.getLocation())) {
-                    // Load to World
-                    if (!Util.canBeShop(shop.getLocation().getBlock())) {
-                        Util.debugLog("Target block can't be a shop, removing it from the database...");
-                        // shop.delete();
-                        plugin.getShopManager().removeShop(shop); // Remove from Mem
-                        if (!backupedDatabaseInDeleteProcess) { // Only backup db one time.
-                            backupedDatabaseInDeleteProcess = Util.backupDatabase();
-                            if (backupedDatabaseInDeleteProcess) {
-                                plugin.getDatabaseHelper().removeShop(shop);
-                            }
-                        } else {
-                            plugin.getDatabaseHelper().removeShop(shop);
-                        }
-                        singleShopLoaded(singleShopLoadTimer);
-                        continue;
-                    }
-                    shop.onLoad();
-                    shop.update();
-                } else {
-                    loadAfterChunkLoaded++;
-                }
-                singleShopLoaded(singleShopLoadTimer);
+            while (!decoding.isEmpty()) {
+                registerDecoded(decoding, true);
             }
             long totalUsedTime = totalLoadTimer.endTimer();
-            long avgPerShop = mean(loadTimes.toArray(new Long[0]));
+            int loaded = totalLoaded - loadedBefore;
             this.plugin
                     .getLogger()
                     .info(
                             "Successfully loaded "
-                                    + totalLoaded
+                                    + loaded
                                     + " shops! (Used "
                                     + totalUsedTime
                                     + "ms, Avg "
-                                    + avgPerShop
+                                    + (loaded == 0 ? 0 : String.format("%.3f", (double) totalUsedTime / loaded))
                                     + "ms per shop)");
             this.plugin
                     .getLogger()
@@ -160,20 +161,149 @@ public class ShopLoader {
                                     + this.loadAfterWorldLoaded
                                     + " shops will load after the world has loaded.");
         } catch (Exception e) {
+            if (e instanceof SQLException) {
+                broken = true;
+            }
             exceptionHandler(e, null);
+        } finally {
+            decoder.shutdownNow();
+            if (connection != null) {
+                plugin.getDatabase().returnConnection(connection, broken);
+            }
+        }
+    }
+
+    private int getDecodeThreads() {
+        int threads = plugin.getConfig().getInt("shop.loading.decode-threads", 0);
+        if (threads <= 0) {
+            // Keep a core for the main thread which registering the shops
+            threads = Runtime.getRuntime().availableProcessors() - 1;
+        }
+        return Math.max(1, threads);
+    }
+
+    @NotNull
+    private Callable<List<ShopDatabaseInfo>> decodeTask(@NotNull List<ShopDatabaseInfoOrigin> rows) {
+        return () -> {
+            List<ShopDatabaseInfo> decoded = new ArrayList<>(rows.size());
+            for (ShopDatabaseInfoOrigin origin : rows) {
+                decoded.add(new ShopDatabaseInfo(origin, false));
+            }
+            return decoded;
+        };
+    }
+
+    /**
+     * Register the decoded shops in the order of rows
+     *
+     * @param decoding The decoding tasks
+     * @param waitHead Wait the first task if it not finished yet
+     * @throws InterruptedException Interrupted when waiting
+     */
+    private void registerDecoded(@NotNull Deque<Future<List<ShopDatabaseInfo>>> decoding, boolean waitHead) throws InterruptedException {
+        while (!decoding.isEmpty() && (waitHead || decoding.peekFirst().isDone())) {
+            waitHead = false;
+            List<ShopDatabaseInfo> decoded;
+            try {
+                decoded = decoding.pollFirst().get();
+            } catch (ExecutionException e) {
+                exceptionHandler(e.getCause() instanceof Exception ? (Exception) e.getCause() : e, null);
+                continue;
+            }
+            for (ShopDatabaseInfo data : decoded) {
+                registerShop(data);
+            }
         }
     }
 
-    private void singleShopLoaded(@NotNull Timer singleShopLoadTimer) {
+    private void registerShop(@NotNull ShopDatabaseInfo data) {
+        data.resolveLocation();
+        if (data.getItem() == null || data.getModerators() == null || data.getLocation() == null) {
+            Util.debugLog("Somethings gone wrong, skipping the loading...");
+            return;
+        }
+        Shop shop =
+                new ContainerShop(plugin,
+                        data.getLocation(),
+                        data.getPrice(),
+                        data.getItem(),
+                        data.getModerators(),
+                        data.isUnlimited(),
+                        data.getType(),
+                        data.getExtra());
+        shopsInDatabase.put(registryKey(data.getWorldName(), data.getX(), data.getY(), data.getZ()), shop);
         totalLoaded++;
-        long singleShopLoadTime = singleShopLoadTimer.endTimer();
-        loadTimes.add(singleShopLoadTime);
-        Util.debugLog("Loaded shop used time " + singleShopLoadTime + "ms");
+        if (shopNullCheck(shop)) {
+            Util.debugLog("Somethings gone wrong, skipping the loading...");
+            loadAfterWorldLoaded++;
+            return;
+        }
+        // Load to RAM
+        plugin.getShopManager().loadShop(data.getWorld().getName(), shop);
+        if (data.isNeedUpdate()) {
+            // Only write back the shops which data upgraded, the others are unchanged
+            shop.setDirty();
+            shop.update();
+        }
+        if (Util.isLoaded(shop.getLocation())) {
+            // Load to World later
+            Location loc = shop.getLocation();
+            pendingMaterialize
+                    .computeIfAbsent(new ShopChunk(data.getWorld().getName(), loc.getBlockX() >> 4, loc.getBlockZ() >> 4), k -> new ArrayList<>())
+                    .add(shop);
+            if (materializeTask == null) {
+                materializeBudgetNanos = TimeUnit.MILLISECONDS.toNanos(plugin.getConfig().getLong("shop.loading.materialize-budget", 10));
+                materializeTask = Bukkit.getScheduler().runTaskTimer(plugin, this::materializePending, 1, 1);
+            }
+        } else {
+            loadAfterChunkLoaded++;
+        }
     }
 
-    private double costCalc(@NotNull Timer timer) {
-        costCache.putIfAbsent(timer, (double) timer.getTimer());
-        return timer.getTimer() - costCache.get(timer);
+    /**
+     * Load the pending shops to world, stop at the chunk which exceeded the time budget of this tick
+     */
+    private void materializePending() {
+        final long deadline = System.nanoTime() + materializeBudgetNanos;
+        Iterator<List<Shop>> it = pendingMaterialize.values().iterator();
+        while (it.hasNext() && System.nanoTime() < deadline) {
+            List<Shop> inChunk = it.next();
+            it.remove();
+            for (Shop shop : inChunk) {
+                materialize(shop);
+            }
+        }
+        if (pendingMaterialize.isEmpty() && materializeTask != null) {
+            materializeTask.cancel();
+            materializeTask = null;
+        }
+    }
+
+    private void materialize(@NotNull Shop shop) {
+        Location loc = shop.getLocation();
+        if (plugin.getShopManager().getShop(loc) != shop) {
+            // Removed or replaced while waiting
+            return;
+        }
+        if (!Util.isLoaded(loc)) {
+            // Chunk unloaded while waiting, it will load with the chunk
+            return;
+        }
+        if (!Util.canBeShop(loc.getBlock())) {
+            Util.debugLog("Target block can't be a shop, removing it from the database...");
+            // shop.delete();
+            plugin.getShopManager().removeShop(shop); // Remove from Mem
+            if (!backupedDatabaseInDeleteProcess) { // Only backup db one time.
+                backupedDatabaseInDeleteProcess = Util.backupDatabase();
+                if (backupedDatabaseInDeleteProcess) {
+                    plugin.getDatabaseHelper().removeShop(shop);
+                }
+            } else {
+                plugin.getDatabaseHelper().removeShop(shop);
+            }
+            return;
+        }
+        shop.onLoad();
     }
 
     @SuppressWarnings("ConstantConditions")
@@ -208,19 +338,8 @@ public class ShopLoader {
         return false;
     }
 
-    private @NotNull Long mean(Long[] m) {
-        long sum = 0;
-        for (Long aM : m) {
-            sum += aM;
-        }
-        if (m.length == 0) {
-            return sum;
-        }
-        return sum / m.length;
-    }
-
     private void exceptionHandler(@NotNull Exception ex, @Nullable Location shopLocation) {
-        errors++;
+        int errors = this.errors.incrementAndGet();
         Logger logger = plugin.getLogger();
         logger.warning("##########FAILED TO LOAD SHOP##########");
         logger.warning("  >> Error Info:");
@@ -272,7 +391,7 @@ public class ShopLoader {
             boolean success = false;
             try {
                 ShopDatabaseInfoOrigin shopDatabaseInfoOrigin = gson.fromJson(shopStr, ShopDatabaseInfoOrigin.class);
-                originShopsInDatabase.add(shopDatabaseInfoOrigin);
+                originShopsInDatabase.put(registryKey(shopDatabaseInfoOrigin.getWorld(), shopDatabaseInfoOrigin.getX(), shopDatabaseInfoOrigin.getY(), shopDatabaseInfoOrigin.getZ()), shopDatabaseInfoOrigin);
                 ShopDatabaseInfo data = new ShopDatabaseInfo(shopDatabaseInfoOrigin);
                 Shop shop =
                         new ContainerShop(plugin,
@@ -283,7 +402,7 @@ public class ShopLoader {
                                 data.isUnlimited(),
                                 data.getType(),
                                 data.getExtra());
-                shopsInDatabase.add(shop);
+                shopsInDatabase.put(registryKey(shopDatabaseInfoOrigin.getWorld(), shopDatabaseInfoOrigin.getX(), shopDatabaseInfoOrigin.getY(), shopDatabaseInfoOrigin.getZ()), shop);
                 if (shopNullCheck(shop)) {
                     continue;
                 }
@@ -291,7 +410,6 @@ public class ShopLoader {
                 Bukkit.getScheduler().runTask(plugin, () -> {
                     plugin.getDatabaseHelper().createShop(shop, null, null);
                     plugin.getShopManager().loadShop(data.getWorld().getName(), shop);
-                    shop.update();
                 });
 
                 success = true;
@@ -301,14 +419,22 @@ public class ShopLoader {
         }
     }
 
+    private static String registryKey(String world, int x, int y, int z) {
+        return world + ":" + x + ":" + y + ":" + z;
+    }
+
     @NotNull
     public List<Shop> getShopsInDatabase() {
-        return new ArrayList<>(shopsInDatabase);
+        synchronized (shopsInDatabase) {
+            return new ArrayList<>(shopsInDatabase.values());
+        }
     }
 
     @NotNull
     public List<ShopDatabaseInfoOrigin> getOriginShopsInDatabase() {
-        return new ArrayList<>(originShopsInDatabase);
+        synchronized (originShopsInDatabase) {
+            return new ArrayList<>(originShopsInDatabase.values());
+        }
     }
 
     @Getter
@@ -336,7 +462,22 @@ public class ShopLoader {
 
         private Map<String, Map<String, String>> extra;
 
+        private String worldName;
+
+        /* The data upgraded from the legacy format, need write back to database */
+        private boolean needUpdate;
+
         ShopDatabaseInfo(ShopDatabaseInfoOrigin origin) {
+            this(origin, true);
+        }
+
+        /**
+         * Decode the shop data
+         *
+         * @param origin          The raw data
+         * @param resolveLocation Resolve the world and location now, must be false if not on the main thread
+         */
+        ShopDatabaseInfo(ShopDatabaseInfoOrigin origin, boolean resolveLocation) {
             try {
                 this.x = origin.getX();
                 this.y = origin.getY();
@@ -344,17 +485,33 @@ public class ShopLoader {
                 this.price = origin.getPrice();
                 this.unlimited = origin.isUnlimited();
                 this.type = ShopType.fromID(origin.getType());
-                this.world = Bukkit.getWorld(origin.getWorld());
+                this.worldName = origin.getWorld();
                 this.item = deserializeItem(origin.getItem());
                 this.moderators = deserializeModerator(origin.getModerators());
-                this.location = new Location(world, x, y, z);
                 //noinspection unchecked
                 this.extra = JsonUtil.getGson().fromJson(origin.getExtra(), Map.class);
+                if (this.extra == null) {
+                    this.extra = new HashMap<>();
+                }
+                if (resolveLocation) {
+                    resolveLocation();
+                }
             } catch (Exception ex) {
                 exceptionHandler(ex, this.location);
             }
         }
 
+        /**
+         * Resolve the world and the location of the shop, call it on the main thread
+         */
+        void resolveLocation() {
+            if (this.location != null || this.worldName == null) {
+                return;
+            }
+            this.world = Bukkit.getWorld(this.worldName);
+            this.location = new Location(world, x, y, z);
+        }
+
         private @Nullable ItemStack deserializeItem(@NotNull String itemConfig) {
             try {
                 return Util.deserialize(itemConfig);
@@ -373,12 +530,14 @@ public class ShopLoader {
             ShopModerator shopModerator;
             if (Util.isUUID(moderatorJson)) {
                 Util.debugLog("Updating old shop data... for " + moderatorJson);
+                needUpdate = true;
                 shopModerator = new ShopModerator(UUID.fromString(moderatorJson)); // New one
             } else {
                 try {
                     shopModerator = ShopModerator.deserialize(moderatorJson);
                 } catch (JsonSyntaxException ex) {
                     Util.debugLog("Updating old shop data... for " + moderatorJson);
+                    needUpdate = true;
                     moderatorJson = Bukkit.getOfflinePlayer(moderatorJson).getUniqueId().toString();
                     shopModerator = new ShopModerator(UUID.fromString(moderatorJson)); // New one
                 }
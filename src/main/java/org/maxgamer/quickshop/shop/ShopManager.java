@@ -19,7 +19,6 @@
 
 package org.maxgamer.quickshop.shop;
 
-import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import lombok.Getter;
@@ -31,6 +30,7 @@ import org.bukkit.block.Sign;
 import org.bukkit.block.data.Waterlogged;
 import org.bukkit.block.data.type.WallSign;
 import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
@@ -48,13 +48,29 @@ import org.maxgamer.quickshop.util.holder.Result;
 import java.text.DecimalFormat;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 /**
  * Manage a lot of shops.
  */
 public class ShopManager {
 
-    private final Map<String, Map<ShopChunk, Map<Location, Shop>>> shops = Maps.newConcurrentMap();
+    @Getter
+    private final ShopIndex shopIndex = new ShopIndex();
+
+    private final ShopAttributeIndex<UUID> ownerIndex = new ShopAttributeIndex<>();
+
+    private final ShopAttributeIndex<String> worldIndex = new ShopAttributeIndex<>();
+
+    private final ShopAttributeIndex<Material> materialIndex = new ShopAttributeIndex<>();
+
+    private final ShopNameIndex nameIndex = new ShopNameIndex();
+
+    /* The time to resolve the item names per tick when building the name index async, in nanoseconds */
+    private static final long NAME_INDEX_BUILD_BUDGET = 2_000_000L;
+
+    /* How long the async search waits for the name index, in milliseconds */
+    private static final long NAME_INDEX_BUILD_TIMEOUT = 30_000L;
 
     private final Set<Shop> loadedShops = Sets.newConcurrentHashSet();
 
@@ -92,7 +108,7 @@ public class ShopManager {
             if (plugin.isLimit()) {
                 int owned = 0;
                 if (useOldCanBuildAlgorithm) {
-                    owned = getPlayerAllShops(p.getUniqueId()).size();
+                    owned = ownerIndex.count(p.getUniqueId());
                 } else {
                     for (final Shop shop : getPlayerAllShops(p.getUniqueId())) {
                         if (!shop.isUnlimited()) {
@@ -112,11 +128,20 @@ public class ShopManager {
 
     /**
      * Returns a map of World - Chunk - Shop
+     * <p>
+     * The map is a snapshot built from the shop index, changes to it won't be written back.
      *
      * @return a map of World - Chunk - Shop
      */
     public @NotNull Map<String, Map<ShopChunk, Map<Location, Shop>>> getShops() {
-        return this.shops;
+        final Map<String, Map<ShopChunk, Map<Location, Shop>>> snapshot = new HashMap<>();
+        for (String world : shopIndex.getWorlds()) {
+            final Map<ShopChunk, Map<Location, Shop>> inWorld = getShops(world);
+            if (inWorld != null) {
+                snapshot.put(world, inWorld);
+            }
+        }
+        return Collections.unmodifiableMap(snapshot);
     }
 
     /**
@@ -148,7 +173,11 @@ public class ShopManager {
             }
         }
         this.actions.clear();
-        this.shops.clear();
+        this.shopIndex.clear();
+        this.ownerIndex.clear();
+        this.worldIndex.clear();
+        this.materialIndex.clear();
+        this.nameIndex.invalidate();
     }
 
     /**
@@ -166,21 +195,41 @@ public class ShopManager {
     }
 
     public @Nullable Map<Location, Shop> getShops(@NotNull String world, int chunkX, int chunkZ) {
-        final Map<ShopChunk, Map<Location, Shop>> inWorld = this.getShops(world);
-        if (inWorld == null) {
-            return null;
-        }
-        return inWorld.get(new ShopChunk(world, chunkX, chunkZ));
+        return shopIndex.getChunk(world, chunkX, chunkZ);
     }
 
     /**
      * Returns a map of Chunk - Shop
+     * <p>
+     * The map is a snapshot built from the shop index, changes to it won't be written back.
      *
      * @param world The name of the world (case sensitive) to get the list of shops from
      * @return a map of Chunk - Shop
      */
     public @Nullable Map<ShopChunk, Map<Location, Shop>> getShops(@NotNull String world) {
-        return this.shops.get(world);
+        final List<ShopIndex.ChunkShops> chunks = shopIndex.getChunks(world);
+        if (chunks == null) {
+            return null;
+        }
+        final Map<ShopChunk, Map<Location, Shop>> inWorld = new HashMap<>(chunks.size() * 2);
+        for (ShopIndex.ChunkShops inChunk : chunks) {
+            inWorld.put(inChunk.getShopChunk(), inChunk);
+        }
+        return Collections.unmodifiableMap(inWorld);
+    }
+
+    /**
+     * Check is there any shop may at or attached to the location, without any block access.
+     *
+     * @param loc The location
+     * @return false if no shop can be found at or attached to the location for sure
+     */
+    public boolean hasShopsAround(@NotNull Location loc) {
+        final World world = loc.getWorld();
+        if (world == null) {
+            return false;
+        }
+        return shopIndex.hasShopsAround(world.getName(), loc.getBlockX(), loc.getBlockZ());
     }
 
     /**
@@ -282,18 +331,8 @@ public class ShopManager {
                 return null;
             }
         }
-        final Map<Location, Shop> inChunk = getShops(loc.getChunk());
-        if (inChunk == null) {
-            return null;
-        }
-        loc = loc.clone();
-        // Fix double chest XYZ issue
-        loc.setX(loc.getBlockX());
-        loc.setY(loc.getBlockY());
-        loc.setZ(loc.getBlockZ());
-        // We can do this because WorldListener updates the world reference so
-        // the world in loc is the same as world in inChunk.get(loc)
-        return inChunk.get(loc);
+        // Index is keyed by block coordinates, so double chest XYZ issue is fixed without clone the location
+        return shopIndex.get(loc);
     }
 
     /**
@@ -320,7 +359,7 @@ public class ShopManager {
         }
 
         if (this.useFastShopSearchAlgorithm) {
-            return getShopIncludeAttached_Fast(loc, false, useCache);
+            return getShopIncludeAttached_Fast(loc, false);
         } else {
             return getShopIncludeAttached_Classic(loc);
         }
@@ -328,28 +367,21 @@ public class ShopManager {
 
     public @Nullable Shop getShopIncludeAttached_Classic(@NotNull Location loc) {
         @Nullable Shop shop;
-// Get location's chunk all shops
-        @Nullable Map<Location, Shop> inChunk = getShops(loc.getChunk());
-        // Found some shops in this chunk.
-        if (inChunk != null) {
-            shop = inChunk.get(loc);
-            if (shop != null) {
-                // Okay, shop was founded.
-                return shop;
-            }
-            // Ooops, not founded that shop in this chunk.
+        // Get the shop at this location
+        shop = shopIndex.get(loc);
+        if (shop != null) {
+            // Okay, shop was founded.
+            return shop;
         }
+        // Ooops, not founded that shop at this location.
         @Nullable Block secondHalfShop = Util.getSecondHalf(loc.getBlock());
         if (secondHalfShop != null) {
-            inChunk = getShops(secondHalfShop.getChunk());
-            if (inChunk != null) {
-                shop = inChunk.get(secondHalfShop.getLocation());
-                if (shop != null) {
-                    // Okay, shop was founded.
-                    return shop;
-                }
-                // Oooops, no any shops matched.
+            shop = shopIndex.get(secondHalfShop.getLocation());
+            if (shop != null) {
+                // Okay, shop was founded.
+                return shop;
             }
+            // Oooops, no any shops matched.
         }
 
         //only check if is sign
@@ -362,15 +394,7 @@ public class ShopManager {
                 return null;
             } else {
                 // Okay we know it on some blocks.
-                // We need set new location and chunk.
-                inChunk = getShops(attachedBlock.getChunk());
-                // Found some shops in this chunk
-                if (inChunk != null) {
-                    shop = inChunk.get(attachedBlock.getLocation());
-                    // Okay, shop was founded.
-                    return shop;
-                    // Oooops, no any shops matched.
-                }
+                return shopIndex.get(attachedBlock.getLocation());
             }
         }
         return null;
@@ -426,22 +450,16 @@ public class ShopManager {
      * @param shop  The shop to add
      */
     public void addShop(@NotNull String world, @NotNull Shop shop) {
-        Map<ShopChunk, Map<Location, Shop>> inWorld = this.getShops().computeIfAbsent(world, k -> new MapMaker().initialCapacity(3).makeMap());
-        // There's no world storage yet. We need to create that map.
-        // Put it in the data universe
-        // Calculate the chunks coordinates. These are 1,2,3 for each chunk, NOT
-        // location rounded to the nearest 16.
-        int x = (int) Math.floor((shop.getLocation().getBlockX()) / 16.0);
-        int z = (int) Math.floor((shop.getLocation().getBlockZ()) / 16.0);
-        // Get the chunk set from the world info
-        ShopChunk shopChunk = new ShopChunk(world, x, z);
-        Map<Location, Shop> inChunk = inWorld.computeIfAbsent(shopChunk, k -> new MapMaker().initialCapacity(1).makeMap());
-        // That chunk data hasn't been created yet - Create it!
-        // Put it in the world
-        // Put the shop in its location in the chunk list.
-        inChunk.put(shop.getLocation(), shop);
+        final Shop replaced = shopIndex.put(world, shop);
+        if (replaced != null && replaced != shop) {
+            removeFromIndexes(replaced);
+        }
+        ownerIndex.put(shop, shop.getOwner());
+        worldIndex.put(shop, world);
+        materialIndex.put(shop, shop.getItem().getType());
+        nameIndex.put(shop);
+        invalidateCache(world, shop.getLocation());
         // shop.onLoad();
-
     }
 
     /**
@@ -454,18 +472,144 @@ public class ShopManager {
         // shop.onUnload();
         Location loc = shop.getLocation();
         String world = Objects.requireNonNull(loc.getWorld()).getName();
-        Map<ShopChunk, Map<Location, Shop>> inWorld = this.getShops().get(world);
-        int x = (int) Math.floor((loc.getBlockX()) / 16.0);
-        int z = (int) Math.floor((loc.getBlockZ()) / 16.0);
-        ShopChunk shopChunk = new ShopChunk(world, x, z);
-        Map<Location, Shop> inChunk = inWorld.get(shopChunk);
-        if (inChunk == null) {
-            return;
+        final Shop removed = shopIndex.remove(world, loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+        if (removed != null && removed != shop) {
+            removeFromIndexes(removed);
         }
-        inChunk.remove(loc);
+        removeFromIndexes(shop);
+        invalidateCache(world, loc);
         // shop.onUnload();
     }
 
+    private void invalidateCache(@NotNull String world, @NotNull Location loc) {
+        if (plugin.getShopCache() != null) {
+            plugin.getShopCache().invalidateAround(world, loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+        }
+    }
+
+    private void removeFromIndexes(@NotNull Shop shop) {
+        ownerIndex.remove(shop);
+        worldIndex.remove(shop);
+        materialIndex.remove(shop);
+        nameIndex.remove(shop);
+    }
+
+    /**
+     * Update the owner and item indexes of the shop, call it after the shop owner or item changed.
+     * Do nothing if the shop not added to the ShopManager.
+     *
+     * @param shop The shop changed
+     */
+    public void reindexShop(@NotNull Shop shop) {
+        ownerIndex.update(shop, shop.getOwner());
+        materialIndex.update(shop, shop.getItem().getType());
+        if (shopIndex.get(shop.getLocation()) == shop) {
+            nameIndex.put(shop);
+        }
+    }
+
+    /**
+     * Search the shops which item name contains the keyword, ignoring case and colors.
+     * The item names index built on first search, on the main thread in slices when called async,
+     * the async caller waits for the build.
+     *
+     * @param keyword The keyword
+     * @return The identity set of the matched shops, include the shops in unloaded chunks
+     */
+    public @NotNull Set<Shop> searchShopsByItemName(@NotNull String keyword) {
+        final boolean primaryThread = Bukkit.isPrimaryThread();
+        if (!nameIndex.isBuilt()) {
+            buildItemNameIndex(primaryThread);
+        }
+        final Set<Shop> matched = nameIndex.search(keyword, primaryThread ? 0 : NAME_INDEX_BUILD_TIMEOUT);
+        return matched == null ? Collections.newSetFromMap(new IdentityHashMap<>()) : matched;
+    }
+
+    private void buildItemNameIndex(boolean primaryThread) {
+        final long generation = nameIndex.beginBuild();
+        if (generation < 0) {
+            return;
+        }
+        // Snapshot the shops, the shops added or removed after it are queued by the index
+        final Iterator<Shop> snapshot = new ArrayList<>(getAllShops()).iterator();
+        if (primaryThread) {
+            snapshot.forEachRemaining(shop -> nameIndex.addBuilt(generation, shop, ShopNameIndex.nameOf(shop)));
+            nameIndex.finishBuild(generation);
+            return;
+        }
+        // The localized names must be resolved on the main thread, spread them across ticks
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                final long deadline = System.nanoTime() + NAME_INDEX_BUILD_BUDGET;
+                while (snapshot.hasNext()) {
+                    final Shop shop = snapshot.next();
+                    nameIndex.addBuilt(generation, shop, ShopNameIndex.nameOf(shop));
+                    if (System.nanoTime() > deadline) {
+                        return;
+                    }
+                }
+                nameIndex.finishBuild(generation);
+                cancel();
+            }
+        }.runTaskTimer(plugin, 0, 1);
+    }
+
+    /**
+     * Drop the item names index, call it after the localized item names changed
+     */
+    public void invalidateItemNameIndex() {
+        nameIndex.invalidate();
+    }
+
+    /**
+     * Find the nearest shops around the location from the shop index, no chunk will be loaded.
+     * It is safe to call async.
+     *
+     * @param center      The center location
+     * @param maxDistance The max distance to the center, exclusive
+     * @param limit       How many shops at most to return
+     * @param filter      The filter of shops, or null to accept all shops
+     * @return The shops sorted from nearest to farthest
+     */
+    public @NotNull List<Shop> findNearestShops(@NotNull Location center, double maxDistance, int limit, @Nullable Predicate<Shop> filter) {
+        final World world = center.getWorld();
+        if (world == null || limit <= 0 || maxDistance <= 0) {
+            return Collections.emptyList();
+        }
+        final int range = (int) Math.ceil(maxDistance);
+        final List<Shop> inRange = shopIndex.getShopsInChunks(world.getName(),
+                (center.getBlockX() - range) >> 4, (center.getBlockZ() - range) >> 4,
+                (center.getBlockX() + range) >> 4, (center.getBlockZ() + range) >> 4);
+        final double maxDistanceSquared = maxDistance * maxDistance;
+        final Comparator<Map.Entry<Shop, Double>> nearestFirst = Map.Entry.comparingByValue();
+        // Keep the farthest one at the head, so it can be dropped when the queue full
+        final PriorityQueue<Map.Entry<Shop, Double>> nearest = new PriorityQueue<>(limit + 1, nearestFirst.reversed());
+        for (Shop shop : inRange) {
+            final double distanceSquared = shop.getLocation().distanceSquared(center);
+            if (distanceSquared >= maxDistanceSquared) {
+                continue;
+            }
+            if (nearest.size() >= limit && nearest.peek().getValue() <= distanceSquared) {
+                continue;
+            }
+            if (filter != null && !filter.test(shop)) {
+                continue;
+            }
+            nearest.add(new AbstractMap.SimpleImmutableEntry<>(shop, distanceSquared));
+            if (nearest.size() > limit) {
+                nearest.poll();
+            }
+        }
+        final List<Map.Entry<Shop, Double>> sorted = new ArrayList<>(nearest);
+        sorted.sort(nearestFirst);
+        final List<Shop> shops = new ArrayList<>(sorted.size());
+        for (Map.Entry<Shop, Double> entry : sorted) {
+            shops.add(entry.getKey());
+        }
+        return shops;
+    }
+
     /**
      * @return Returns the Map. Info contains what their last question etc was.
      */
@@ -484,20 +628,22 @@ public class ShopManager {
 
     /**
      * Get a players all shops.
-     * <p>
-     * Make sure you have caching this, because this need a while to get player's all shops
      *
      * @param playerUUID The player's uuid.
-     * @return The list have this player's all shops.
+     * @return The unmodifiable list have this player's all shops.
      */
     public @NotNull List<Shop> getPlayerAllShops(@NotNull UUID playerUUID) {
-        final List<Shop> playerShops = new ArrayList<>(10);
-        for(final Shop shop : getAllShops()){
-            if(shop.getOwner().equals(playerUUID)){
-                playerShops.add(shop);
-            }
-        }
-        return playerShops;
+        return ownerIndex.get(playerUUID);
+    }
+
+    /**
+     * Get all shops which trading the material.
+     *
+     * @param material The material of the shop item.
+     * @return The unmodifiable list have the shops trading this material.
+     */
+    public @NotNull List<Shop> getShopsByMaterial(@NotNull Material material) {
+        return materialIndex.get(material);
     }
 
     /**
@@ -508,11 +654,9 @@ public class ShopManager {
      * @return All shop in the database
      */
     public @NotNull List<Shop> getAllShops() {
-        final List<Shop> shops = new ArrayList<>();
-        for (final Map<ShopChunk, Map<Location, Shop>> shopMapData : getShops().values()) {
-            for (final Map<Location, Shop> shopData : shopMapData.values()) {
-                shops.addAll(shopData.values());
-            }
+        final List<Shop> shops = new ArrayList<>(shopIndex.size());
+        for (final ShopIndex.ChunkShops inChunk : shopIndex.getChunks()) {
+            shops.addAll(inChunk.values());
         }
         return shops;
     }
@@ -521,23 +665,18 @@ public class ShopManager {
      * Get the all shops in the world.
      *
      * @param world The world you want get the shops.
-     * @return The list have this world all shops
+     * @return The unmodifiable list have this world all shops
      */
     public @NotNull List<Shop> getShopsInWorld(@NotNull World world) {
-        final List<Shop> worldShops = new ArrayList<>();
-        for (final Shop shop : getAllShops()){
-            if(Objects.equals(shop.getLocation().getWorld(), world)){
-                worldShops.add(shop);
-            }
-        }
-        return worldShops;
+        return worldIndex.get(world.getName());
     }
 
     private void actionBuy(@NotNull Player p, @NotNull Economy eco, @NotNull Map<UUID, Info> actions2, @NotNull Info info, @NotNull String message, @NotNull Shop shop, int amount) {
         if (shopIsNotValid(p, info, shop)) {
             return;
         }
-        int space = shop.getRemainingSpace();
+        // Recount, the cached space may miss the changes made by other plugins
+        int space = shop.countRemainingSpace();
         if (space == -1) {
             space = 10000;
         }
@@ -545,7 +684,7 @@ public class ShopManager {
             MsgUtil.sendMessage(p, MsgUtil.getMessage("shop-has-no-space", p, Integer.toString(space), Util.getItemStackName(shop.getItem())));
             return;
         }
-        int count = Util.countItems(p.getInventory(), shop.getItem());
+        int count = Util.countItems(p.getInventory(), shop.getMatchKey());
         // Not enough items
         if (amount > count) {
             MsgUtil.sendMessage(p, MsgUtil.getMessage("you-dont-have-that-many-items", p, Integer.toString(count), Util.getItemStackName(shop.getItem())));
@@ -564,7 +703,7 @@ public class ShopManager {
         double tax = getTax(shop, p);
         double total = CalculateUtil.multiply(amount, shop.getPrice());
 
-        boolean shouldPayOwner = !shop.isUnlimited() || (plugin.getConfig().getBoolean("shop.pay-unlimited-shop-owners") && shop.isUnlimited());
+        boolean shouldPayOwner = !shop.isUnlimited() || (plugin.getConfigSnapshot().isPayUnlimitedShopOwners() && shop.isUnlimited());
         if (shouldPayOwner) {
             boolean successA = eco.withdraw(shop.getOwner(), total); // Withdraw owner's money
             if (!successA) {
@@ -591,11 +730,11 @@ public class ShopManager {
         }
         // Notify the owner of the purchase.
         String msg = MsgUtil.getMessage("player-sold-to-your-store", p, p.getName(), String.valueOf(amount), "##########" + Util.serialize(shop.getItem()) + "##########");
-
+        String notice = null;
         if (space == amount) {
-            msg += "\n" + MsgUtil.getMessage("shop-out-of-space", p, Integer.toString(shop.getLocation().getBlockX()), Integer.toString(shop.getLocation().getBlockY()), Integer.toString(shop.getLocation().getBlockZ()));
+            notice = MsgUtil.getMessage("shop-out-of-space", p, Integer.toString(shop.getLocation().getBlockX()), Integer.toString(shop.getLocation().getBlockY()), Integer.toString(shop.getLocation().getBlockZ()));
         }
-        MsgUtil.send(shop.getOwner(), msg, shop.isUnlimited());
+        plugin.getTradeNotificationWatcher().notifyTrade(shop, p.getName(), true, amount, total, msg, notice);
         shop.buy(p, amount);
         MsgUtil.sendSellSuccess(p, shop, amount);
         ShopSuccessPurchaseEvent se = new ShopSuccessPurchaseEvent(shop, p, amount, total, tax);
@@ -604,7 +743,7 @@ public class ShopManager {
     }
 
     private double getTax(Shop shop, Player p) {
-        double tax = plugin.getConfig().getDouble("tax");
+        double tax = plugin.getConfigSnapshot().getTax();
         if (QuickShop.getPermissionManager().hasPermission(p, "quickshop.tax")) {
             tax = 0;
             Util.debugLog("Disable the Tax for player " + p.getName() + " cause they have permission quickshop.tax");
@@ -701,7 +840,7 @@ public class ShopManager {
                     }
                 }
             }
-            boolean decFormat = plugin.getConfig().getBoolean("use-decimal-format");
+            boolean decFormat = plugin.getConfigSnapshot().isUseDecimalFormat();
             switch (this.priceLimiter.check(info.getItem(), price)) {
                 case REACHED_PRICE_MIN_LIMIT:
                     MsgUtil.sendMessage(p, MsgUtil.getMessage("price-too-cheap", p, (decFormat) ? MsgUtil.decimalFormat(this.priceLimiter.getMaxPrice()) : Double.toString(this.priceLimiter.getMinPrice())));
@@ -780,7 +919,8 @@ public class ShopManager {
         if (shopIsNotValid(p, info, shop)) {
             return;
         }
-        int stock = shop.getRemainingStock();
+        // Recount, the cached stock may miss the changes made by other plugins
+        int stock = shop.countRemainingStock();
         if (stock == -1) {
             stock = 10000;
         }
@@ -793,7 +933,7 @@ public class ShopManager {
             MsgUtil.sendMessage(p, MsgUtil.getMessage("negative-amount", p));
             return;
         }
-        int pSpace = Util.countSpace(p.getInventory(), shop.getItem());
+        int pSpace = Util.countSpace(p.getInventory(), shop.getMatchKey());
         if (amount > pSpace) {
             MsgUtil.sendMessage(p, MsgUtil.getMessage("not-enough-space", p, String.valueOf(pSpace)));
             return;
@@ -812,7 +952,7 @@ public class ShopManager {
             MsgUtil.sendMessage(p, MsgUtil.getMessage("you-cant-afford-to-buy", p, Objects.requireNonNull(format(total)), Objects.requireNonNull(format(eco.getBalance(p.getUniqueId())))));
             return;
         }
-        boolean shouldPayOwner = !shop.isUnlimited() || (plugin.getConfig().getBoolean("shop.pay-unlimited-shop-owners") && shop.isUnlimited());
+        boolean shouldPayOwner = !shop.isUnlimited() || (plugin.getConfigSnapshot().isPayUnlimitedShopOwners() && shop.isUnlimited());
         if (shouldPayOwner) {
             double depositMoney = CalculateUtil.multiply(total, CalculateUtil.subtract(1, tax));
             boolean successB = eco.deposit(shop.getOwner(), depositMoney);
@@ -833,17 +973,18 @@ public class ShopManager {
 
         String msg;
         // Notify the shop owner
-        if (plugin.getConfig().getBoolean("show-tax")) {
+        if (plugin.getConfigSnapshot().isShowTax()) {
             msg = MsgUtil.getMessage("player-bought-from-your-store-tax", p, p.getName(), Integer.toString(amount * shop.getItem().getAmount()), "##########" + Util.serialize(shop.getItem()) + "##########", Util.format((CalculateUtil.multiply(tax, total))));
         } else {
             msg = MsgUtil.getMessage("player-bought-from-your-store", p, p.getName(), Integer.toString(amount * shop.getItem().getAmount()), "##########" + Util.serialize(shop.getItem()) + "##########");
         }
         // Transfers the item from A to B
+        String notice = null;
         if (stock == amount) {
-            msg += "\n" + MsgUtil.getMessage("shop-out-of-stock", p, Integer.toString(shop.getLocation().getBlockX()), Integer.toString(shop.getLocation().getBlockY()), Integer.toString(shop.getLocation().getBlockZ()), Util.getItemStackName(shop.getItem()));
+            notice = MsgUtil.getMessage("shop-out-of-stock", p, Integer.toString(shop.getLocation().getBlockX()), Integer.toString(shop.getLocation().getBlockY()), Integer.toString(shop.getLocation().getBlockZ()), Util.getItemStackName(shop.getItem()));
         }
 
-        MsgUtil.send(shop.getOwner(), msg, shop.isUnlimited());
+        plugin.getTradeNotificationWatcher().notifyTrade(shop, p.getName(), false, amount * shop.getItem().getAmount(), total, msg, notice);
         shop.sell(p, amount);
         MsgUtil.sendPurchaseSuccess(p, shop, amount);
         ShopSuccessPurchaseEvent se = new ShopSuccessPurchaseEvent(shop, p, amount, total, tax);
@@ -886,7 +1027,7 @@ public class ShopManager {
             MsgUtil.sendMessage(p, MsgUtil.getMessage("chest-was-removed", p));
             return;
         }
-        if (p.getGameMode() == GameMode.CREATIVE && plugin.getConfig().getBoolean("shop.disable-creative-mode-trading")) {
+        if (p.getGameMode() == GameMode.CREATIVE && plugin.getConfigSnapshot().isDisableCreativeModeTrading()) {
             MsgUtil.sendMessage(p, MsgUtil.getMessage("trading-in-creative-mode-is-disabled", p));
             return;
         }
@@ -899,9 +1040,9 @@ public class ShopManager {
             try {
                 amount = Integer.parseInt(message);
             } catch (NumberFormatException e) {
-                if (message.equalsIgnoreCase(plugin.getConfig().getString("shop.word-for-trade-all-items", "all"))) {
-                    int shopHaveSpaces = Util.countSpace(((ContainerShop) shop).getInventory(), shop.getItem());
-                    int invHaveItems = Util.countItems(p.getInventory(), shop.getItem());
+                if (message.equalsIgnoreCase(plugin.getConfigSnapshot().getWordForTradeAllItems())) {
+                    int shopHaveSpaces = Util.countSpace(((ContainerShop) shop).getInventory(), shop.getMatchKey());
+                    int invHaveItems = Util.countItems(p.getInventory(), shop.getMatchKey());
                     // Check if shop owner has enough money
                     double ownerBalance = eco.getBalance(shop.getOwner());
                     int ownerCanAfford;
@@ -916,11 +1057,11 @@ public class ShopManager {
                         amount = Math.min(shopHaveSpaces, invHaveItems);
                         amount = Math.min(amount, ownerCanAfford);
                     } else {
-                        amount = Util.countItems(p.getInventory(), shop.getItem());
+                        amount = Util.countItems(p.getInventory(), shop.getMatchKey());
                         // even if the shop is unlimited, the config option pay-unlimited-shop-owners is set to
                         // true,
                         // the unlimited shop owner should have enough money.
-                        if (plugin.getConfig().getBoolean("shop.pay-unlimited-shop-owners")) {
+                        if (plugin.getConfigSnapshot().isPayUnlimitedShopOwners()) {
                             amount = Math.min(amount, ownerCanAfford);
                         }
                     }
@@ -930,7 +1071,7 @@ public class ShopManager {
                             MsgUtil.sendMessage(p, MsgUtil.getMessage("shop-has-no-space", p, Integer.toString(shopHaveSpaces), Util.getItemStackName(shop.getItem())));
                             return;
                         }
-                        if (ownerCanAfford == 0 && (!shop.isUnlimited() || plugin.getConfig().getBoolean("shop.pay-unlimited-shop-owners"))) {
+                        if (ownerCanAfford == 0 && (!shop.isUnlimited() || plugin.getConfigSnapshot().isPayUnlimitedShopOwners())) {
                             // when typed 'all' but the shop owner doesn't have enough money to buy at least 1
                             // item (and shop isn't unlimited or pay-unlimited is true)
                             MsgUtil.sendMessage(p, MsgUtil.getMessage("the-owner-cant-afford-to-buy-from-you", p, Objects.requireNonNull(format(shop.getPrice())), Objects.requireNonNull(format(ownerBalance))));
@@ -953,15 +1094,15 @@ public class ShopManager {
             try {
                 amount = Integer.parseInt(message);
             } catch (NumberFormatException e) {
-                if (message.equalsIgnoreCase(plugin.getConfig().getString("shop.word-for-trade-all-items", "all"))) {
-                    int shopHaveItems = Util.countItems(((ContainerShop) shop).getInventory(), shop.getItem());
-                    int invHaveSpaces = Util.countSpace(p.getInventory(), shop.getItem());
+                if (message.equalsIgnoreCase(plugin.getConfigSnapshot().getWordForTradeAllItems())) {
+                    int shopHaveItems = Util.countItems(((ContainerShop) shop).getInventory(), shop.getMatchKey());
+                    int invHaveSpaces = Util.countSpace(p.getInventory(), shop.getMatchKey());
                     if (!shop.isUnlimited()) {
                         amount = Math.min(shopHaveItems, invHaveSpaces);
                     } else {
                         // should check not having items but having empty slots, cause player is trying to buy
                         // items from the shop.
-                        amount = Util.countSpace(p.getInventory(), shop.getItem());
+                        amount = Util.countSpace(p.getInventory(), shop.getMatchKey());
                     }
                     // typed 'all', check if player has enough money than price * amount
                     double price = shop.getPrice();
@@ -998,10 +1139,6 @@ public class ShopManager {
     }
 
     private @Nullable Shop getShopIncludeAttached_Fast(@NotNull Location loc, boolean fromAttach) {
-        return getShopIncludeAttached_Fast(loc, fromAttach, true);
-    }
-
-    private @Nullable Shop getShopIncludeAttached_Fast(@NotNull Location loc, boolean fromAttach, boolean useCache) {
         Shop shop = getShop(loc);
 
         //failed, get attached shop
@@ -1023,24 +1160,19 @@ public class ShopManager {
                 }
             }
         }
-        //add cache if using
-        if (plugin.getShopCache() != null && useCache) {
-            plugin.getShopCache().setCache(loc, shop);
-        }
+        // Not cached here, Cache#getCaching fills itself with the generation guard
 
         return shop;
     }
 
     public class ShopIterator implements Iterator<Shop> {
 
-        private final Iterator<Map<ShopChunk, Map<Location, Shop>>> worlds;
-
-        private Iterator<Map<Location, Shop>> chunks;
+        private final Iterator<ShopIndex.ChunkShops> chunks;
 
         private Iterator<Shop> shops;
 
         public ShopIterator() {
-            worlds = getShops().values().iterator();
+            chunks = shopIndex.getChunks().iterator();
         }
 
         /**
@@ -1048,18 +1180,11 @@ public class ShopManager {
          */
         @Override
         public boolean hasNext() {
-            if (shops == null || !shops.hasNext()) {
-                if (chunks == null || !chunks.hasNext()) {
-                    if (!worlds.hasNext()) {
-                        return false;
-                    } else {
-                        chunks = worlds.next().values().iterator();
-                        return hasNext();
-                    }
-                } else {
-                    shops = chunks.next().values().iterator();
-                    return hasNext();
+            while (shops == null || !shops.hasNext()) {
+                if (!chunks.hasNext()) {
+                    return false;
                 }
+                shops = chunks.next().values().iterator();
             }
             return true;
         }
@@ -1069,17 +1194,8 @@ public class ShopManager {
          */
         @Override
         public @NotNull Shop next() {
-            if (shops == null || !shops.hasNext()) {
-                if (chunks == null || !chunks.hasNext()) {
-                    if (!worlds.hasNext()) {
-                        throw new NoSuchElementException("No more shops to iterate over!");
-                    }
-                    chunks = worlds.next().values().iterator();
-                }
-                shops = chunks.next().values().iterator();
-            }
-            if (!shops.hasNext()) {
-                return this.next(); // Skip to the next one (Empty iterator?)
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more shops to iterate over!");
             }
             return shops.next();
         }
@@ -0,0 +1,268 @@
+/*
+ * This file is a part of project QuickShop, the name is ShopNameIndex.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import org.bukkit.ChatColor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.maxgamer.quickshop.util.Util;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * The inverted index of the shop item names, Name token - Shops.
+ * <p>
+ * The names are localized, so the index is built lazily on the first search and dropped by
+ * {@link #invalidate()} when the item names may changed (e.g the game language loaded).
+ * The names must be resolved on the main thread, the builder feeds them with {@link #addBuilt(long, Shop, String)}
+ * and the shops put or removed while building are queued and replayed by {@link #finishBuild(long)}.
+ * Shops are compared by identity, see {@link ShopAttributeIndex}.
+ */
+class ShopNameIndex {
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Map<String, Set<Shop>> tokens = new HashMap<>();
+
+    /* The lower case name the shop indexed with */
+    private final Map<Shop, String> indexed = new IdentityHashMap<>();
+
+    /* The shops put (true) or removed (false) while building, the last one wins */
+    private final Map<Shop, Boolean> pending = new IdentityHashMap<>();
+
+    private volatile boolean built;
+
+    private volatile boolean building;
+
+    /* Bumped by invalidate, so a stale build will be dropped */
+    private long generation;
+
+    /**
+     * Split the name into lower case tokens
+     *
+     * @param name The name
+     * @return The tokens
+     */
+    @NotNull
+    static String[] tokenize(@NotNull String name) {
+        final String normalized = normalize(name);
+        if (normalized.isEmpty()) {
+            return new String[0];
+        }
+        return Arrays.stream(SEPARATOR.split(normalized)).filter(token -> !token.isEmpty()).distinct().toArray(String[]::new);
+    }
+
+    @NotNull
+    static String normalize(@NotNull String name) {
+        final String stripped = ChatColor.stripColor(name);
+        return (stripped == null ? name : stripped).toLowerCase(Locale.ROOT).trim();
+    }
+
+    /**
+     * Resolve the name to index the shop with, must be called on the main thread
+     *
+     * @param shop The shop
+     * @return The normalized item name
+     */
+    @NotNull
+    static String nameOf(@NotNull Shop shop) {
+        return normalize(Util.getItemStackName(shop.getItem()));
+    }
+
+    /**
+     * Index or reindex the shop with its current item name, do nothing before the index built.
+     * Must be called on the main thread.
+     *
+     * @param shop The shop
+     */
+    void put(@NotNull Shop shop) {
+        if (!built && !building) {
+            return;
+        }
+        final String name = nameOf(shop);
+        synchronized (this) {
+            if (building) {
+                pending.put(shop, Boolean.TRUE);
+            } else if (built) {
+                removeEntry(shop);
+                add(shop, name);
+            }
+        }
+    }
+
+    synchronized void remove(@NotNull Shop shop) {
+        if (building) {
+            pending.put(shop, Boolean.FALSE);
+        } else {
+            removeEntry(shop);
+        }
+    }
+
+    private void removeEntry(@NotNull Shop shop) {
+        final String old = indexed.remove(shop);
+        if (old == null) {
+            return;
+        }
+        for (String token : tokenize(old)) {
+            final Set<Shop> bucket = tokens.get(token);
+            if (bucket == null) {
+                continue;
+            }
+            bucket.remove(shop);
+            if (bucket.isEmpty()) {
+                tokens.remove(token);
+            }
+        }
+    }
+
+    private void add(@NotNull Shop shop, @NotNull String name) {
+        indexed.put(shop, name);
+        for (String token : tokenize(name)) {
+            tokens.computeIfAbsent(token, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(shop);
+        }
+    }
+
+    boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Start building the index if it is neither built nor building
+     *
+     * @return The generation of the build to pass to {@link #addBuilt(long, Shop, String)} and {@link #finishBuild(long)},
+     * or -1 if the caller shouldn't build
+     */
+    synchronized long beginBuild() {
+        if (built || building) {
+            return -1;
+        }
+        tokens.clear();
+        indexed.clear();
+        pending.clear();
+        building = true;
+        return generation;
+    }
+
+    /**
+     * Add a shop from the snapshot being built, ignored if the build was invalidated
+     *
+     * @param generation The build generation
+     * @param shop       The shop
+     * @param name       The name from {@link #nameOf(Shop)}
+     */
+    synchronized void addBuilt(long generation, @NotNull Shop shop, @NotNull String name) {
+        if (generation != this.generation) {
+            return;
+        }
+        add(shop, name);
+    }
+
+    /**
+     * Replay the shops queued while building and publish the index, must be called on the main thread
+     *
+     * @param generation The build generation
+     */
+    synchronized void finishBuild(long generation) {
+        if (generation != this.generation) {
+            return;
+        }
+        pending.forEach((shop, put) -> {
+            removeEntry(shop);
+            if (put) {
+                add(shop, nameOf(shop));
+            }
+        });
+        pending.clear();
+        building = false;
+        built = true;
+        notifyAll();
+    }
+
+    /**
+     * Drop the index, it will be built again on next search
+     */
+    synchronized void invalidate() {
+        generation++;
+        tokens.clear();
+        indexed.clear();
+        pending.clear();
+        built = false;
+        building = false;
+        notifyAll();
+    }
+
+    /**
+     * Search the shops which item name contains the keyword, ignoring case and colors
+     *
+     * @param keyword       The keyword
+     * @param timeoutMillis How long to wait for the building index, 0 to not wait
+     * @return The identity set of the matched shops, or null if the index is not built in time
+     */
+    @Nullable
+    synchronized Set<Shop> search(@NotNull String keyword, long timeoutMillis) {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!built) {
+            final long left = deadline - System.currentTimeMillis();
+            if (!building || left <= 0) {
+                return null;
+            }
+            try {
+                wait(left);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        final String normalizedKeyword = normalize(keyword);
+        final String[] keywordTokens = tokenize(normalizedKeyword);
+        if (keywordTokens.length == 0) {
+            // Nothing to lookup with, e.g. the keyword only have symbols
+            final Set<Shop> matched = Collections.newSetFromMap(new IdentityHashMap<>());
+            indexed.forEach((shop, name) -> {
+                if (name.contains(normalizedKeyword)) {
+                    matched.add(shop);
+                }
+            });
+            return matched;
+        }
+        // The shops have all keyword tokens, a keyword token may be a part of the name token
+        Set<Shop> candidates = null;
+        for (String keywordToken : keywordTokens) {
+            final Set<Shop> matched = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Map.Entry<String, Set<Shop>> entry : tokens.entrySet()) {
+                if (entry.getKey().contains(keywordToken)) {
+                    matched.addAll(entry.getValue());
+                }
+            }
+            if (candidates == null) {
+                candidates = matched;
+            } else {
+                candidates.retainAll(matched);
+            }
+            if (candidates.isEmpty()) {
+                return candidates;
+            }
+        }
+        // Then the whole keyword must be a part of the name, same as the search before
+        candidates.removeIf(shop -> !indexed.get(shop).contains(normalizedKeyword));
+        return candidates;
+    }
+
+}
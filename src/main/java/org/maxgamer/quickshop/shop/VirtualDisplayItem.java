@@ -21,22 +21,15 @@ package org.maxgamer.quickshop.shop;
 import com.comphenix.protocol.PacketType;
 import com.comphenix.protocol.ProtocolLibrary;
 import com.comphenix.protocol.ProtocolManager;
-import com.comphenix.protocol.events.ListenerPriority;
-import com.comphenix.protocol.events.PacketAdapter;
 import com.comphenix.protocol.events.PacketContainer;
-import com.comphenix.protocol.events.PacketEvent;
-import com.comphenix.protocol.injector.server.TemporaryPlayer;
 import com.comphenix.protocol.wrappers.WrappedChatComponent;
 import com.comphenix.protocol.wrappers.WrappedDataWatcher;
 import org.bukkit.Bukkit;
-import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.event.ShopDisplayItemSpawnEvent;
@@ -44,9 +37,7 @@ import org.maxgamer.quickshop.util.Util;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class VirtualDisplayItem extends DisplayItem {
@@ -65,8 +56,6 @@ public class VirtualDisplayItem extends DisplayItem {
     //The List which store packet sender
     private final Set<UUID> packetSenders = new ConcurrentSkipListSet<>();
 
-    private final Queue<Runnable> asyncPacketSendQueue = new ConcurrentLinkedQueue<>();
-
     private volatile boolean isDisplay;
 
     //packets
@@ -78,21 +67,27 @@ public class VirtualDisplayItem extends DisplayItem {
 
     private PacketContainer fakeItemDestroyPacket;
 
-    //packetListener
-    private PacketAdapter packetAdapter;
-
-    //cache chunk x and z
-    private ShopChunk chunkLocation;
-
+    //cache chunk x and z, null if the world not loaded when creating
     @Nullable
-    private BukkitTask asyncSendingTask;
+    private volatile ShopChunk chunkLocation;
 
 
     public VirtualDisplayItem(@NotNull Shop shop) throws RuntimeException {
         super(shop);
+        this.chunkLocation = computeChunkLocation();
         initFakeDropItemPacket();
     }
 
+    @Nullable
+    private ShopChunk computeChunkLocation() {
+        Location location = shop.getLocation();
+        World world = location.getWorld();
+        if (world == null) {
+            return null;
+        }
+        return new ShopChunk(world.getName(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
     private void initFakeDropItemPacket() {
 
         //First, create a new packet to spawn item
@@ -247,12 +242,6 @@ public class VirtualDisplayItem extends DisplayItem {
 
     private void unload() {
         packetSenders.clear();
-        if (packetAdapter != null) {
-            protocolManager.removePacketListener(packetAdapter);
-        }
-        if (asyncSendingTask != null && !asyncSendingTask.isCancelled()) {
-            asyncSendingTask.cancel();
-        }
     }
 
     private void sendPacket(@NotNull Player player, @NotNull PacketContainer packet) {
@@ -312,70 +301,29 @@ public class VirtualDisplayItem extends DisplayItem {
                 }
             }
         }
-        if (packetAdapter == null) {
-            packetAdapter = new PacketAdapter(plugin, ListenerPriority.HIGH, PacketType.Play.Server.MAP_CHUNK) {
-                @Override
-                public void onPacketSending(@NotNull PacketEvent event) {
-                    //is really full chunk data
-                    boolean isFull = event.getPacket().getBooleans().read(0);
-                    if (!shop.isLoaded() || !isDisplay || !isFull || !Util.isLoaded(shop.getLocation())) {
-                        return;
-                    }
-                    //chunk x
-                    int x = event.getPacket().getIntegers().read(0);
-                    //chunk z
-                    int z = event.getPacket().getIntegers().read(1);
-                    asyncPacketSendQueue.offer(() -> {
-                        //lazy initialize
-                        if (chunkLocation == null) {
-                            World world = shop.getLocation().getWorld();
-                            Chunk chunk = null;
-                            try {
-                                //sync getting chunk
-                                chunk = Bukkit.getScheduler().callSyncMethod(plugin, () -> shop.getLocation().getChunk()).get();
-                            } catch (InterruptedException | ExecutionException e) {
-                                throw new RuntimeException("An error occurred when getting chunk from the world", e);
-                            }
-                            chunkLocation = new ShopChunk(world.getName(), chunk.getX(), chunk.getZ());
-                        }
-                        Player player = event.getPlayer();
-                        if (player instanceof TemporaryPlayer) {
-                            return;
-                        }
-                        if (player == null || !player.isOnline()) {
-                            Util.debugLog("Cancelled packet sending cause player logged out when sending packets.");
-                            return;
-                        }
-                        if (chunkLocation.isSame(player.getWorld().getName(), x, z)) {
-                            packetSenders.add(player.getUniqueId());
-                            sendFakeItem(player);
-                        }
-                    });
-//                    Bukkit.getScheduler().scheduleSyncDelayedTask(plugin, () -> {
-//                        if (chunkLocation == null) {
-//                            World world = shop.getLocation().getWorld();
-//                            Chunk chunk = shop.getLocation().getChunk();
-//                            chunkLocation = new ShopChunk(world.getName(), chunk.getX(), chunk.getZ());
-//                        }
-//                        if (chunkLocation.isSame(event.getPlayer().getWorld().getName(), x, z)) {
-//                            packetSenders.add(event.getPlayer().getUniqueId());
-//                            sendFakeItem(event.getPlayer());
-//                        }
-//                    }, 1);
-                }
-            };
+        // The chunk packets are listened by the shared listener, it sends the fake item when the chunk sent to a player
+        VirtualDisplayItemManager.get(plugin);
+    }
+
+    /**
+     * Show the fake item to the player which received the chunk of this shop, called by the shared sender
+     *
+     * @param player The player
+     */
+    void showTo(@NotNull Player player) {
+        if (!isDisplay) {
+            return;
         }
-        protocolManager.addPacketListener(packetAdapter);
-        asyncSendingTask = new BukkitRunnable() {
-            @Override
-            public void run() {
-                Runnable runnable = asyncPacketSendQueue.poll();
-                while (runnable != null) {
-                    runnable.run();
-                    runnable = asyncPacketSendQueue.poll();
-                }
-            }
-        }.runTaskTimerAsynchronously(plugin, 0, 1);
+        ShopChunk chunk = this.chunkLocation;
+        if (chunk == null) {
+            chunk = this.chunkLocation = computeChunkLocation();
+        }
+        // The player may changed the world before sending
+        if (chunk == null || !chunk.getWorld().equals(player.getWorld().getName())) {
+            return;
+        }
+        packetSenders.add(player.getUniqueId());
+        sendFakeItem(player);
     }
 
     public void sendFakeItem(@NotNull Player player) {
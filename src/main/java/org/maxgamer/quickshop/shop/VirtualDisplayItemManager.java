@@ -0,0 +1,158 @@
+/*
+ * This file is a part of project QuickShop, the name is VirtualDisplayItemManager.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.maxgamer.quickshop.shop;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.ProtocolLibrary;
+import com.comphenix.protocol.events.ListenerPriority;
+import com.comphenix.protocol.events.PacketAdapter;
+import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.events.PacketEvent;
+import com.comphenix.protocol.injector.server.TemporaryPlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.maxgamer.quickshop.QuickShop;
+import org.maxgamer.quickshop.util.Util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The shared packet listener and sender of all VirtualDisplayItems.
+ * <p>
+ * One MAP_CHUNK listener looks up the shops in the sending chunk by the ShopIndex,
+ * and one async task sends the fake items, the displays for the same player are sent together.
+ */
+public class VirtualDisplayItemManager {
+    @Nullable
+    private static VirtualDisplayItemManager instance;
+
+    private final QuickShop plugin;
+
+    private final Queue<PendingSend> sendQueue = new ConcurrentLinkedQueue<>();
+
+    private final PacketAdapter packetAdapter;
+
+    private final BukkitTask sendingTask;
+
+    private VirtualDisplayItemManager(@NotNull QuickShop plugin) {
+        this.plugin = plugin;
+        this.packetAdapter = new PacketAdapter(plugin, ListenerPriority.HIGH, PacketType.Play.Server.MAP_CHUNK) {
+            @Override
+            public void onPacketSending(@NotNull PacketEvent event) {
+                onChunkSending(event);
+            }
+        };
+        ProtocolLibrary.getProtocolManager().addPacketListener(packetAdapter);
+        this.sendingTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::sendPending, 0, 1);
+    }
+
+    /**
+     * Gets the manager, register the listener and the sender if not registered yet
+     *
+     * @param plugin The plugin instance
+     * @return The manager
+     */
+    @NotNull
+    static synchronized VirtualDisplayItemManager get(@NotNull QuickShop plugin) {
+        if (instance == null || instance.plugin != plugin || instance.sendingTask.isCancelled()) {
+            if (instance != null) {
+                instance.unregister();
+            }
+            instance = new VirtualDisplayItemManager(plugin);
+        }
+        return instance;
+    }
+
+    private void unregister() {
+        ProtocolLibrary.getProtocolManager().removePacketListener(packetAdapter);
+        sendingTask.cancel();
+        sendQueue.clear();
+    }
+
+    private void onChunkSending(@NotNull PacketEvent event) {
+        final Player player = event.getPlayer();
+        if (player == null || player instanceof TemporaryPlayer) {
+            return;
+        }
+        final PacketContainer packet = event.getPacket();
+        //is really full chunk data
+        if (!packet.getBooleans().read(0)) {
+            return;
+        }
+        //chunk x and z
+        final int x = packet.getIntegers().read(0);
+        final int z = packet.getIntegers().read(1);
+        final ShopIndex.ChunkShops inChunk = plugin.getShopManager().getShopIndex().getChunk(player.getWorld().getName(), x, z);
+        if (inChunk == null || inChunk.isEmpty()) {
+            return;
+        }
+        List<VirtualDisplayItem> displays = null;
+        for (Shop shop : inChunk.values()) {
+            final DisplayItem displayItem = shop.getDisplay();
+            if (displayItem instanceof VirtualDisplayItem && displayItem.isSpawned() && shop.isLoaded()) {
+                if (displays == null) {
+                    displays = new ArrayList<>(inChunk.size());
+                }
+                displays.add((VirtualDisplayItem) displayItem);
+            }
+        }
+        if (displays != null) {
+            // Send them after the chunk arrived
+            sendQueue.offer(new PendingSend(player, displays));
+        }
+    }
+
+    private void sendPending() {
+        if (sendQueue.isEmpty()) {
+            return;
+        }
+        final Map<Player, List<VirtualDisplayItem>> byPlayer = new IdentityHashMap<>();
+        PendingSend pending;
+        while ((pending = sendQueue.poll()) != null) {
+            byPlayer.computeIfAbsent(pending.player, k -> new ArrayList<>()).addAll(pending.displays);
+        }
+        for (Map.Entry<Player, List<VirtualDisplayItem>> entry : byPlayer.entrySet()) {
+            final Player player = entry.getKey();
+            if (!player.isOnline()) {
+                Util.debugLog("Cancelled packet sending cause player logged out when sending packets.");
+                continue;
+            }
+            for (VirtualDisplayItem display : entry.getValue()) {
+                display.showTo(player);
+            }
+        }
+    }
+
+    private static class PendingSend {
+        private final Player player;
+
+        private final List<VirtualDisplayItem> displays;
+
+        private PendingSend(@NotNull Player player, @NotNull List<VirtualDisplayItem> displays) {
+            this.player = player;
+            this.displays = displays;
+        }
+    }
+
+}
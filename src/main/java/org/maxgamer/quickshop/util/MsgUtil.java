@@ -19,7 +19,7 @@
 
 package org.maxgamer.quickshop.util;
 
-import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import lombok.Getter;
 import lombok.SneakyThrows;
 import me.clip.placeholderapi.PlaceholderAPI;
@@ -48,9 +48,11 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.ServiceInjector;
+import org.maxgamer.quickshop.database.DatabaseHelper;
 import org.maxgamer.quickshop.fileportlek.old.IFile;
 import org.maxgamer.quickshop.fileportlek.old.JSONFile;
 import org.maxgamer.quickshop.shop.Shop;
+import org.maxgamer.quickshop.util.language.game.BukkitGameLanguageImpl;
 import org.maxgamer.quickshop.util.language.game.GameLanguage;
 import org.maxgamer.quickshop.util.language.game.MojangGameLanguageImpl;
 
@@ -58,7 +60,6 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.DecimalFormat;
 import java.util.*;
@@ -69,7 +70,8 @@ import java.util.logging.Level;
 public class MsgUtil {
     private static final String invaildMsg = "Invaild message";
 
-    private static final Map<UUID, LinkedList<String>> player_messages = Maps.newConcurrentMap();
+    /* The players whose offline messages are loading */
+    private static final Set<UUID> fetchingMessages = Sets.newConcurrentHashSet();
 
     private static final QuickShop plugin = QuickShop.getInstance();
 
@@ -100,40 +102,65 @@ public class MsgUtil {
     }
 
     /**
-     * Empties the queue of messages a player has and sends them to the player.
+     * Loads the messages the player received while offline from the database async, then sends them to the player.
+     * Only the latest messages (shop.offline-messages-limit) are sent, the others are summarized.
      *
      * @param p The player to message
-     * @return True if success, False if the player is offline or null
+     * @return True if the messages will be sent, False if the player is offline or null
      */
     public static boolean flush(@NotNull OfflinePlayer p) {
-        Player player = p.getPlayer();
-        if (player != null) {
-            UUID pName = p.getUniqueId();
-            LinkedList<String> msgs = player_messages.get(pName);
-            if (msgs != null) {
-                for (String msg : msgs) {
-                    if (p.getPlayer() != null) {
-                        Util.debugLog("Accepted the msg for player " + p.getName() + " : " + msg);
-                        String[] msgData = msg.split("##########");
-                        try {
-                            ItemStack data = Util.deserialize(msgData[1]);
-                            if (data == null) {
-                                throw new InvalidConfigurationException();
-                            }
-                            sendItemholochat(player, msgData[0], data, msgData[2]);
-                        } catch (InvalidConfigurationException e) {
-                            MsgUtil.sendMessage(p.getPlayer(), msgData[0] + msgData[1] + msgData[2]);
-                        } catch (ArrayIndexOutOfBoundsException e2) {
-                            MsgUtil.sendMessage(p.getPlayer(), msg);
-                        }
-                    }
+        if (p.getPlayer() == null) {
+            return false;
+        }
+        final UUID uuid = p.getUniqueId();
+        final String name = p.getName();
+        if (!fetchingMessages.add(uuid)) {
+            return true; // Already loading
+        }
+        final int limit = Math.max(1, plugin.getConfig().getInt("shop.offline-messages-limit", 20));
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            DatabaseHelper.MessageBacklog backlog = null;
+            try {
+                backlog = plugin.getDatabaseHelper().selectMessagesForPlayer(uuid, name, limit);
+            } catch (SQLException e) {
+                plugin.getLogger().log(Level.WARNING, "Could not load transaction messages of " + name + " from database. Skipping.", e);
+            }
+            final DatabaseHelper.MessageBacklog loaded = backlog;
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                fetchingMessages.remove(uuid);
+                if (loaded != null) {
+                    deliver(uuid, name, loaded);
+                }
+            });
+        });
+        return true;
+    }
+
+    private static void deliver(@NotNull UUID uuid, @Nullable String name, @NotNull DatabaseHelper.MessageBacklog backlog) {
+        final Player player = Bukkit.getPlayer(uuid);
+        if (player == null || backlog.getTotal() == 0) {
+            return; // Left before loaded, keep the messages for next time
+        }
+        for (String msg : backlog.getMessages()) {
+            Util.debugLog("Accepted the msg for player " + name + " : " + msg);
+            String[] msgData = msg.split("##########");
+            try {
+                ItemStack data = Util.deserialize(msgData[1]);
+                if (data == null) {
+                    throw new InvalidConfigurationException();
                 }
-                plugin.getDatabaseHelper().cleanMessageForPlayer(pName);
-                msgs.clear();
-                return true;
+                sendItemholochat(player, msgData[0], data, msgData[2]);
+            } catch (InvalidConfigurationException e) {
+                MsgUtil.sendMessage(player, msgData[0] + msgData[1] + msgData[2]);
+            } catch (ArrayIndexOutOfBoundsException e2) {
+                MsgUtil.sendMessage(player, msg);
             }
         }
-        return false;
+        final int more = backlog.getTotal() - backlog.getMessages().size();
+        if (more > 0) {
+            MsgUtil.sendMessage(player, getMessage("offline-messages-more", player, Integer.toString(more)));
+        }
+        plugin.getDatabaseHelper().cleanMessageForPlayer(uuid, name, backlog.getUntil());
     }
 
     @SneakyThrows
@@ -193,7 +220,7 @@ public class MsgUtil {
             }
             String filled = fillArgs(raw.get(), args);
             if (player != null) {
-                if (plugin.getPlaceHolderAPI() != null && plugin.getPlaceHolderAPI().isEnabled() && plugin.getConfig().getBoolean("plugin.PlaceHolderAPI")) {
+                if (plugin.getPlaceHolderAPI() != null && plugin.getPlaceHolderAPI().isEnabled() && plugin.getConfigSnapshot().isPlaceHolderAPI()) {
                     filled = PlaceholderAPI.setPlaceholders(player, filled);
                     Util.debugLog("Processed message " + filled + " by PlaceHolderAPI.");
                 }
@@ -331,6 +358,7 @@ public class MsgUtil {
                         new InputStreamReader(Objects.requireNonNull(plugin.getResource("enchi18n.yml"))));
         enchi18n.setDefaults(enchi18nYAML);
         Util.parseColours(enchi18n);
+        boolean changed = false;
         Enchantment[] enchsi18n = Enchantment.values();
         for (Enchantment ench : enchsi18n) {
             String enchi18nString = enchi18n.getString("enchi18n." + ench.getKey().getKey().trim());
@@ -339,10 +367,13 @@ public class MsgUtil {
             }
             String enchName = gameLanguage.getEnchantment(ench);
             enchi18n.set("enchi18n." + ench.getKey().getKey(), enchName);
+            changed = true;
             plugin.getLogger().info("Found new ench [" + enchName + "] , adding it to the config...");
         }
         try {
-            enchi18n.save(enchi18nFile);
+            if (changed) {
+                enchi18n.save(enchi18nFile);
+            }
         } catch (IOException e) {
             e.printStackTrace();
             plugin
@@ -372,6 +403,7 @@ public class MsgUtil {
                         new InputStreamReader(Objects.requireNonNull(plugin.getResource("itemi18n.yml"))));
         itemi18n.setDefaults(itemi18nYAML);
         Util.parseColours(itemi18n);
+        boolean changed = false;
         Material[] itemsi18n = Material.values();
         for (Material material : itemsi18n) {
             String itemi18nString = itemi18n.getString("itemi18n." + material.name());
@@ -380,12 +412,15 @@ public class MsgUtil {
             }
             String itemName = gameLanguage.getItem(material);
             itemi18n.set("itemi18n." + material.name(), itemName);
+            changed = true;
             plugin
                     .getLogger()
                     .info("Found new items/blocks [" + itemName + "] , adding it to the config...");
         }
         try {
-            itemi18n.save(itemi18nFile);
+            if (changed) {
+                itemi18n.save(itemi18nFile);
+            }
         } catch (IOException e) {
             e.printStackTrace();
             plugin
@@ -412,6 +447,7 @@ public class MsgUtil {
                         new InputStreamReader(Objects.requireNonNull(plugin.getResource("potioni18n.yml"))));
         potioni18n.setDefaults(potioni18nYAML);
         Util.parseColours(potioni18n);
+        boolean changed = false;
         for (PotionEffectType potion : PotionEffectType.values()) {
             String potionI18n = potioni18n.getString("potioni18n." + potion.getName().trim());
             if (potionI18n != null && !potionI18n.isEmpty()) {
@@ -420,9 +456,12 @@ public class MsgUtil {
             String potionName = gameLanguage.getPotion(potion);
             plugin.getLogger().info("Found new potion [" + potionName + "] , adding it to the config...");
             potioni18n.set("potioni18n." + potion.getName(), potionName);
+            changed = true;
         }
         try {
-            potioni18n.save(potioni18nFile);
+            if (changed) {
+                potioni18n.save(potioni18nFile);
+            }
         } catch (IOException e) {
             e.printStackTrace();
             plugin
@@ -435,33 +474,82 @@ public class MsgUtil {
     }
 
     /**
-     * loads all player purchase messages from the database.
+     * Swap in the names from the game language after it loaded in background.
+     * Only the names which not translated yet (empty or same as the Bukkit name) are replaced,
+     * so the names edited by the server owner are kept, and the files are only saved when changed.
      */
-    public static void loadTransactionMessages() {
-        player_messages.clear(); // Delete old messages
-        try {
-            ResultSet rs = plugin.getDatabaseHelper().selectAllMessages();
-            while (rs.next()) {
-                String owner = rs.getString("owner");
-                UUID ownerUUID;
-                if (Util.isUUID(owner)) {
-                    ownerUUID = UUID.fromString(owner);
-                } else {
-                    ownerUUID = Bukkit.getOfflinePlayer(owner).getUniqueId();
+    public static void refreshGameLanguageNames() {
+        final GameLanguage fallback = new BukkitGameLanguageImpl(plugin);
+        if (itemi18n != null) {
+            boolean changed = false;
+            for (Material material : Material.values()) {
+                final String path = "itemi18n." + material.name();
+                if (isUntranslated(itemi18n.getString(path), fallback.getItem(material))) {
+                    changed |= replaceName(itemi18n, path, gameLanguage.getItem(material));
                 }
-                String message = rs.getString("message");
-                LinkedList<String> msgs =
-                        player_messages.computeIfAbsent(ownerUUID, k -> new LinkedList<>());
-                msgs.add(message);
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            plugin
-                    .getLogger()
-                    .log(Level.WARNING, "Could not load transaction messages from database. Skipping.");
+            saveIfChanged(itemi18n, "itemi18n.yml", changed);
+        }
+        if (enchi18n != null) {
+            boolean changed = false;
+            for (Enchantment ench : Enchantment.values()) {
+                final String path = "enchi18n." + ench.getKey().getKey();
+                if (isUntranslated(enchi18n.getString(path), fallback.getEnchantment(ench))) {
+                    changed |= replaceName(enchi18n, path, gameLanguage.getEnchantment(ench));
+                }
+            }
+            saveIfChanged(enchi18n, "enchi18n.yml", changed);
+        }
+        if (potioni18n != null) {
+            boolean changed = false;
+            for (PotionEffectType potion : PotionEffectType.values()) {
+                final String path = "potioni18n." + potion.getName();
+                if (isUntranslated(potioni18n.getString(path), fallback.getPotion(potion))) {
+                    changed |= replaceName(potioni18n, path, gameLanguage.getPotion(potion));
+                }
+            }
+            saveIfChanged(potioni18n, "potioni18n.yml", changed);
+        }
+        // The item names changed, the signs and the name index need refresh
+        plugin.getShopManager().invalidateItemNameIndex();
+        for (Shop shop : plugin.getShopManager().getLoadedShops()) {
+            plugin.getSignUpdateWatcher().scheduleSignUpdate(shop);
+        }
+        plugin.getLogger().info("Applied the game language to items, enchantments and potions translation.");
+    }
+
+    private static boolean isUntranslated(@Nullable String current, @NotNull String fallbackName) {
+        return current == null || current.isEmpty() || current.equals(fallbackName);
+    }
+
+    private static boolean replaceName(@NotNull YamlConfiguration config, @NotNull String path, @NotNull String name) {
+        if (name.equals(config.getString(path))) {
+            return false;
+        }
+        config.set(path, name);
+        return true;
+    }
+
+    private static void saveIfChanged(@NotNull YamlConfiguration config, @NotNull String fileName, boolean changed) {
+        if (!changed) {
+            return;
+        }
+        try {
+            config.save(new File(plugin.getDataFolder(), fileName));
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Could not save the translation to " + fileName + ". Skipping.", e);
         }
     }
 
+    /**
+     * Used to load all player purchase messages from the database, now the messages are loaded per player when flushed.
+     *
+     * @deprecated The messages are loaded by {@link #flush(OfflinePlayer)}
+     */
+    @Deprecated
+    public static void loadTransactionMessages() {
+    }
+
     /**
      * @param player      The name of the player to message
      * @param message     The message to send them Sends the given player a message if they're online.
@@ -469,19 +557,14 @@ public class MsgUtil {
      * @param isUnlimited The shop is or unlimited
      */
     public static void send(@NotNull UUID player, @NotNull String message, boolean isUnlimited) {
-        if (plugin.getConfig().getBoolean("shop.ignore-unlimited-shop-messages") && isUnlimited) {
+        if (plugin.getConfigSnapshot().isIgnoreUnlimitedShopMessages() && isUnlimited) {
             return; // Ignore unlimited shops messages.
         }
         Util.debugLog(message);
         String[] msgData = message.split("##########");
         OfflinePlayer p = Bukkit.getOfflinePlayer(player);
         if (!p.isOnline()) {
-            LinkedList<String> msgs = player_messages.get(player);
-            if (msgs == null) {
-                msgs = new LinkedList<>();
-            }
-            player_messages.put(player, msgs);
-            msgs.add(message);
+            // Kept in database only, loaded when the player flush the messages
             plugin.getDatabaseHelper().sendMessage(player, message, System.currentTimeMillis());
         } else {
             if (p.getPlayer() != null) {
@@ -534,7 +617,7 @@ public class MsgUtil {
         if ((sender instanceof Player)
                 && !QuickShop.getPermissionManager().hasPermission(sender, "quickshop.use")
                 && (shop.getOwner().equals(((Player) sender).getUniqueId()) || !QuickShop.getPermissionManager().hasPermission(sender, "quickshop.other.control"))
-                && (plugin.getConfig().getBoolean("shop.interact.switch-mode") ? !((Player) sender).isSneaking() && plugin.getConfig().getBoolean("shop.interact.sneak-to-control") : plugin.getConfig().getBoolean("shop.interact.sneak-to-control") && !((Player) sender).isSneaking())) {
+                && (plugin.getConfigSnapshot().isInteractSwitchMode() ? !((Player) sender).isSneaking() && plugin.getConfigSnapshot().isSneakToControl() : plugin.getConfigSnapshot().isSneakToControl() && !((Player) sender).isSneaking())) {
 
             return;
         }
@@ -609,7 +692,7 @@ public class MsgUtil {
                     MsgUtil.getMessage(
                             "controlpanel.price",
                             sender,
-                            (plugin.getConfig().getBoolean("use-decimal-format"))
+                            (plugin.getConfigSnapshot().isUseDecimalFormat())
                                     ? decimalFormat(shop.getPrice())
                                     : Double.toString(shop.getPrice()));
             String hoverText = MsgUtil.getMessage("controlpanel.price-hover", sender);
@@ -702,7 +785,7 @@ public class MsgUtil {
             }
             String filled = fillArgs(raw.get(), args);
             if (player instanceof OfflinePlayer) {
-                if (plugin.getPlaceHolderAPI() != null && plugin.getPlaceHolderAPI().isEnabled() && plugin.getConfig().getBoolean("plugin.PlaceHolderAPI")) {
+                if (plugin.getPlaceHolderAPI() != null && plugin.getPlaceHolderAPI().isEnabled() && plugin.getConfigSnapshot().isPlaceHolderAPI()) {
                     try {
                         filled = PlaceholderAPI.setPlaceholders((OfflinePlayer) player, filled);
                     } catch (Exception ignored) {
@@ -835,8 +918,8 @@ public class MsgUtil {
                         Integer.toString(amount),
                         Util.getItemStackName(shop.getItem()),
                         Util.format((amount * shop.getPrice()))));
-        if (plugin.getConfig().getBoolean("show-tax")) {
-            double tax = plugin.getConfig().getDouble("tax");
+        if (plugin.getConfigSnapshot().isShowTax()) {
+            double tax = plugin.getConfigSnapshot().getTax();
             double total = amount * shop.getPrice();
             if (tax != 0) {
                 if (!p.getUniqueId().equals(shop.getOwner())) {
@@ -852,7 +935,7 @@ public class MsgUtil {
     }
 
     private static void printEnchantment(@NotNull Player p, @NotNull Shop shop, ChatSheetPrinter chatSheetPrinter) {
-        if (shop.getItem().hasItemMeta() && shop.getItem().getItemMeta().hasItemFlag(ItemFlag.HIDE_ENCHANTS) && plugin.getConfig().getBoolean("respect-item-flag")) {
+        if (shop.getItem().hasItemMeta() && shop.getItem().getItemMeta().hasItemFlag(ItemFlag.HIDE_ENCHANTS) && plugin.getConfigSnapshot().isRespectItemFlag()) {
             return;
         }
         Map<Enchantment, Integer> enchs = new HashMap<>();
@@ -1455,6 +1538,22 @@ public class MsgUtil {
             setAndUpdate("language-version", 40);
             selectedVersion = 40;
         }
+        if (selectedVersion == 40) {
+            setAndUpdate("nearby-shop-entry", "&7- &e{0} &7({1}, {2}, {3}) &a{4} &7blocks");
+            setAndUpdate("language-version", 41);
+            selectedVersion = 41;
+        }
+        if (selectedVersion == 41) {
+            setAndUpdate("offline-messages-more", "&7...and &e{0} &7more messages while you were offline.");
+            setAndUpdate("language-version", 42);
+            selectedVersion = 42;
+        }
+        if (selectedVersion == 42) {
+            setAndUpdate("player-sold-to-your-store-summary", "&a{0} sold {1} {2} to your shop in {3} trades, total {4}.");
+            setAndUpdate("player-bought-from-your-store-summary", "&c{0} purchased {1} {2} from your shop in {3} trades, total {4}.");
+            setAndUpdate("language-version", 43);
+            selectedVersion = 43;
+        }
 
         messagei18n.save();
         messagei18n.loadFromString(Util.parseColours(messagei18n.saveToString()));
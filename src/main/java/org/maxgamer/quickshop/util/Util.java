@@ -19,6 +19,9 @@
 
 package org.maxgamer.quickshop.util;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.io.Files;
 import lombok.NonNull;
 import org.bukkit.*;
@@ -47,6 +50,10 @@ import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.database.MySQLCore;
 import org.maxgamer.quickshop.shop.DisplayItem;
 import org.maxgamer.quickshop.shop.Shop;
+import org.maxgamer.quickshop.shop.ShopIndex;
+import org.maxgamer.quickshop.util.logger.DebugLogBuffer;
+import org.maxgamer.quickshop.util.matcher.item.ItemMatchKey;
+import org.maxgamer.quickshop.util.matcher.item.ItemMatcher;
 import org.maxgamer.quickshop.watcher.InventoryEditContainer;
 import org.yaml.snakeyaml.DumperOptions;
 import org.yaml.snakeyaml.Yaml;
@@ -61,7 +68,7 @@ import java.util.AbstractMap.SimpleEntry;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 public class Util {
     private static final EnumSet<Material> blacklist = EnumSet.noneOf(Material.class);
@@ -73,10 +80,20 @@ public class Util {
 
     private static final EnumSet<Material> shoppables = EnumSet.noneOf(Material.class);
     private static final List<BlockFace> verticalFacing = Collections.unmodifiableList(Arrays.asList(BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST));
-    private static final List<String> debugLogs = new LinkedList<>();
-    private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-    private static Yaml yaml = null;
-    private static DumperOptions yamlOptions = null;
+    private static final DebugLogBuffer debugLogs = new DebugLogBuffer(2048);
+    // Yaml is not thread-safe, the shops are deserialized on multiple threads when loading.
+    private static final ThreadLocal<Yaml> yaml = ThreadLocal.withInitial(() -> {
+        DumperOptions yamlOptions = new DumperOptions();
+        yamlOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+        yamlOptions.setIndent(2);
+        return new Yaml(yamlOptions); //Caching it!
+    });
+    /* The prototypes of deserialized items, the same YAML always decodes to the same item, never hand out them without clone */
+    private static final Cache<String, ItemStack> itemDecodeCache = CacheBuilder.newBuilder()
+            .maximumSize(4096)
+            .softValues()
+            .recordStats()
+            .build();
     private static boolean devMode = false;
     private static QuickShop plugin;
     private static Object serverInstance;
@@ -180,17 +197,32 @@ public class Util {
         if (inv == null) {
             return 0;
         }
+        return countItems(inv, new ItemMatchKey(item));
+    }
+
+    /**
+     * Counts the number of items in the given inventory which matches the precompiled item
+     *
+     * @param inv The inventory to search
+     * @param key The key of ItemStack to search for
+     * @return The number of items that match in this inventory.
+     */
+    public static int countItems(@Nullable Inventory inv, @NotNull ItemMatchKey key) {
+        if (inv == null) {
+            return 0;
+        }
+        final ItemMatcher matcher = plugin.getItemMatcher();
         int items = 0;
         for (final ItemStack iStack : inv.getStorageContents()) {
             //noinspection ConstantConditions
             if (iStack == null || iStack.getType() == Material.AIR) {
                 continue;
             }
-            if (plugin.getItemMatcher().matches(item, iStack)) {
+            if (matcher.matches(key, iStack)) {
                 items += iStack.getAmount();
             }
         }
-        return items / item.getAmount();
+        return items / key.getStack().getAmount();
     }
 
     /**
@@ -205,19 +237,34 @@ public class Util {
         if (inv == null) {
             return 0;
         }
+        return countSpace(inv, new ItemMatchKey(item));
+    }
+
+    /**
+     * Returns the number of items that can be given to the inventory safely.
+     *
+     * @param inv The inventory to count
+     * @param key The key of item prototype.
+     * @return The number of items that can be given to the inventory safely.
+     */
+    public static int countSpace(@Nullable Inventory inv, @NotNull ItemMatchKey key) {
+        if (inv == null) {
+            return 0;
+        }
+        final ItemMatcher matcher = plugin.getItemMatcher();
         int space = 0;
 
-        int itemMaxStackSize = getItemMaxStackSize(item.getType());
+        int itemMaxStackSize = getItemMaxStackSize(key.getType());
 
         ItemStack[] contents = inv.getStorageContents();
         for (final ItemStack iStack : contents) {
             if (iStack == null || iStack.getType() == Material.AIR) {
                 space += itemMaxStackSize;
-            } else if (plugin.getItemMatcher().matches(item, iStack)) {
+            } else if (matcher.matches(key, iStack)) {
                 space += iStack.getAmount() >= itemMaxStackSize ? 0 : itemMaxStackSize - iStack.getAmount();
             }
         }
-        return space / item.getAmount();
+        return space / key.getStack().getAmount();
     }
 
     /**
@@ -239,14 +286,35 @@ public class Util {
      */
     @Nullable
     public static ItemStack deserialize(@NotNull String config) throws InvalidConfigurationException {
-        if (yaml == null) {
-            yamlOptions = new DumperOptions();
-            yamlOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
-            yamlOptions.setIndent(2);
-            yaml = new Yaml(yamlOptions); //Caching it!
+        ItemStack prototype = itemDecodeCache.getIfPresent(config);
+        if (prototype == null) {
+            prototype = deserializeUncached(config);
+            if (prototype == null) {
+                return null;
+            }
+            itemDecodeCache.put(config, prototype);
         }
+        return prototype.clone();
+    }
+
+    /**
+     * Gets the hit stats of the deserialize cache
+     *
+     * @return The cache stats
+     */
+    @NotNull
+    public static CacheStats getItemDecodeCacheStats() {
+        return itemDecodeCache.stats();
+    }
+
+    public static long getItemDecodeCacheSize() {
+        return itemDecodeCache.size();
+    }
+
+    @Nullable
+    private static ItemStack deserializeUncached(@NotNull String config) throws InvalidConfigurationException {
         YamlConfiguration yamlConfiguration = new YamlConfiguration();
-        Map<Object, Object> root = yaml.load(config);
+        Map<Object, Object> root = yaml.get().load(config);
         //noinspection unchecked
         Map<String, Object> item = (Map<String, Object>) root.get("item");
         int itemDataVersion = Integer.parseInt(String.valueOf(item.getOrDefault("v", "0")));
@@ -268,7 +336,7 @@ public class Util {
                     }
                     // Okay we have hacked the dataVersion, now put it back
                     root.put("item", item);
-                    config = yaml.dump(root);
+                    config = yaml.get().dump(root);
 
                     Util.debugLog("Updated, we will try load as hacked ItemStack: " + config);
                 } else {
@@ -295,10 +363,7 @@ public class Util {
 
     @NotNull
     public static List<String> getDebugLogs() {
-        lock.readLock().lock();
-        List<String> strings = new ArrayList<>(debugLogs);
-        lock.readLock().unlock();
-        return strings;
+        return debugLogs.snapshot("[DEBUG] ");
     }
 
     /**
@@ -310,27 +375,39 @@ public class Util {
         if (disableDebugLogger) {
             return;
         }
-        lock.writeLock().lock(); //TODO MOVE IT
-        if (debugLogs.size() >= 2000) {
-            debugLogs.clear();
-        }
-        //TODO <- MOVE TO THERE SHOULD BE FINE
         if (!devMode) {
             for (String log : logs) {
-                debugLogs.add("[DEBUG] " + log);
+                debugLogs.add(log);
             }
-            lock.writeLock().unlock();
             return;
         }
         final StackTraceElement stackTraceElement = new Throwable().getStackTrace()[1];
-        final String className = stackTraceElement.getClassName();
-        final String methodName = stackTraceElement.getMethodName();
-        final int codeLine = stackTraceElement.getLineNumber();
         for (String log : logs) {
-            debugLogs.add("[DEBUG] [" + className + "] [" + methodName + "] (" + codeLine + ") " + log);
-            QuickShop.getInstance().getLogger().info("[DEBUG] [" + className + "] [" + methodName + "] (" + codeLine + ") " + log);
+            devLog(stackTraceElement, log);
+        }
+    }
+
+    /**
+     * Print debug log when plugin running on dev mode, the message only created when the logs are read.
+     * Use it when creating the message is expensive, e.g string concatenation in hot path.
+     *
+     * @param log The log supplier
+     */
+    public static void debugLog(@NotNull Supplier<String> log) {
+        if (disableDebugLogger) {
+            return;
+        }
+        if (!devMode) {
+            debugLogs.add(log);
+            return;
         }
-        lock.writeLock().unlock();
+        devLog(new Throwable().getStackTrace()[1], log.get());
+    }
+
+    private static void devLog(@NotNull StackTraceElement stackTraceElement, @NotNull String log) {
+        final String message = "[" + stackTraceElement.getClassName() + "] [" + stackTraceElement.getMethodName() + "] (" + stackTraceElement.getLineNumber() + ") " + log;
+        debugLogs.add(message);
+        QuickShop.getInstance().getLogger().info("[DEBUG] " + message);
     }
 
     /**
@@ -599,12 +676,12 @@ public class Util {
      */
     public static int getShopsInWorld(@NotNull String worldName) {
         int cost = 0;
-        Iterator<Shop> iterator = plugin.getShopManager().getShopIterator();
-        while (iterator.hasNext()) {
-            Shop shop = iterator.next();
-            if (Objects.requireNonNull(shop.getLocation().getWorld()).getName().equals(worldName)) {
-                cost++;
-            }
+        List<ShopIndex.ChunkShops> inWorld = plugin.getShopManager().getShopIndex().getChunks(worldName);
+        if (inWorld == null) {
+            return 0;
+        }
+        for (ShopIndex.ChunkShops inChunk : inWorld) {
+            cost += inChunk.size();
         }
         return cost;
     }
@@ -0,0 +1,243 @@
+/*
+ * This file is a part of project QuickShop, the name is LongObjectHashMap.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.util.collection;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A open addressing hash map that use primitive long as key, no boxing and no entry objects.
+ * <p>
+ * Null values are not allowed, a null value slot means the slot is empty.
+ * This class is NOT thread-safe, but reading while another thread writing will never throw,
+ * so the caller can use it with optimistic locking (e.g StampedLock) and validate the result.
+ *
+ * @param <V> The value type
+ */
+public class LongObjectHashMap<V> {
+    private static final int DEFAULT_EXPECTED_SIZE = 4;
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    private int threshold;
+
+    public LongObjectHashMap() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * Create a map which can hold expectedSize entries without resizing
+     *
+     * @param expectedSize The expected size
+     */
+    public LongObjectHashMap(int expectedSize) {
+        allocate(tableSizeFor((int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR)));
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        return size <= 0 ? 1 << 30 : size;
+    }
+
+    private static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Gets the value mapped to the key
+     *
+     * @param key The key
+     * @return The value, or null if not mapped
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable V get(long key) {
+        // Read the arrays once, the length of them may different when racing a resize.
+        final Object[] vals = this.values;
+        final long[] ks = this.keys;
+        final int mask = Math.min(vals.length, ks.length) - 1;
+        int index = mix(key) & mask;
+        for (int probes = 0; probes <= mask; probes++) {
+            final Object value = vals[index];
+            if (value == null) {
+                return null;
+            }
+            if (ks[index] == key) {
+                return (V) value;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps the value to the key
+     *
+     * @param key   The key
+     * @param value The value, can't be null
+     * @return The previous value, or null if not mapped before
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable V put(long key, @NotNull V value) {
+        Objects.requireNonNull(value, "Null values are not allowed");
+        final int mask = values.length - 1;
+        int index = mix(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                final V old = (V) values[index];
+                values[index] = value;
+                return old;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > threshold) {
+            resize(values.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the mapping of the key
+     *
+     * @param key The key
+     * @return The removed value, or null if not mapped
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable V remove(long key) {
+        final int mask = values.length - 1;
+        int index = mix(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                final V old = (V) values[index];
+                shiftBack(index, mask);
+                size--;
+                return old;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    // Linear probing removal, move the entries after the gap back so the probe chains stay unbroken.
+    private void shiftBack(int gap, int mask) {
+        int next = (gap + 1) & mask;
+        while (values[next] != null) {
+            final int ideal = mix(keys[next]) & mask;
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[gap] = null;
+        keys[gap] = 0L;
+    }
+
+    private void resize(int newCapacity) {
+        final long[] oldKeys = this.keys;
+        final Object[] oldValues = this.values;
+        final long[] newKeys = new long[newCapacity];
+        final Object[] newValues = new Object[newCapacity];
+        final int mask = newCapacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) {
+                continue;
+            }
+            int index = mix(oldKeys[i]) & mask;
+            while (newValues[index] != null) {
+                index = (index + 1) & mask;
+            }
+            newKeys[index] = oldKeys[i];
+            newValues[index] = oldValues[i];
+        }
+        this.keys = newKeys;
+        this.values = newValues;
+        this.threshold = (int) (newCapacity * LOAD_FACTOR);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        Arrays.fill(keys, 0L);
+        size = 0;
+    }
+
+    /**
+     * Performs the action for each value in this map
+     *
+     * @param action The action
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(@NotNull Consumer<? super V> action) {
+        final Object[] vals = this.values;
+        for (Object value : vals) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    /**
+     * Copy all values into the collection
+     *
+     * @param collection The collection to add values
+     */
+    @SuppressWarnings("unchecked")
+    public void copyValuesTo(@NotNull Collection<? super V> collection) {
+        final Object[] vals = this.values;
+        for (Object value : vals) {
+            if (value != null) {
+                collection.add((V) value);
+            }
+        }
+    }
+
+}
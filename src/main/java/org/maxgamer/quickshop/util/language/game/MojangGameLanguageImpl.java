@@ -5,19 +5,22 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import lombok.Getter;
 import lombok.Setter;
-import lombok.SneakyThrows;
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.EntityType;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.IllegalPluginAccessException;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.potion.PotionEffectType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.util.Copied;
+import org.maxgamer.quickshop.util.MsgUtil;
 import org.maxgamer.quickshop.util.ReflectFactory;
+import org.maxgamer.quickshop.util.SentryErrorReporter;
 import org.maxgamer.quickshop.util.Util;
 import org.maxgamer.quickshop.util.mojangapi.AssetJson;
 import org.maxgamer.quickshop.util.mojangapi.MojangAPI;
@@ -27,43 +30,59 @@ import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
 
+/**
+ * The game language from the Mojang language assets.
+ * <p>
+ * The asset cached in the cache folder (keyed by server version, language and asset hash) is used at once if matches,
+ * otherwise it is downloaded in background, the Bukkit names are used until the download finished,
+ * then the translated names are swapped in.
+ */
 public class MojangGameLanguageImpl extends BukkitGameLanguageImpl implements GameLanguage {
     private final QuickShop plugin;
     private @Nullable
-    final JsonObject lang;
+    volatile JsonObject lang;
 
-    @SneakyThrows
     public MojangGameLanguageImpl(@NotNull QuickShop plugin, @NotNull String languageCode) {
+        this(plugin, languageCode, new MojangAPI(plugin));
+    }
+
+    /**
+     * Create the game language with the specified MojangAPI, e.g the one reads the files in a local mirror
+     *
+     * @param plugin       The plugin instance
+     * @param languageCode The language code, or default to use the system language
+     * @param mojangAPI    The MojangAPI to download the asset with
+     */
+    public MojangGameLanguageImpl(@NotNull QuickShop plugin, @NotNull String languageCode, @NotNull MojangAPI mojangAPI) {
         super(plugin);
         this.plugin = plugin;
         final GameLanguageLoadThread loadThread = new GameLanguageLoadThread();
         languageCode = languageCode.replace("-", "_");
         loadThread.setLanguageCode(languageCode.toLowerCase());
-        loadThread.setMainThreadWaiting(true); // Told thread we're waiting it
-        loadThread.setPlugin(plugin); // Transfer instance
-        loadThread.start();
-        int count = 0;
-        while (count < 7) {
-            if (loadThread.isAlive()) {
-                count++;
-                Thread.sleep(1000);
-                if (count >= 20) {
-                    Util.debugLog(
-                            "No longer waiting file downloading because it now timed out, now downloading in background.");
-                    plugin
-                            .getLogger()
-                            .info(
-                                    "No longer waiting file downloading because it now timed out, now downloading in background, please reset itemi18n.yml, potioni18n.yml and enchi18n.yml after download completed.");
-                }
-            } else {
-                break;
-            }
+        loadThread.setLogger(plugin.getLogger());
+        loadThread.setErrorReporter(plugin.getSentryErrorReporter());
+        loadThread.setCacheFolder(Util.getCacheFolder());
+        loadThread.setServerVersion(ReflectFactory.getServerVersion());
+        loadThread.setMojangAPI(mojangAPI);
+        this.lang = loadThread.loadFromCache();
+        if (this.lang != null) {
+            Util.debugLog("Loaded the game language from cache.");
+            return;
         }
-        this.lang = loadThread.getLang(); // Get the Lang whatever thread running or died.
-        loadThread.setMainThreadWaiting(
-                false); // Told thread it now move to background, thread should told user reset files.
-
+        // Don't block the startup, the names will be swapped in after downloaded
+        loadThread.setOnLoaded(loaded -> {
+            this.lang = loaded;
+            try {
+                Bukkit.getScheduler().runTask(plugin, MsgUtil::refreshGameLanguageNames);
+            } catch (IllegalPluginAccessException ignore) {
+                // Plugin disabled while downloading
+            }
+        });
+        loadThread.setDaemon(true);
+        loadThread.start();
     }
 
     @Override
@@ -152,58 +171,104 @@ public class MojangGameLanguageImpl extends BukkitGameLanguageImpl implements Ga
 
 @Getter
 @Setter
-//TODO Refactor: After two months what i write it and now i can't understand these code...
 class GameLanguageLoadThread extends Thread {
     private JsonObject lang;
 
     private String languageCode;
 
-    private boolean mainThreadWaiting;
+    private Logger logger;
+
+    @Nullable
+    private SentryErrorReporter errorReporter;
+
+    private File cacheFolder;
+
+    private String serverVersion;
+
+    private MojangAPI mojangAPI;
+
+    @Nullable
+    private Consumer<JsonObject> onLoaded;
+
+    private void resolveLanguageCode() {
+        /* If language name is default, use computer language */
+        if ("default".equals(languageCode)) {
+            Locale locale = Locale.getDefault();
+            languageCode = locale.getLanguage() + "_" + locale.getCountry();
+        }
+    }
 
-    private QuickShop plugin;
+    /**
+     * Load the language from the cached asset, without any network access
+     *
+     * @return The language, or null if the cache not matches the server version and language
+     */
+    @Nullable
+    JsonObject loadFromCache() {
+        resolveLanguageCode();
+        File cacheFile = new File(cacheFolder, "lang.cache");
+        if (!cacheFile.exists()) {
+            return null;
+        }
+        try {
+            YamlConfiguration yamlConfiguration = YamlConfiguration.loadConfiguration(cacheFile);
+            String cachingLanguageHash = yamlConfiguration.getString("hash");
+            if (cachingLanguageHash == null || cachingLanguageHash.isEmpty()
+                    || !languageCode.equals(yamlConfiguration.getString("lang"))
+                    || !serverVersion.equals(yamlConfiguration.getString("ver"))) {
+                return null;
+            }
+            File langFile = new File(cacheFolder, cachingLanguageHash);
+            if (!langFile.exists()) {
+                return null;
+            }
+            String json = Util.readToString(langFile);
+            if (json == null || json.isEmpty()) {
+                return null;
+            }
+            return new JsonParser().parse(json).getAsJsonObject();
+        } catch (RuntimeException e) {
+            Util.debugLog("Failed to load the game language from cache: " + e.getMessage());
+            return null;
+        }
+    }
 
     public void run() {
         boolean failed = false;
         try {
-            File cacheFile = new File(Util.getCacheFolder(), "lang.cache"); // Load cache file
+            File cacheFile = new File(cacheFolder, "lang.cache"); // Load cache file
             if (!cacheFile.exists()) {
                 //noinspection ResultOfMethodCallIgnored
                 cacheFile.createNewFile();
             }
             YamlConfiguration yamlConfiguration = new YamlConfiguration();
-            yamlConfiguration.load(new File(Util.getCacheFolder(), "lang.cache"));
+            yamlConfiguration.load(cacheFile);
             boolean needUpdateCache = false;
             /* The cache data, if it all matches, we doesn't need connect to internet to download files again. */
             String cachingServerVersion = yamlConfiguration.getString("ver");
             String cachingLanguageHash = yamlConfiguration.getString("hash");
             String cachingLanguageName = yamlConfiguration.getString("lang");
-            /* If language name is default, use computer language */
-            if ("default".equals(languageCode)) {
-                Locale locale = Locale.getDefault();
-                languageCode = locale.getLanguage() + "_" + locale.getCountry();
-            }
+            resolveLanguageCode();
             if (!languageCode.equals(cachingLanguageName)) {
                 cachingLanguageName = languageCode;
                 needUpdateCache = true;
             }
             String languageCode1 = languageCode.toLowerCase();
-            String serverVersion = ReflectFactory.getServerVersion();
             if (!serverVersion.equals(cachingServerVersion)) {
                 cachingServerVersion = serverVersion;
                 needUpdateCache = true;
             }
-            if (cachingLanguageHash == null || cachingLanguageHash.isEmpty()) {
+            if (cachingLanguageHash == null || cachingLanguageHash.isEmpty()
+                    || !new File(cacheFolder, cachingLanguageHash).exists()) {
                 needUpdateCache = true;
             }
             if (needUpdateCache) {
-                MojangAPI mojangAPI = new MojangAPI(plugin);
                 String assetJson = mojangAPI.getAssetIndexJson(cachingServerVersion);
                 if (assetJson != null) {
                     AssetJson versionJson = new AssetJson(assetJson);
                     String hash = versionJson.getLanguageHash(languageCode1);
                     if (hash == null) {
-                        plugin
-                                .getLogger()
+                        logger
                                 .warning("Cannot get file hash for language " + languageCode1 + ", fallback to en_us...");
                         languageCode1 = "en_us";
                         hash = versionJson.getLanguageHash(languageCode1);
@@ -212,28 +277,25 @@ class GameLanguageLoadThread extends Thread {
                         cachingLanguageHash = hash;
                         String langJson = mojangAPI.downloadTextFileFromMojang(hash);
                         if (langJson != null) {
-                            new Copied(new File(Util.getCacheFolder(), hash))
+                            new Copied(new File(cacheFolder, hash))
                                     .accept(new ByteArrayInputStream(langJson.getBytes(StandardCharsets.UTF_8)));
                         } else {
                             Util.debugLog("Cannot download file.");
-                            plugin
-                                    .getLogger()
+                            logger
                                     .warning(
                                             "Cannot download require files, some items/blocks/potions/enchs language will use default English name.");
                             failed = true;
                         }
                     } else {
                         Util.debugLog("Cannot get file hash for language " + languageCode1);
-                        plugin
-                                .getLogger()
+                        logger
                                 .warning(
                                         "Cannot download require files, some items/blocks/potions/enchs language will use default English name.");
                         failed = true;
                     }
                 } else {
                     Util.debugLog("Cannot get version json.");
-                    plugin
-                            .getLogger()
+                    logger
                             .warning(
                                     "Cannot download require files, some items/blocks/potions/enchs language will use default English name.");
                     failed = true;
@@ -245,7 +307,7 @@ class GameLanguageLoadThread extends Thread {
             yamlConfiguration.save(cacheFile);
             String json = null;
             if (cachingLanguageHash != null) {
-                json = Util.readToString(new File(Util.getCacheFolder(), cachingLanguageHash));
+                json = Util.readToString(new File(cacheFolder, cachingLanguageHash));
             } else {
                 Util.debugLog("Caching LanguageHash is null");
             }
@@ -255,24 +317,21 @@ class GameLanguageLoadThread extends Thread {
                 Util.debugLog("json is null");
             }
         } catch (Exception e) {
-            plugin.getSentryErrorReporter().ignoreThrow();
+            if (errorReporter != null) {
+                errorReporter.ignoreThrow();
+            }
             e.printStackTrace();
             failed = true;
         }
-        if (!this.mainThreadWaiting) {
-
-            if (!failed) {
-
-                plugin
-                        .getLogger()
-                        .info(
-                                "Download completed, please execute /qs reset lang to generate localized language files.");
-            } else {
-                plugin
-                        .getLogger()
-                        .info(
-                                "Failed to download required files, we will try again when plugin next loading.");
-            }
+        if (failed || lang == null) {
+            logger
+                    .info(
+                            "Failed to download required files, we will try again when plugin next loading.");
+            return;
+        }
+        logger.info("Download completed, the game language will be applied.");
+        if (onLoaded != null) {
+            onLoaded.accept(lang);
         }
     }
 
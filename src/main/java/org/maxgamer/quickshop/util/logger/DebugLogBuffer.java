@@ -0,0 +1,130 @@
+/*
+ * This file is a part of project QuickShop, the name is DebugLogBuffer.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.util.logger;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * A bounded lock-free ring buffer of debug records, the oldest records are overwritten when full.
+ * <p>
+ * The records can hold a message supplier, it will be called when the buffer is read,
+ * so the message only formatted if someone really reads it.
+ */
+public class DebugLogBuffer {
+    private final AtomicReferenceArray<Record> slots;
+
+    private final int mask;
+
+    /* The sequence of the next record */
+    private final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * Create a buffer which keeps the latest records
+     *
+     * @param capacity The capacity, rounded up to the power of two
+     */
+    public DebugLogBuffer(int capacity) {
+        final int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public void add(@NotNull String message) {
+        final long sequence = cursor.getAndIncrement();
+        slots.set((int) (sequence & mask), new Record(sequence, message, null));
+    }
+
+    public void add(@NotNull Supplier<String> message) {
+        final long sequence = cursor.getAndIncrement();
+        slots.set((int) (sequence & mask), new Record(sequence, null, message));
+    }
+
+    /**
+     * Gets the records from oldest to newest, the message suppliers are called here
+     *
+     * @param prefix The prefix for every message
+     * @return The messages
+     */
+    @NotNull
+    public List<String> snapshot(@NotNull String prefix) {
+        final long end = cursor.get();
+        final long start = Math.max(0, end - slots.length());
+        final List<String> messages = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            final Record record = slots.get((int) (sequence & mask));
+            // Skip the slot not written yet or overwritten by a newer record while reading
+            if (record == null || record.sequence != sequence) {
+                continue;
+            }
+            messages.add(prefix + record.getMessage());
+        }
+        return messages;
+    }
+
+    /**
+     * Gets how many records ever added
+     *
+     * @return The records count
+     */
+    public long getTotalRecords() {
+        return cursor.get();
+    }
+
+    private static class Record {
+        private final long sequence;
+
+        private volatile String message;
+
+        private volatile Supplier<String> supplier;
+
+        private Record(long sequence, String message, Supplier<String> supplier) {
+            this.sequence = sequence;
+            this.message = message;
+            this.supplier = supplier;
+        }
+
+        @NotNull
+        private String getMessage() {
+            String formatted = this.message;
+            if (formatted == null) {
+                final Supplier<String> messageSupplier = this.supplier;
+                if (messageSupplier == null) {
+                    // Formatted by another reader at the same time
+                    return String.valueOf(this.message);
+                }
+                try {
+                    formatted = String.valueOf(messageSupplier.get());
+                } catch (RuntimeException e) {
+                    formatted = "Failed to format the debug log: " + e;
+                }
+                this.message = formatted;
+                this.supplier = null;
+            }
+            return formatted;
+        }
+    }
+
+}
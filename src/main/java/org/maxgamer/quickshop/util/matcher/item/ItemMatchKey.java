@@ -0,0 +1,68 @@
+/*
+ * This file is a part of project QuickShop, the name is ItemMatchKey.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.util.matcher.item;
+
+import lombok.Getter;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The precompiled match key of an ItemStack, build it once and match it with many ItemStacks.
+ * <p>
+ * The matchers reject the tested ItemStack by the cheap type and hasItemMeta check first,
+ * and only compare the ItemMeta when they are the same. The ItemMeta of the original is copied only once here.
+ */
+@Getter
+public final class ItemMatchKey {
+    @NotNull
+    private final ItemStack stack;
+
+    @NotNull
+    private final Material type;
+
+    private final boolean hasMeta;
+
+    @Nullable
+    private final ItemMeta meta;
+
+    private final int metaHash;
+
+    public ItemMatchKey(@NotNull ItemStack stack) {
+        this.stack = stack.clone();
+        this.type = stack.getType();
+        this.hasMeta = stack.hasItemMeta();
+        this.meta = hasMeta ? stack.getItemMeta() : null;
+        this.metaHash = meta == null ? 0 : meta.hashCode();
+    }
+
+    /**
+     * Check the ItemStack may match this key, false means it never match
+     *
+     * @param tester The ItemStack to test
+     * @return Whether it have the same type and the same present of ItemMeta
+     */
+    public boolean mayMatch(@Nullable ItemStack tester) {
+        return tester != null && tester.getType() == type && tester.hasItemMeta() == hasMeta;
+    }
+
+}
@@ -29,4 +29,15 @@ public interface ItemMatcher {
      * @return The result of tests
      */
     boolean matches(@Nullable ItemStack original, @Nullable ItemStack tester);
+
+    /**
+     * Tests the ItemStack matches the precompiled original ItemStack
+     *
+     * @param original The key of original ItemStack
+     * @param tester   The ItemStack will test matches with original itemstack.
+     * @return The result of tests
+     */
+    default boolean matches(@NotNull ItemMatchKey original, @Nullable ItemStack tester) {
+        return matches(original.getStack(), tester);
+    }
 }
@@ -37,6 +37,19 @@ public class QuickShopItemMatcherImpl implements ItemMatcher {
         workType = plugin.getConfig().getInt("matcher.work-type");
     }
 
+    /**
+     * Creates the matcher from the given config directly, the plugin can be null in the unit tests
+     *
+     * @param plugin            The plugin instance
+     * @param itemMatcherConfig The matcher.item config section
+     * @param workType          The matcher work type
+     */
+    QuickShopItemMatcherImpl(@Nullable QuickShop plugin, @NotNull ConfigurationSection itemMatcherConfig, int workType) {
+        this.plugin = plugin;
+        this.itemMetaMatcher = new ItemMetaMatcher(itemMatcherConfig, this);
+        this.workType = workType;
+    }
+
     /**
      * Gets the ItemMatcher provider name
      *
@@ -107,27 +120,16 @@ public class QuickShopItemMatcherImpl implements ItemMatcher {
         }
 
         if (requireStack == null || givenStack == null) {
-            Util.debugLog(
-                    "Match failed: A stack is null: "
-                            + "requireStack["
-                            + requireStack
-                            + "] givenStack["
-                            + givenStack
-                            + "]");
+            // Don't defer the stacks themselves, they are mutable
+            final String missing = requireStack == null ? "requireStack" : "givenStack";
+            Util.debugLog(() -> "Match failed: A stack is null: " + missing);
             return false; // One of them is null (Can't be both, see above)
         }
 
-        requireStack = requireStack.clone();
-        requireStack.setAmount(1);
-        givenStack = givenStack.clone();
-        givenStack.setAmount(1);
-
-        if (workType == 1) {
+        // The amount is not compared, so no need to clone them and set the amount to 1
+        if (workType == 1 || workType == 2) {
             return requireStack.isSimilar(givenStack);
         }
-        if (workType == 2) {
-            return requireStack.equals(givenStack);
-        }
 
         if (!typeMatches(requireStack, givenStack)) {
             return false;
@@ -143,6 +145,33 @@ public class QuickShopItemMatcherImpl implements ItemMatcher {
         return true;
     }
 
+    /**
+     * Compares the item to the precompiled item, reject by the type and the present of meta first,
+     * and only compares the meta when it is necessary.
+     *
+     * @param original The key of original ItemStack
+     * @param tester   The ItemStack will test matches with original itemstack.
+     * @return true if the itemstacks match.
+     */
+    @Override
+    public boolean matches(@NotNull ItemMatchKey original, @Nullable ItemStack tester) {
+        if (!original.mayMatch(tester)) {
+            return false;
+        }
+        if (workType == 1 || workType == 2) {
+            return original.getStack().isSimilar(tester);
+        }
+        if (!original.isHasMeta()) {
+            return true;
+        }
+        ItemMeta testerMeta = tester.getItemMeta();
+        // Same meta always passes every meta matcher
+        if (original.getMetaHash() == testerMeta.hashCode() && original.getMeta().equals(testerMeta)) {
+            return true;
+        }
+        return itemMetaMatcher.matches(original.getMeta(), testerMeta);
+    }
+
     private boolean typeMatches(ItemStack requireStack, ItemStack givenStack) {
         return requireStack.getType().equals(givenStack.getType());
     }
@@ -480,8 +509,10 @@ public class QuickShopItemMatcherImpl implements ItemMatcher {
             if (!requireStack.hasItemMeta()) {
                 return true; // Passed check. no meta need to check.
             }
-            ItemMeta meta1 = requireStack.getItemMeta();
-            ItemMeta meta2 = givenStack.getItemMeta();
+            return matches(requireStack.getItemMeta(), givenStack.getItemMeta());
+        }
+
+        boolean matches(ItemMeta meta1, ItemMeta meta2) {
             for (Matcher matcher : matcherList) {
                 if (!matcher.match(meta1, meta2)) {
                     return false;
@@ -25,7 +25,6 @@ import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.maxgamer.quickshop.util.MsgUtil;
 import org.maxgamer.quickshop.util.Util;
 
 public class AssetJson {
@@ -56,7 +55,7 @@ public class AssetJson {
             Util.debugLog("Json object is null.");
             return null;
         }
-        JsonObject langObj = objs.getAsJsonObject(MsgUtil.fillArgs(pathTemplate, languageCode));
+        JsonObject langObj = objs.getAsJsonObject(pathTemplate.replace("{0}", languageCode));
         if (langObj == null || langObj.isJsonNull()) {
             Util.debugLog("Cannot find request path.");
             Util.debugLog(this.gameAssets);
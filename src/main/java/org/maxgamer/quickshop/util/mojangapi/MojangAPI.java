@@ -33,22 +33,70 @@ import org.maxgamer.quickshop.util.Util;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
 
 public class MojangAPI {
-    final String versionManifestUrl = "https://launchermeta.mojang.com/mc/game/version_manifest.json";
+    final String versionManifestUrl;
 
-    final String assetsUrl = "https://resources.download.minecraft.net/";
+    final String assetsUrl;
 
     final String pathTemplate = "minecraft/lang/{0}.json";
 
     final Gson gson = JsonUtil.getGson();
 
-    private final QuickShop plugin;
+    private final Logger logger;
+
+    private final File cacheFolder;
 
     public MojangAPI(@NotNull QuickShop plugin) {
-        this.plugin = plugin;
+        this(plugin, "https://launchermeta.mojang.com/mc/game/version_manifest.json", "https://resources.download.minecraft.net/");
+    }
+
+    /**
+     * Create the MojangAPI with the specified endpoints, the file: urls are supported, e.g a local mirror.
+     *
+     * @param plugin             The plugin instance
+     * @param versionManifestUrl The url of version manifest
+     * @param assetsUrl          The base url of assets, ends with /
+     */
+    public MojangAPI(@NotNull QuickShop plugin, @NotNull String versionManifestUrl, @NotNull String assetsUrl) {
+        this(plugin.getLogger(), Util.getCacheFolder(), versionManifestUrl, assetsUrl);
+    }
+
+    /**
+     * Create the MojangAPI without the plugin instance, e.g a test against a local mirror.
+     *
+     * @param logger             The logger to report the progress
+     * @param cacheFolder        The folder to cache the downloaded assets
+     * @param versionManifestUrl The url of version manifest
+     * @param assetsUrl          The base url of assets, ends with /
+     */
+    public MojangAPI(@NotNull Logger logger, @NotNull File cacheFolder, @NotNull String versionManifestUrl, @NotNull String assetsUrl) {
+        this.logger = logger;
+        this.cacheFolder = cacheFolder;
+        this.versionManifestUrl = versionManifestUrl;
+        this.assetsUrl = assetsUrl;
+    }
+
+    @NotNull
+    private String fetch(@NotNull String url) throws IOException {
+        URL target = new URL(url);
+        if ("file".equals(target.getProtocol())) {
+            try {
+                return Files.asCharSource(new File(target.toURI()), StandardCharsets.UTF_8).read().trim();
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        return HttpRequest.get(target)
+                .execute()
+                .expectResponseCode(200)
+                .returnContent()
+                .asString("UTF-8")
+                .trim();
     }
 
     @Nullable
@@ -73,12 +121,7 @@ public class MojangAPI {
             Util.debugLog("Cannot get asset url.");
             return null;
         }
-        return HttpRequest.get(new URL(url))
-                .execute()
-                .expectResponseCode(200)
-                .returnContent()
-                .asString("UTF-8")
-                .trim();
+        return fetch(url);
     }
 
     @Nullable
@@ -87,13 +130,8 @@ public class MojangAPI {
         for (VersionList.VersionsBean mcv : list.getVersions()) {
             if (mcv.getId().equals(mcVer)) {
                 try {
-                    plugin.getLogger().info("Downloading version index...");
-                    return HttpRequest.get(new URL(mcv.getUrl()))
-                            .execute()
-                            .expectResponseCode(200)
-                            .returnContent()
-                            .asString("UTF-8")
-                            .trim();
+                    logger.info("Downloading version index...");
+                    return fetch(mcv.getUrl());
                 } catch (IOException e) {
                     Util.debugLog(e.getMessage());
                     return null;
@@ -105,30 +143,19 @@ public class MojangAPI {
 
     @Nullable
     public String getVersionManifest() throws IOException {
-        plugin.getLogger().info("Downloading version manifest...");
-        return HttpRequest.get(new URL(versionManifestUrl))
-                .execute()
-                .expectResponseCode(200)
-                .returnContent()
-                .asString("UTF-8")
-                .trim();
+        logger.info("Downloading version manifest...");
+        return fetch(versionManifestUrl);
     }
 
     @Nullable
     public String downloadTextFileFromMojang(@NotNull String hash) throws IOException {
-        File cacheFile = new File(Util.getCacheFolder(), hash);
+        File cacheFile = new File(cacheFolder, hash);
         if (cacheFile.exists()) {
             return Util.readToString(cacheFile);
         }
         String data;
-        plugin.getLogger().info("Downloading assets file...");
-        data =
-                HttpRequest.get(new URL(this.assetsUrl + hash.substring(0, 2) + "/" + hash))
-                        .execute()
-                        .expectResponseCode(200)
-                        .returnContent()
-                        .asString("UTF-8")
-                        .trim();
+        logger.info("Downloading assets file...");
+        data = fetch(this.assetsUrl + hash.substring(0, 2) + "/" + hash);
         Files.write(data.getBytes(StandardCharsets.UTF_8), cacheFile);
         return data;
     }
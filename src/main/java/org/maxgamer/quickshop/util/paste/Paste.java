@@ -19,6 +19,7 @@
 
 package org.maxgamer.quickshop.util.paste;
 
+import com.google.common.cache.CacheStats;
 import com.google.gson.Gson;
 import lombok.*;
 import org.bukkit.Bukkit;
@@ -31,6 +32,7 @@ import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.economy.Economy;
 import org.maxgamer.quickshop.economy.EconomyCore;
 import org.maxgamer.quickshop.economy.Economy_Vault;
+import org.maxgamer.quickshop.shop.ContainerShop;
 import org.maxgamer.quickshop.util.MsgUtil;
 import org.maxgamer.quickshop.util.Util;
 
@@ -182,7 +184,40 @@ public class Paste {
         finalReport.append("Internal Data:\n");
         finalReport.append("Caching Pool Enabled: ").append(plugin.getShopCache() != null).append("\n");
         if (plugin.getShopCache() != null) {
-            finalReport.append("Caching Contents: ").append(plugin.getShopCache().getCachingSize()).append("\n");
+            finalReport.append("Caching Contents: ").append(plugin.getShopCache().getCachingSize()).append("/").append(plugin.getShopCache().getMaximumSize())
+                    .append(", hits ").append(plugin.getShopCache().getHits()).append(", misses ").append(plugin.getShopCache().getMisses())
+                    .append(", evictions ").append(plugin.getShopCache().getEvictions()).append(", invalidations ").append(plugin.getShopCache().getInvalidations()).append("\n");
+        }
+        if (QuickShop.getPermissionManager() != null && QuickShop.getPermissionManager().getCacheStats() != null) {
+            finalReport.append("Permission Cache: ").append(QuickShop.getPermissionManager().getCacheStats()).append("\n");
+        }
+        if (plugin.getDisplayWatcher() != null) {
+            finalReport.append("Display Checks: ").append(plugin.getDisplayWatcher().getChecksPerSecond()).append("/s, total ")
+                    .append(plugin.getDisplayWatcher().getTotalChecks()).append(", skipped healthy ")
+                    .append(plugin.getDisplayWatcher().getTotalSkipped()).append(", overruns ")
+                    .append(plugin.getDisplayWatcher().getOverruns()).append("\n");
+        }
+        finalReport.append("Stock Cache: ").append(ContainerShop.getStockCacheHits()).append(" hits, ")
+                .append(ContainerShop.getStockCacheMisses()).append(" misses, ")
+                .append(ContainerShop.getStockCacheInvalidations()).append(" invalidations\n");
+        CacheStats itemDecodeStats = Util.getItemDecodeCacheStats();
+        finalReport.append("Item Decode Cache: ").append(Util.getItemDecodeCacheSize()).append(" items, ")
+                .append(itemDecodeStats.hitCount()).append(" hits, ")
+                .append(itemDecodeStats.missCount()).append(" misses, hit rate ")
+                .append(String.format("%.2f", itemDecodeStats.hitRate() * 100)).append("%\n");
+        if (plugin.getDatabaseManager() != null) {
+            finalReport.append("Database Queue Depth: ").append(plugin.getDatabaseManager().getQueueDepth()).append("\n");
+            finalReport.append("Database Last Flush: ").append(plugin.getDatabaseManager().getLastFlushTasks()).append(" tasks in ")
+                    .append(plugin.getDatabaseManager().getLastFlushBatches()).append(" batches, took ")
+                    .append(plugin.getDatabaseManager().getLastFlushLatency()).append("ms\n");
+            finalReport.append("Database Coalesced Pending: ").append(plugin.getDatabaseManager().getCoalescedPending())
+                    .append(", Dropped: ").append(plugin.getDatabaseManager().getTotalCoalescedTasks()).append("\n");
+            finalReport.append("Database Max Batch Size: ").append(plugin.getDatabaseManager().getMaxFlushedBatchSize()).append("\n");
+            finalReport.append("Database Total Flushed: ").append(plugin.getDatabaseManager().getTotalFlushedTasks()).append(" tasks in ")
+                    .append(plugin.getDatabaseManager().getTotalFlushedBatches()).append(" batches\n");
+        }
+        if (plugin.getDatabase() != null && plugin.getDatabase().getCore().getConnectionPool() != null) {
+            finalReport.append("Database Connection Pool: ").append(plugin.getDatabase().getCore().getConnectionPool().getStatus()).append("\n");
         }
         finalReport.append("================================================\n");
         finalReport.append("Configurations:\n");
@@ -17,61 +17,166 @@
  * along with this program. If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package org.maxgamer.quickshop.watcher;
 
-import lombok.AllArgsConstructor;
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
+import org.maxgamer.quickshop.shop.DisplayItem;
 import org.maxgamer.quickshop.shop.Shop;
+import org.maxgamer.quickshop.shop.ShopIndex;
 import org.maxgamer.quickshop.util.Util;
+import org.maxgamer.quickshop.util.collection.LongObjectHashMap;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
-@AllArgsConstructor
+/**
+ * Despawn the displays which no player nearby, and spawn them back when a player come close.
+ * <p>
+ * A pass buckets the online players by world and chunk, marks the shops around every occupied chunk
+ * which within the despawn range, then spawns or despawns the displays which visibility changed.
+ * The pass is spread across ticks within a time budget per tick, this watcher must run every tick on the main thread.
+ */
 public class DisplayAutoDespawnWatcher extends BukkitRunnable {
     private final QuickShop plugin;
 
+    /* The shops have a player within range in current pass */
+    private final Set<Shop> visible = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /* The occupied chunks waiting for marking */
+    private final Deque<PlayerBucket> buckets = new ArrayDeque<>();
+
+    /* The loaded shops waiting for applying the visibility */
+    @Nullable
+    private Iterator<Shop> shopCursor;
+
+    private long rangeSquared;
+
+    private int chunkRadius;
+
+    private long budgetNanos;
+
+    private int ticksUntilNextPass;
+
+    public DisplayAutoDespawnWatcher(@NotNull QuickShop plugin) {
+        this.plugin = plugin;
+    }
+
     @Override
     public void run() {
-        int range = plugin.getConfig().getInt("shop.display-despawn-range");
-
-        for (Shop shop : plugin.getShopManager().getLoadedShops()) {
-            if (shop.getDisplay() != null) {
-                // Check the range has player?
-                boolean anyPlayerInRegion = false;
-                for (Player player : Bukkit.getOnlinePlayers()) {
-                    if (player.getWorld() == shop.getLocation().getWorld()) {
-                        if (player.getLocation().distance(shop.getLocation()) < range) {
-                            anyPlayerInRegion = true;
-                            break;
-                        }
-                    }
+        if (shopCursor == null && buckets.isEmpty()) {
+            if (--ticksUntilNextPass > 0) {
+                return;
+            }
+            ticksUntilNextPass = Math.max(1, plugin.getConfig().getInt("shop.display-check-time"));
+            startPass();
+        }
+        final long deadline = System.nanoTime() + budgetNanos;
+        while (!buckets.isEmpty()) {
+            if (System.nanoTime() >= deadline) {
+                return;
+            }
+            mark(buckets.poll());
+        }
+        if (shopCursor == null) {
+            shopCursor = new ArrayList<>(plugin.getShopManager().getLoadedShops()).iterator();
+        }
+        while (shopCursor.hasNext()) {
+            if (System.nanoTime() >= deadline) {
+                return;
+            }
+            apply(shopCursor.next());
+        }
+        shopCursor = null;
+        visible.clear();
+    }
+
+    private void startPass() {
+        final int range = plugin.getConfig().getInt("shop.display-despawn-range");
+        this.rangeSquared = (long) range * range;
+        this.chunkRadius = (range + 15) >> 4;
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(plugin.getConfig().getLong("shop.display-despawn-budget", 2));
+        final Map<String, LongObjectHashMap<PlayerBucket>> byWorld = new HashMap<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            final Location loc = player.getLocation();
+            final String world = player.getWorld().getName();
+            final int chunkX = loc.getBlockX() >> 4;
+            final int chunkZ = loc.getBlockZ() >> 4;
+            final LongObjectHashMap<PlayerBucket> inWorld = byWorld.computeIfAbsent(world, k -> new LongObjectHashMap<>());
+            final long chunkKey = ShopIndex.chunkKey(chunkX, chunkZ);
+            PlayerBucket bucket = inWorld.get(chunkKey);
+            if (bucket == null) {
+                bucket = new PlayerBucket(world, chunkX, chunkZ);
+                inWorld.put(chunkKey, bucket);
+                buckets.add(bucket);
+            }
+            bucket.add(loc.getX(), loc.getY(), loc.getZ());
+        }
+    }
+
+    private void mark(@NotNull PlayerBucket bucket) {
+        final ShopIndex shopIndex = plugin.getShopManager().getShopIndex();
+        for (int dx = -chunkRadius; dx <= chunkRadius; dx++) {
+            for (int dz = -chunkRadius; dz <= chunkRadius; dz++) {
+                final ShopIndex.ChunkShops inChunk = shopIndex.getChunk(bucket.world, bucket.chunkX + dx, bucket.chunkZ + dz);
+                if (inChunk == null || inChunk.isEmpty()) {
+                    continue;
                 }
-                if (anyPlayerInRegion) {
-                    if (!shop.getDisplay().isSpawned()) {
-                        Util.debugLog(
-                                "Respawning the shop "
-                                        + shop
-                                        + " the display, cause it was despawned and a player close it");
-                        Bukkit.getScheduler().runTask(plugin, shop::checkDisplay);
+                for (Shop shop : inChunk.values()) {
+                    if (shop.getDisplay() != null && !visible.contains(shop) && bucket.anyWithin(shop.getLocation(), rangeSquared)) {
+                        visible.add(shop);
                     }
-                } else if (shop.getDisplay().isSpawned()) {
-                    removeDisplayItemDelayed(shop);
                 }
             }
         }
     }
 
+    private void apply(@NotNull Shop shop) {
+        final DisplayItem display = shop.getDisplay();
+        if (display == null || !shop.isLoaded()) {
+            return;
+        }
+        if (visible.contains(shop)) {
+            if (!display.isSpawned()) {
+                Util.debugLog(displayLog("Respawning", shop, "cause it was despawned and a player close it"));
+                shop.checkDisplay();
+            }
+        } else if (display.isSpawned()) {
+            removeDisplayItemDelayed(shop);
+        }
+    }
+
+    /*
+     * The log is created when the logs are read, maybe off the main thread, so only capture the immutable values.
+     */
+    @NotNull
+    private static Supplier<String> displayLog(@NotNull String action, @NotNull Shop shop, @NotNull String reason) {
+        final Location location = shop.getLocation();
+        final String world = location.getWorld() == null ? "unknown" : location.getWorld().getName();
+        final int x = location.getBlockX();
+        final int y = location.getBlockY();
+        final int z = location.getBlockZ();
+        final UUID owner = shop.getOwner();
+        return () -> action + " the shop at " + world + " " + x + ", " + y + ", " + z + " (owner " + owner + ") the display, " + reason;
+    }
+
     public boolean removeDisplayItemDelayed(Shop shop) {
         if (shop.getDisplay() != null) {
             if (shop.getDisplay().isPendingRemoval()) {
                 // Actually remove the pending display
-                Util.debugLog("Removing the shop " + shop + " the display, cause nobody can see it");
-                Bukkit.getScheduler().runTask(plugin, () -> shop.getDisplay().remove());
+                Util.debugLog(displayLog("Removing", shop, "cause nobody can see it"));
+                shop.getDisplay().remove();
                 return true;
             } else {
                 // Delayed to next calling
-                Util.debugLog("Pending to remove the shop " + shop + " the display, cause nobody can see it");
+                Util.debugLog(displayLog("Pending to remove", shop, "cause nobody can see it"));
                 shop.getDisplay().pendingRemoval();
                 return false;
             }
@@ -79,4 +184,49 @@ public class DisplayAutoDespawnWatcher extends BukkitRunnable {
         return false;
     }
 
+    /**
+     * The positions of the players in the same chunk
+     */
+    private static class PlayerBucket {
+        private final String world;
+
+        private final int chunkX;
+
+        private final int chunkZ;
+
+        private double[] positions = new double[3];
+
+        private int size;
+
+        private PlayerBucket(@NotNull String world, int chunkX, int chunkZ) {
+            this.world = world;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        private void add(double x, double y, double z) {
+            if (size + 3 > positions.length) {
+                positions = Arrays.copyOf(positions, positions.length << 1);
+            }
+            positions[size++] = x;
+            positions[size++] = y;
+            positions[size++] = z;
+        }
+
+        private boolean anyWithin(@NotNull Location location, long rangeSquared) {
+            final double x = location.getX();
+            final double y = location.getY();
+            final double z = location.getZ();
+            for (int i = 0; i < size; i += 3) {
+                final double dx = positions[i] - x;
+                final double dy = positions[i + 1] - y;
+                final double dz = positions[i + 2] - z;
+                if (dx * dx + dy * dy + dz * dz < rangeSquared) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
 }
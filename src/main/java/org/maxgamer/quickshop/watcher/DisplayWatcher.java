@@ -17,18 +17,79 @@
  * along with this program. If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package org.maxgamer.quickshop.watcher;
 
-import lombok.Data;
+import lombok.Getter;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
 import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.shop.DisplayItem;
 import org.maxgamer.quickshop.shop.DisplayType;
 import org.maxgamer.quickshop.shop.Shop;
+import org.maxgamer.quickshop.shop.ShopIndex;
+
+import java.util.*;
 
-@Data
+/**
+ * Check the displays of loaded shops, spread across ticks within a time budget per tick.
+ * <p>
+ * The shops near players and the shops in recently loaded chunks are checked first,
+ * then the other loaded shops are checked round-robin once per display-items-check-ticks,
+ * skipping the shops which display was found healthy within that interval.
+ */
 public class DisplayWatcher {
-    private QuickShop plugin;
+    /* How often to queue the shops near players (ticks) */
+    private static final int NEARBY_SCAN_TICKS = 20;
+
+    /* Do not check a healthy display near players again within this time (ms) */
+    private static final long NEARBY_RECHECK_MILLIS = 5000;
+
+    private final QuickShop plugin;
+
+    /* The shops to check first */
+    private final Deque<Shop> priority = new ArrayDeque<>();
+
+    private final Set<Shop> queued = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /* The last time the display found healthy */
+    private final Map<Shop, Long> lastHealthy = new IdentityHashMap<>();
+
+    private Iterator<Shop> roundRobin = Collections.emptyIterator();
+
+    private long budgetNanos;
+
+    /* Whether the check task registered, nothing to queue if not */
+    private boolean running;
+
+    private int ticksUntilNextRound;
+
+    private int ticksUntilNearbyScan;
+
+    private int ticksInSecond;
+
+    private int checksInSecond;
+
+    /**
+     * How many displays checked in last second
+     */
+    @Getter
+    private volatile int checksPerSecond;
+
+    /**
+     * How many ticks exceeded the time budget
+     */
+    @Getter
+    private volatile long overruns;
+
+    @Getter
+    private volatile long totalChecks;
+
+    @Getter
+    private volatile long totalSkipped;
 
     public DisplayWatcher(QuickShop plugin) {
         this.plugin = plugin;
@@ -41,17 +102,121 @@ public class DisplayWatcher {
             return;
         }
         if (plugin.isDisplay() && plugin.getDisplayItemCheckTicks() > 0) {
+            this.budgetNanos = plugin.getConfig().getLong("shop.display-items-check-budget", 2000000);
+            this.running = true;
             new BukkitRunnable() {
                 @Override
                 public void run() {
-                    if (plugin.getConfig().getInt("shop.display-items-check-ticks") < 3000) {
-                        plugin.getLogger().severe("Shop.display-items-check-ticks is too low! It may cause HUGE lag! Pick a number > 3000");
+                    tick();
+                }
+            }.runTaskTimer(plugin, 1L, 1L);
+        }
+    }
+
+    /**
+     * Check the display of the shop as soon as possible, do nothing if the display check disabled
+     *
+     * @param shop The shop
+     */
+    public void scheduleCheck(@NotNull Shop shop) {
+        if (!running) {
+            return;
+        }
+        if (queued.add(shop)) {
+            priority.add(shop);
+        }
+    }
+
+    private void tick() {
+        if (--ticksUntilNextRound <= 0 && !roundRobin.hasNext()) {
+            ticksUntilNextRound = plugin.getDisplayItemCheckTicks();
+            startRound();
+        }
+        if (--ticksUntilNearbyScan <= 0) {
+            ticksUntilNearbyScan = NEARBY_SCAN_TICKS;
+            queueNearbyShops();
+        }
+        final long start = System.nanoTime();
+        final long deadline = start + budgetNanos;
+        long now = start;
+        while (now < deadline && !priority.isEmpty()) {
+            final Shop shop = priority.poll();
+            queued.remove(shop);
+            if (isRecentlyHealthy(shop, NEARBY_RECHECK_MILLIS)) {
+                totalSkipped++;
+            } else {
+                check(shop);
+            }
+            now = System.nanoTime();
+        }
+        final long interval = plugin.getDisplayItemCheckTicks() * 50L;
+        while (now < deadline && roundRobin.hasNext()) {
+            final Shop shop = roundRobin.next();
+            if (isRecentlyHealthy(shop, interval)) {
+                totalSkipped++;
+            } else {
+                check(shop);
+            }
+            now = System.nanoTime();
+        }
+        if (now - start > budgetNanos) {
+            overruns++;
+        }
+        if (++ticksInSecond >= 20) {
+            checksPerSecond = checksInSecond;
+            checksInSecond = 0;
+            ticksInSecond = 0;
+        }
+    }
+
+    private void startRound() {
+        final long expired = System.currentTimeMillis() - plugin.getDisplayItemCheckTicks() * 50L;
+        lastHealthy.values().removeIf(time -> time < expired);
+        roundRobin = new ArrayList<>(plugin.getShopManager().getLoadedShops()).iterator();
+    }
+
+    private void queueNearbyShops() {
+        final ShopIndex shopIndex = plugin.getShopManager().getShopIndex();
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            final Location loc = player.getLocation();
+            final String world = player.getWorld().getName();
+            final int chunkX = loc.getBlockX() >> 4;
+            final int chunkZ = loc.getBlockZ() >> 4;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    final ShopIndex.ChunkShops inChunk = shopIndex.getChunk(world, chunkX + dx, chunkZ + dz);
+                    if (inChunk == null || inChunk.isEmpty()) {
+                        continue;
                     }
-                    for (Shop shop : plugin.getShopManager().getLoadedShops()) {
-                        shop.checkDisplay();
+                    for (Shop shop : inChunk.values()) {
+                        if (shop.isLoaded()) {
+                            scheduleCheck(shop);
+                        }
                     }
                 }
-            }.runTaskTimer(plugin, 1L, plugin.getDisplayItemCheckTicks());
+            }
+        }
+    }
+
+    private boolean isRecentlyHealthy(@NotNull Shop shop, long millis) {
+        final Long time = lastHealthy.get(shop);
+        return time != null && System.currentTimeMillis() - time < millis;
+    }
+
+    private void check(@NotNull Shop shop) {
+        if (!shop.isLoaded()) {
+            lastHealthy.remove(shop);
+            return;
+        }
+        shop.checkDisplay();
+        checksInSecond++;
+        totalChecks++;
+        final DisplayItem displayItem = shop.getDisplay();
+        final Entity entity = displayItem == null ? null : displayItem.getDisplay();
+        if (entity != null && displayItem.isSpawned() && entity.isValid()) {
+            lastHealthy.put(shop, System.currentTimeMillis());
+        } else {
+            lastHealthy.remove(shop);
         }
     }
 
@@ -20,81 +20,295 @@
 package org.maxgamer.quickshop.watcher;
 
 import lombok.NonNull;
-import lombok.SneakyThrows;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.maxgamer.quickshop.QuickShop;
+import org.maxgamer.quickshop.shop.Shop;
 import org.maxgamer.quickshop.util.Util;
+import org.maxgamer.quickshop.util.matcher.item.ItemMatchKey;
 
 import java.io.*;
-import java.sql.Timestamp;
-import java.util.Calendar;
-import java.util.Date;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Queue;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Write the logs to the log file.
+ * <p>
+ * Producers on any thread only add a record with fixed fields into a lock-free queue,
+ * the records are formatted and written by this task, so the producers never touch the file or format the time.
+ * The log file rotated when it reached the size limit, the rolled files can be gzipped.
+ */
 public class LogWatcher extends BukkitRunnable {
-    private final Queue<String> logs = new ConcurrentLinkedQueue<>();
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private static final DateTimeFormatter ROLL_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd-HHmmss");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Queue<LogRecord> logs = new ConcurrentLinkedQueue<>();
+
+    private final QuickShop plugin;
+
+    private final File log;
+
+    /* Rotate the log file when it reached this size (bytes), 0 means never */
+    private final long rotateSize;
+
+    private final boolean compressRolled;
 
-    private FileWriter logFileWriter = null;
+    private final StringBuilder line = new StringBuilder(256);
 
-    private PrintWriter pw;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    @Nullable
+    private Writer writer;
+
+    private long fileSize;
 
     public LogWatcher(QuickShop plugin, File log) {
+        this.plugin = plugin;
+        this.log = log;
+        this.rotateSize = Math.max(0, plugin.getConfig().getLong("log-actions-rotate-size", 16)) * 1024 * 1024;
+        this.compressRolled = plugin.getConfig().getBoolean("log-actions-compress", true);
         try {
-            if (!log.exists()) {
-                log.createNewFile();
-            }
-            logFileWriter = new FileWriter(log, true);
-            pw = new PrintWriter(logFileWriter);
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-            plugin.getLogger().severe("Log file was not found!");
+            open();
         } catch (IOException e) {
             e.printStackTrace();
             plugin.getLogger().severe("Could not create the log file!");
         }
     }
 
-    @SneakyThrows
-    public void close() {
-        if (logFileWriter != null) {
-            logFileWriter.flush();
-            logFileWriter.close();
+    private void open() throws IOException {
+        if (!log.exists()) {
+            log.createNewFile();
+        }
+        this.fileSize = log.length();
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(log, true), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Write all the remaining logs and close the file
+     */
+    public synchronized void close() {
+        run();
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to close the log file", e);
+            }
+            writer = null;
         }
     }
 
     public void log(@NonNull String log) {
-        Date date = Calendar.getInstance().getTime();
-        Timestamp time = new Timestamp(date.getTime());
-        this.add("[" + time + "] " + log);
+        logs.add(new LogRecord(System.currentTimeMillis(), log));
     }
 
+    /**
+     * Add the line to log file as it is, without the time
+     *
+     * @param s The line
+     */
     public void add(@NotNull String s) {
-        logs.add(s);
+        logs.add(new LogRecord(0, s));
+    }
+
+    /**
+     * Log a success trade
+     *
+     * @param shop   The shop
+     * @param player The player trading with the shop
+     * @param amount The items amount
+     * @param total  The money in this trade
+     * @param tax    The tax in this trade
+     */
+    public void logTransaction(@NotNull Shop shop, @NotNull Player player, int amount, double total, double tax) {
+        final Location location = shop.getLocation();
+        final World world = location.getWorld();
+        final ItemMatchKey item = shop.getMatchKey();
+        logs.add(new LogRecord(
+                System.currentTimeMillis(),
+                shop.getShopType().name(),
+                player.getName(),
+                player.getUniqueId(),
+                world == null ? "null" : world.getName(),
+                location.getBlockX(),
+                location.getBlockY(),
+                location.getBlockZ(),
+                31 * item.getType().name().hashCode() + item.getMetaHash(),
+                amount,
+                total,
+                tax));
+    }
+
+    /**
+     * Gets the logs waiting for writing
+     *
+     * @return The pending logs count
+     */
+    public int getPendingCount() {
+        return logs.size();
     }
 
     @Override
-    public void run() {
-        for (String log : logs) {
-            if (logFileWriter == null) {
-                continue;
+    public synchronized void run() {
+        if (writer == null) {
+            return;
+        }
+        // Poll one by one, the records added while writing are kept for this or next run, never dropped.
+        LogRecord record;
+        boolean written = false;
+        try {
+            while (writer != null && (record = logs.poll()) != null) {
+                line.setLength(0);
+                record.appendTo(line, zone);
+                line.append(System.lineSeparator());
+                writer.append(line);
+                fileSize += utf8Length(line);
+                written = true;
+                if (rotateSize > 0 && fileSize >= rotateSize) {
+                    rotate();
+                }
             }
-            if (pw == null) {
-                continue;
+            if (written && writer != null) {
+                writer.flush();
             }
-            pw.println(log);
+        } catch (IOException ioe) {
+            Util.debugLog("Failed to flush log to disk: " + ioe.getMessage());
         }
-        logs.clear();
-        if (logFileWriter != null) {
-            try {
-                if (pw != null) {
-                    pw.flush();
-                }
-                logFileWriter.flush();
-            } catch (IOException ioe) {
-                Util.debugLog("Failed to flush log to disk: " + ioe.getMessage());
+    }
+
+    /*
+     * The bytes the chars take in UTF-8, counted without encoding them again.
+     */
+    static long utf8Length(@NotNull CharSequence chars) {
+        long length = 0;
+        for (int i = 0, size = chars.length(); i < size; i++) {
+            final char c = chars.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void rotate() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        final String name = "qs-" + LocalDateTime.now(zone).format(ROLL_FORMAT);
+        File rolled = new File(log.getParentFile(), name + ".log");
+        for (int i = 1; rolled.exists() || new File(rolled.getPath() + ".gz").exists(); i++) {
+            rolled = new File(log.getParentFile(), name + "-" + i + ".log");
+        }
+        if (!log.renameTo(rolled)) {
+            plugin.getLogger().warning("Failed to rotate the log file, keep writing to " + log.getName());
+        } else if (compressRolled) {
+            final File compressed = new File(rolled.getPath() + ".gz");
+            try (OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed), BUFFER_SIZE)) {
+                Files.copy(rolled.toPath(), out);
+            }
+            if (!rolled.delete()) {
+                plugin.getLogger().warning("Failed to delete the log file " + rolled.getName() + " after compressed");
+            }
+        }
+        open();
+    }
+
+    /**
+     * The log record, a text line or a trade with fixed fields.
+     */
+    private static final class LogRecord {
+        private final long time;
+
+        @Nullable
+        private final String message;
+
+        private final String type;
+
+        private final String player;
+
+        private final UUID playerId;
+
+        private final String world;
+
+        private final int x;
+
+        private final int y;
+
+        private final int z;
+
+        private final int itemHash;
+
+        private final int amount;
+
+        private final double total;
+
+        private final double tax;
+
+        private LogRecord(long time, @NotNull String message) {
+            this(time, message, null, null, null, null, 0, 0, 0, 0, 0, 0, 0);
+        }
+
+        private LogRecord(long time, String type, String player, UUID playerId, String world, int x, int y, int z, int itemHash, int amount, double total, double tax) {
+            this(time, null, type, player, playerId, world, x, y, z, itemHash, amount, total, tax);
+        }
+
+        private LogRecord(long time, @Nullable String message, String type, String player, UUID playerId, String world, int x, int y, int z, int itemHash, int amount, double total, double tax) {
+            this.time = time;
+            this.message = message;
+            this.type = type;
+            this.player = player;
+            this.playerId = playerId;
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.itemHash = itemHash;
+            this.amount = amount;
+            this.total = total;
+            this.tax = tax;
+        }
+
+        private void appendTo(@NotNull StringBuilder builder, @NotNull ZoneId zone) {
+            if (time != 0) {
+                builder.append('[');
+                TIME_FORMAT.formatTo(Instant.ofEpochMilli(time).atZone(zone), builder);
+                builder.append("] ");
+            }
+            if (message != null) {
+                builder.append(message);
+                return;
             }
+            builder.append("TRADE ").append(type)
+                    .append(" player=").append(player).append('(').append(playerId).append(')')
+                    .append(" shop=").append(world).append(',').append(x).append(',').append(y).append(',').append(z)
+                    .append(" item=").append(Integer.toHexString(itemHash))
+                    .append(" amount=").append(amount)
+                    .append(" total=").append(total)
+                    .append(" tax=").append(tax);
         }
     }
 
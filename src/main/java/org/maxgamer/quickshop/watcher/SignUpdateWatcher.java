@@ -21,27 +21,57 @@ package org.maxgamer.quickshop.watcher;
 
 import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
+import org.maxgamer.quickshop.QuickShop;
 import org.maxgamer.quickshop.shop.Shop;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.*;
 
+/**
+ * Update the signs of the scheduled shops, a shop scheduled many times before the next run only updates once.
+ * The run stops when the time budget used up, the remaining shops will be updated in the next run.
+ */
 public class SignUpdateWatcher extends BukkitRunnable {
-    private final Queue<Shop> signUpdateQueue = new LinkedList<>();
+    private final Deque<Shop> signUpdateQueue = new ArrayDeque<>();
+
+    /* Shop equality depends on mutable fields, so dedupe by identity */
+    private final Set<Shop> scheduled = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final long budgetNanos;
+
+    public SignUpdateWatcher(@NotNull QuickShop plugin) {
+        this.budgetNanos = plugin.getConfig().getLong("shop.sign-update-budget", 2) * 1000000L;
+    }
 
     public void scheduleSignUpdate(@NotNull Shop shop) {
-        if (signUpdateQueue.contains(shop)) {
-            return; // Ignore
+        if (scheduled.add(shop)) {
+            signUpdateQueue.add(shop);
         }
-        signUpdateQueue.add(shop);
+    }
+
+    /**
+     * Gets how many shops waiting for sign update
+     *
+     * @return The pending shops count
+     */
+    public int getPendingCount() {
+        return signUpdateQueue.size();
     }
 
     @Override
     public void run() {
-        Shop shop = signUpdateQueue.poll();
-        while (shop != null) {
-            shop.setSignText();
-            shop = signUpdateQueue.poll();
+        if (signUpdateQueue.isEmpty()) {
+            return;
+        }
+        final long deadline = System.nanoTime() + budgetNanos;
+        Shop shop;
+        while ((shop = signUpdateQueue.poll()) != null) {
+            scheduled.remove(shop);
+            if (!shop.isDeleted()) {
+                shop.setSignText();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                break;
+            }
         }
     }
 
@@ -0,0 +1,219 @@
+/*
+ * This file is a part of project QuickShop, the name is TradeNotificationWatcher.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.watcher;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.maxgamer.quickshop.QuickShop;
+import org.maxgamer.quickshop.shop.Shop;
+import org.maxgamer.quickshop.util.MsgUtil;
+import org.maxgamer.quickshop.util.Util;
+import org.maxgamer.quickshop.util.matcher.item.ItemMatchKey;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Aggregate the trade notifications of the shop owners.
+ * <p>
+ * The trades of the same owner, shop, item and direction within a window are sent as one summary,
+ * so a busy shop sends one chat message, or saves one offline message, per window instead of per trade.
+ * A window is flushed when it expired, or when the owner joined.
+ */
+public class TradeNotificationWatcher extends BukkitRunnable {
+    private static final int MAX_TRADER_NAMES = 3;
+
+    private final long windowMillis;
+
+    /* Shop equality depends on mutable fields, so group by identity */
+    private final Map<Shop, List<Pending>> pending = new IdentityHashMap<>();
+
+    public TradeNotificationWatcher(@NotNull QuickShop plugin) {
+        this.windowMillis = Math.max(0, plugin.getConfig().getLong("shop.trade-notification-window", 5)) * 1000L;
+    }
+
+    /**
+     * Notify the shop owner a trade
+     *
+     * @param shop    The shop
+     * @param trader  The name of the player traded with the shop
+     * @param sold    True if the player sold to the shop, false if the player bought from the shop
+     * @param items   The items traded
+     * @param total   The money of the trade
+     * @param message The message of this trade, sent as is if no other trades in the window
+     * @param notice  The notice about the shop state after this trade (out of stock or space), or null
+     */
+    public void notifyTrade(@NotNull Shop shop, @NotNull String trader, boolean sold, int items, double total, @NotNull String message, @Nullable String notice) {
+        if (windowMillis <= 0) {
+            MsgUtil.send(shop.getOwner(), notice == null ? message : message + "\n" + notice, shop.isUnlimited());
+            return;
+        }
+        final List<Pending> inShop = pending.computeIfAbsent(shop, k -> new ArrayList<>(1));
+        for (Pending trade : inShop) {
+            if (trade.sold == sold && trade.owner.equals(shop.getOwner()) && trade.matchKey == shop.getMatchKey()) {
+                trade.add(trader, items, total, message, notice);
+                return;
+            }
+        }
+        final Pending trade = new Pending(shop, sold);
+        trade.add(trader, items, total, message, notice);
+        inShop.add(trade);
+    }
+
+    /**
+     * Send the pending notifications of the owner now, e.g the owner joined
+     *
+     * @param owner The owner
+     */
+    public void flush(@NotNull UUID owner) {
+        flush(trade -> trade.owner.equals(owner));
+    }
+
+    /**
+     * Send all pending notifications now
+     */
+    public void flushAll() {
+        flush(trade -> true);
+    }
+
+    /**
+     * Gets how many notifications waiting to send
+     *
+     * @return The pending notifications count
+     */
+    public int getPendingCount() {
+        int count = 0;
+        for (List<Pending> inShop : pending.values()) {
+            count += inShop.size();
+        }
+        return count;
+    }
+
+    @Override
+    public void run() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        final long expiredBefore = System.currentTimeMillis() - windowMillis;
+        flush(trade -> trade.startedAt <= expiredBefore);
+    }
+
+    private void flush(@NotNull Predicate<Pending> filter) {
+        final Iterator<List<Pending>> shops = pending.values().iterator();
+        while (shops.hasNext()) {
+            final List<Pending> inShop = shops.next();
+            final Iterator<Pending> trades = inShop.iterator();
+            while (trades.hasNext()) {
+                final Pending trade = trades.next();
+                if (filter.test(trade)) {
+                    trades.remove();
+                    trade.send();
+                }
+            }
+            if (inShop.isEmpty()) {
+                shops.remove();
+            }
+        }
+    }
+
+    private static class Pending {
+        private final UUID owner;
+
+        private final ItemMatchKey matchKey;
+
+        private final String item;
+
+        private final boolean sold;
+
+        private final boolean unlimited;
+
+        private final long startedAt = System.currentTimeMillis();
+
+        private final Set<String> traders = new LinkedHashSet<>();
+
+        private int trades;
+
+        private int items;
+
+        private double total;
+
+        private String message;
+
+        @Nullable
+        private String notice;
+
+        private Pending(@NotNull Shop shop, boolean sold) {
+            this.owner = shop.getOwner();
+            this.matchKey = shop.getMatchKey();
+            this.item = Util.serialize(shop.getItem());
+            this.sold = sold;
+            this.unlimited = shop.isUnlimited();
+        }
+
+        private void add(@NotNull String trader, int items, double total, @NotNull String message, @Nullable String notice) {
+            this.traders.add(trader);
+            this.trades++;
+            this.items += items;
+            this.total += total;
+            this.message = message;
+            // Only the latest shop state matters
+            this.notice = notice;
+        }
+
+        private void send() {
+            String summary;
+            if (trades == 1) {
+                summary = message;
+            } else {
+                final OfflinePlayer player = Bukkit.getOfflinePlayer(owner);
+                summary = MsgUtil.getMessageOfflinePlayer(
+                        sold ? "player-sold-to-your-store-summary" : "player-bought-from-your-store-summary",
+                        player,
+                        traderNames(),
+                        Integer.toString(items),
+                        "##########" + item + "##########",
+                        Integer.toString(trades),
+                        Util.format(total));
+            }
+            if (notice != null) {
+                summary += "\n" + notice;
+            }
+            MsgUtil.send(owner, summary, unlimited);
+        }
+
+        @NotNull
+        private String traderNames() {
+            final StringJoiner names = new StringJoiner(", ");
+            int count = 0;
+            for (String trader : traders) {
+                if (count++ == MAX_TRADER_NAMES) {
+                    names.add("...");
+                    break;
+                }
+                names.add(trader);
+            }
+            return names.toString();
+        }
+    }
+
+}
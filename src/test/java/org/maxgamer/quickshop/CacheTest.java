@@ -0,0 +1,159 @@
+/*
+ * This file is a part of project QuickShop, the name is CacheTest.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop;
+
+import org.bukkit.Location;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.maxgamer.quickshop.shop.Shop;
+import org.maxgamer.quickshop.shop.ShopIndex;
+import org.maxgamer.quickshop.shop.ShopMocks;
+
+public class CacheTest {
+    /* The shops can be found by the lookup */
+    private final ShopIndex shops = new ShopIndex();
+
+    private int lookups;
+
+    @Nullable
+    private Runnable duringLookup;
+
+    @BeforeEach
+    public void setUp() {
+        shops.clear();
+        lookups = 0;
+        duringLookup = null;
+    }
+
+    @NotNull
+    private Cache createCache(int maximumSize) {
+        return new Cache(maximumSize, (location, includeAttached) -> {
+            lookups++;
+            if (duringLookup != null) {
+                duringLookup.run();
+            }
+            return shops.get(location);
+        });
+    }
+
+    @NotNull
+    private static Location at(int x, int y, int z) {
+        return ShopMocks.location("world", x, y, z);
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        final Cache cache = createCache(100);
+        final Shop shop = ShopMocks.shop("world", 1, 64, 1);
+        shops.put("world", shop);
+        Assertions.assertSame(shop, cache.getCaching(at(1, 64, 1), false));
+        Assertions.assertSame(shop, cache.getCaching(at(1, 64, 1), false));
+        Assertions.assertEquals(1, lookups);
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+        // The absent of shop is cached too
+        Assertions.assertNull(cache.getCaching(at(2, 64, 1), false));
+        Assertions.assertNull(cache.getCaching(at(2, 64, 1), false));
+        Assertions.assertEquals(2, lookups);
+        // Include attached or not are different entries
+        Assertions.assertSame(shop, cache.getCaching(at(1, 64, 1), true));
+        Assertions.assertEquals(3, lookups);
+        Assertions.assertEquals(3, cache.getCachingSize());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        final Cache cache = createCache(16);
+        for (int x = 0; x < 16; x++) {
+            cache.getCaching(at(x, 64, 0), false);
+        }
+        Assertions.assertEquals(16, cache.getCachingSize());
+        // Use the oldest one, then the second oldest one becomes the least recently used
+        cache.getCaching(at(0, 64, 0), false);
+        cache.getCaching(at(16, 64, 0), false);
+        Assertions.assertEquals(16, cache.getCachingSize());
+        Assertions.assertEquals(1, cache.getEvictions());
+        lookups = 0;
+        cache.getCaching(at(0, 64, 0), false);
+        Assertions.assertEquals(0, lookups);
+        cache.getCaching(at(1, 64, 0), false);
+        Assertions.assertEquals(1, lookups);
+    }
+
+    @Test
+    public void testInvalidateAround() {
+        final Cache cache = createCache(100);
+        cache.getCaching(at(5, 64, 5), true);
+        cache.getCaching(at(6, 64, 5), false);
+        cache.getCaching(at(6, 64, 6), false);
+        cache.getCaching(at(5, 65, 5), false);
+        // The shop created there, the entries of the block and the blocks may attached to it are dropped
+        final Shop shop = ShopMocks.shop("world", 5, 64, 5);
+        shops.put("world", shop);
+        cache.invalidateAround("world", 5, 64, 5);
+        Assertions.assertEquals(2, cache.getCachingSize());
+        lookups = 0;
+        Assertions.assertSame(shop, cache.getCaching(at(5, 64, 5), true));
+        cache.getCaching(at(6, 64, 5), false);
+        Assertions.assertEquals(2, lookups);
+        // Diagonal and other heights are kept
+        cache.getCaching(at(6, 64, 6), false);
+        cache.getCaching(at(5, 65, 5), false);
+        Assertions.assertEquals(2, lookups);
+    }
+
+    @Test
+    public void testInvalidateChunkAndAll() {
+        final Cache cache = createCache(100);
+        cache.getCaching(at(0, 64, 0), false);
+        cache.getCaching(at(15, 64, 15), false);
+        cache.getCaching(at(16, 64, 0), false);
+        cache.invalidateChunk("world", 0, 0);
+        Assertions.assertEquals(1, cache.getCachingSize());
+        lookups = 0;
+        cache.getCaching(at(16, 64, 0), false);
+        Assertions.assertEquals(0, lookups);
+        cache.getCaching(at(15, 64, 15), false);
+        Assertions.assertEquals(1, lookups);
+        cache.invalidateAll();
+        Assertions.assertEquals(0, cache.getCachingSize());
+        cache.getCaching(at(16, 64, 0), false);
+        Assertions.assertEquals(2, lookups);
+    }
+
+    @Test
+    public void testLookupRacedInvalidationNotCached() {
+        final Cache cache = createCache(100);
+        final Shop shop = ShopMocks.shop("world", 3, 64, 3);
+        // The shop created while looking up, after the lookup read the index
+        duringLookup = () -> {
+            duringLookup = null;
+            cache.invalidateAround("world", 3, 64, 3);
+        };
+        Assertions.assertNull(cache.getCaching(at(3, 64, 3), false));
+        shops.put("world", shop);
+        Assertions.assertEquals(0, cache.getCachingSize());
+        Assertions.assertSame(shop, cache.getCaching(at(3, 64, 3), false));
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is a part of project QuickShop, the name is ConfigSnapshotBenchmarkTest.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop;
+
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the config lookups by path against the ConfigSnapshot fields on the hot paths.
+ */
+public class ConfigSnapshotBenchmarkTest {
+
+    private static final int WARMUP_ROUNDS = 100_000;
+
+    private static final int ROUNDS = 1_000_000;
+
+    @Test
+    public void benchmarkHotPathReads() throws InvalidConfigurationException {
+        final YamlConfiguration config = new YamlConfiguration();
+        config.loadFromString(String.join("\n",
+                "tax: 0.05",
+                "shop:",
+                "  display-type: 1",
+                "  interact:",
+                "    sneak-to-trade: true",
+                "protect:",
+                "  hopper: true"));
+        final ConfigSnapshot snapshot = new ConfigSnapshot(config);
+        Assertions.assertEquals(readConfig(config), readSnapshot(snapshot));
+
+        int sink = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += readConfig(config) + readSnapshot(snapshot);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += readConfig(config);
+        }
+        final long lookup = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += readSnapshot(snapshot);
+        }
+        final long fields = System.nanoTime() - start;
+        System.out.printf("Read 4 settings %d times: config lookups %.2f ms, ConfigSnapshot %.2f ms (%d)%n",
+                ROUNDS, lookup / 1_000_000.0, fields / 1_000_000.0, sink);
+    }
+
+    private static int readConfig(YamlConfiguration config) {
+        int result = config.getBoolean("shop.interact.sneak-to-trade") ? 1 : 0;
+        result += config.getBoolean("protect.hopper") ? 2 : 0;
+        result += config.getInt("shop.display-type") * 4;
+        result += config.getDouble("tax") > 0 ? 8 : 0;
+        return result;
+    }
+
+    private static int readSnapshot(ConfigSnapshot snapshot) {
+        int result = snapshot.isSneakToTrade() ? 1 : 0;
+        result += snapshot.isProtectHopper() ? 2 : 0;
+        result += snapshot.getDisplayType().toID() * 4;
+        result += snapshot.getTax() > 0 ? 8 : 0;
+        return result;
+    }
+
+}
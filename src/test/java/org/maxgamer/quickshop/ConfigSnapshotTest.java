@@ -0,0 +1,77 @@
+/*
+ * This file is a part of project QuickShop, the name is ConfigSnapshotTest.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop;
+
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.maxgamer.quickshop.shop.DisplayType;
+
+public class ConfigSnapshotTest {
+
+    @Test
+    public void testReadSettings() throws InvalidConfigurationException {
+        final YamlConfiguration config = new YamlConfiguration();
+        config.loadFromString(String.join("\n",
+                "tax: 0.05",
+                "show-tax: true",
+                "shop:",
+                "  display-type: 1",
+                "  interact:",
+                "    sneak-to-trade: true",
+                "  word-for-trade-all-items: everything",
+                "protect:",
+                "  hopper: true",
+                "lockette:",
+                "  private: '[Private]'"));
+        final ConfigSnapshot snapshot = new ConfigSnapshot(config);
+        Assertions.assertEquals(DisplayType.ARMORSTAND, snapshot.getDisplayType());
+        Assertions.assertEquals(0.05, snapshot.getTax());
+        Assertions.assertTrue(snapshot.isShowTax());
+        Assertions.assertTrue(snapshot.isSneakToTrade());
+        Assertions.assertFalse(snapshot.isSneakToCreate());
+        Assertions.assertEquals("everything", snapshot.getWordForTradeAllItems());
+        Assertions.assertTrue(snapshot.isProtectHopper());
+        Assertions.assertEquals("[Private]", snapshot.getLockettePrivate());
+        Assertions.assertNull(snapshot.getLocketteMoreUsers());
+    }
+
+    @Test
+    public void testDefaults() {
+        final ConfigSnapshot snapshot = new ConfigSnapshot(new YamlConfiguration());
+        // display-type 0 when missing
+        Assertions.assertEquals(DisplayType.REALITEM, snapshot.getDisplayType());
+        Assertions.assertEquals("all", snapshot.getWordForTradeAllItems());
+        Assertions.assertTrue(snapshot.isUpdateSignWhenInventoryMoving());
+        Assertions.assertFalse(snapshot.isPlaceHolderAPI());
+    }
+
+    @Test
+    public void testSnapshotNotFollowConfig() {
+        final YamlConfiguration config = new YamlConfiguration();
+        config.set("protect.explode", true);
+        final ConfigSnapshot snapshot = new ConfigSnapshot(config);
+        config.set("protect.explode", false);
+        Assertions.assertTrue(snapshot.isProtectExplode());
+        Assertions.assertFalse(new ConfigSnapshot(config).isProtectExplode());
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is a part of project QuickShop, the name is ShopIndexTest.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+public class ShopIndexTest {
+
+    @Test
+    public void testPutGetRemove() {
+        final ShopIndex index = new ShopIndex();
+        final Shop shop = ShopMocks.shop("world", 10, 64, -20);
+        Assertions.assertNull(index.put("world", shop));
+        Assertions.assertEquals(1, index.size());
+        Assertions.assertSame(shop, index.get("world", 10, 64, -20));
+        Assertions.assertSame(shop, index.get(ShopMocks.location("world", 10, 64, -20)));
+        Assertions.assertNull(index.get("world", 10, 65, -20));
+        Assertions.assertNull(index.get("world_nether", 10, 64, -20));
+        Assertions.assertNull(index.get(ShopMocks.location("world_nether", 10, 64, -20)));
+
+        final Shop replacement = ShopMocks.shop("world", 10, 64, -20);
+        Assertions.assertSame(shop, index.put("world", replacement));
+        Assertions.assertEquals(1, index.size());
+        Assertions.assertSame(replacement, index.get("world", 10, 64, -20));
+
+        Assertions.assertSame(replacement, index.remove("world", 10, 64, -20));
+        Assertions.assertNull(index.remove("world", 10, 64, -20));
+        Assertions.assertNull(index.get("world", 10, 64, -20));
+        Assertions.assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testBlockKeysInChunk() {
+        // Every block of a chunk column section must have its own key, including the negative coordinates and heights
+        final ShopIndex index = new ShopIndex();
+        for (int x = -16; x < 0; x++) {
+            for (int z = -16; z < 0; z++) {
+                for (int y : new int[]{-64, 0, 255, 319}) {
+                    index.put("world", ShopMocks.shop("world", x, y, z));
+                }
+            }
+        }
+        Assertions.assertEquals(16 * 16 * 4, index.size());
+        Assertions.assertEquals(16 * 16 * 4, index.getChunk("world", -1, -1).size());
+        Assertions.assertNull(index.getChunk("world", 0, 0));
+        for (int x = -16; x < 0; x++) {
+            for (int z = -16; z < 0; z++) {
+                final Shop shop = index.get("world", x, 255, z);
+                Assertions.assertNotNull(shop);
+                Assertions.assertEquals(x, shop.getLocation().getBlockX());
+                Assertions.assertEquals(z, shop.getLocation().getBlockZ());
+            }
+        }
+    }
+
+    @Test
+    public void testChunkShops() {
+        final ShopIndex index = new ShopIndex();
+        final Shop a = ShopMocks.shop("world", 0, 64, 0);
+        final Shop b = ShopMocks.shop("world", 15, 70, 15);
+        final Shop other = ShopMocks.shop("world", 16, 64, 0);
+        index.put("world", a);
+        index.put("world", b);
+        index.put("world", other);
+        final ShopIndex.ChunkShops inChunk = index.getChunk("world", 0, 0);
+        Assertions.assertNotNull(inChunk);
+        Assertions.assertEquals("world", inChunk.getWorld());
+        Assertions.assertEquals(2, inChunk.size());
+        Assertions.assertEquals(new HashSet<>(Arrays.asList(a, b)), new HashSet<>(inChunk.values()));
+        Assertions.assertSame(b, inChunk.get(ShopMocks.location("world", 15, 70, 15)));
+        Assertions.assertNull(inChunk.get(ShopMocks.location("world_nether", 15, 70, 15)));
+        Assertions.assertNull(inChunk.getShop(16, 64, 0));
+
+        // The values are a snapshot
+        index.remove("world", 0, 64, 0);
+        Assertions.assertEquals(1, inChunk.size());
+        Assertions.assertNotNull(index.getChunks("world"));
+        Assertions.assertNull(index.getChunks("world_nether"));
+    }
+
+    @Test
+    public void testHasShopsAround() {
+        final ShopIndex index = new ShopIndex();
+        index.put("world", ShopMocks.shop("world", 16, 64, 16));
+        Assertions.assertTrue(index.hasShopsAround("world", 16, 16));
+        // The neighbour block is in another chunk
+        Assertions.assertTrue(index.hasShopsAround("world", 15, 16));
+        Assertions.assertTrue(index.hasShopsAround("world", 16, 15));
+        Assertions.assertFalse(index.hasShopsAround("world", 14, 16));
+        Assertions.assertFalse(index.hasShopsAround("world", 100, 100));
+        Assertions.assertFalse(index.hasShopsAround("world_nether", 16, 16));
+    }
+
+    @Test
+    public void testShopsInChunks() {
+        final ShopIndex index = new ShopIndex();
+        final Shop near = ShopMocks.shop("world", 0, 64, 0);
+        final Shop corner = ShopMocks.shop("world", -17, 64, 33);
+        final Shop far = ShopMocks.shop("world", 1000, 64, 1000);
+        index.put("world", near);
+        index.put("world", corner);
+        index.put("world", far);
+        // Walk the chunks in range, the range is smaller than the chunks have shops
+        Assertions.assertEquals(Collections.singletonList(near), index.getShopsInChunks("world", 0, 0, 0, 0));
+        Assertions.assertTrue(index.getShopsInChunks("world", 1, 1, 1, 1).isEmpty());
+        // Walk the chunks have shops instead
+        Assertions.assertEquals(new HashSet<>(Arrays.asList(near, corner)), new HashSet<>(index.getShopsInChunks("world", -2, -2, 2, 2)));
+        final List<Shop> all = index.getShopsInChunks("world", -1000, -1000, 1000, 1000);
+        Assertions.assertEquals(new HashSet<>(Arrays.asList(near, corner, far)), new HashSet<>(all));
+        Assertions.assertTrue(index.getShopsInChunks("world_nether", -2, -2, 2, 2).isEmpty());
+    }
+
+    @Test
+    public void testClear() {
+        final ShopIndex index = new ShopIndex();
+        index.put("world", ShopMocks.shop("world", 0, 64, 0));
+        index.put("world_nether", ShopMocks.shop("world_nether", 0, 64, 0));
+        Assertions.assertEquals(new HashSet<>(Arrays.asList("world", "world_nether")), index.getWorlds());
+        index.clear();
+        Assertions.assertEquals(0, index.size());
+        Assertions.assertNull(index.get("world", 0, 64, 0));
+        Assertions.assertTrue(index.getChunks().isEmpty());
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is a part of project QuickShop, the name is ShopMocks.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The stand-in worlds and shops for the tests of the pure structures, no server required.
+ * The shop only answers getLocation, and compares by identity like the real shops in the indexes.
+ */
+public final class ShopMocks {
+    private static final Map<String, World> worlds = new HashMap<>();
+
+    private ShopMocks() {
+    }
+
+    @NotNull
+    public static synchronized World world(@NotNull String name) {
+        return worlds.computeIfAbsent(name, k -> (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class[]{World.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return name;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "World{" + name + "}";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }));
+    }
+
+    @NotNull
+    public static Location location(@NotNull String world, int x, int y, int z) {
+        return new Location(world(world), x, y, z);
+    }
+
+    @NotNull
+    public static Shop shop(@NotNull String world, int x, int y, int z) {
+        final Location location = location(world, x, y, z);
+        return (Shop) Proxy.newProxyInstance(Shop.class.getClassLoader(), new Class[]{Shop.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getLocation":
+                    return location;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Shop{" + world + ", " + x + ", " + y + ", " + z + "}";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * This file is a part of project QuickShop, the name is ShopNameIndexTest.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.shop;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class ShopNameIndexTest {
+    private final Shop diamondSword = ShopMocks.shop("world", 0, 64, 0);
+
+    private final Shop ironSword = ShopMocks.shop("world", 1, 64, 0);
+
+    private final Shop minecart = ShopMocks.shop("world", 2, 64, 0);
+
+    /* The names are resolved by the caller on the main thread, so feed the normalized names directly */
+    private ShopNameIndex createBuilt() {
+        final ShopNameIndex index = new ShopNameIndex();
+        final long generation = index.beginBuild();
+        Assertions.assertTrue(generation >= 0);
+        index.addBuilt(generation, diamondSword, ShopNameIndex.normalize("§bDiamond Sword"));
+        index.addBuilt(generation, ironSword, ShopNameIndex.normalize("Iron Sword"));
+        index.addBuilt(generation, minecart, ShopNameIndex.normalize("Minecart with TNT-Block"));
+        index.finishBuild(generation);
+        Assertions.assertTrue(index.isBuilt());
+        return index;
+    }
+
+    private static Set<Shop> setOf(Shop... shops) {
+        final Set<Shop> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(Arrays.asList(shops));
+        return set;
+    }
+
+    @Test
+    public void testTokenize() {
+        Assertions.assertArrayEquals(new String[]{"diamond", "sword"}, ShopNameIndex.tokenize("§bDiamond  Sword!"));
+        Assertions.assertArrayEquals(new String[]{"钻石剑"}, ShopNameIndex.tokenize("钻石剑"));
+        Assertions.assertArrayEquals(new String[0], ShopNameIndex.tokenize(" - "));
+    }
+
+    @Test
+    public void testSearch() {
+        final ShopNameIndex index = createBuilt();
+        Assertions.assertEquals(setOf(diamondSword, ironSword), index.search("sword", 0));
+        Assertions.assertEquals(setOf(diamondSword), index.search("§aDIAMOND", 0));
+        // A part of the name token
+        Assertions.assertEquals(setOf(diamondSword), index.search("mond sw", 0));
+        // All tokens matched, but not the whole keyword
+        Assertions.assertEquals(setOf(), index.search("sword diamond", 0));
+        Assertions.assertEquals(setOf(minecart), index.search("tnt-b", 0));
+        // Only symbols, no token to lookup with
+        Assertions.assertEquals(setOf(minecart), index.search("-", 0));
+        Assertions.assertEquals(setOf(), index.search("bow", 0));
+    }
+
+    @Test
+    public void testRemove() {
+        final ShopNameIndex index = createBuilt();
+        index.remove(ironSword);
+        Assertions.assertEquals(setOf(diamondSword), index.search("sword", 0));
+        index.remove(diamondSword);
+        Assertions.assertEquals(setOf(), index.search("sword", 0));
+    }
+
+    @Test
+    public void testNotBuilt() {
+        final ShopNameIndex index = new ShopNameIndex();
+        Assertions.assertFalse(index.isBuilt());
+        Assertions.assertNull(index.search("sword", 0));
+        final long generation = index.beginBuild();
+        // Only one builder at the same time
+        Assertions.assertEquals(-1, index.beginBuild());
+        // Building, but not waiting
+        Assertions.assertNull(index.search("sword", 0));
+        index.finishBuild(generation);
+        Assertions.assertEquals(-1, index.beginBuild());
+        Assertions.assertEquals(setOf(), index.search("sword", 0));
+    }
+
+    @Test
+    public void testRemovedWhileBuilding() {
+        final ShopNameIndex index = new ShopNameIndex();
+        final long generation = index.beginBuild();
+        index.addBuilt(generation, diamondSword, "diamond sword");
+        // Removed after the snapshot taken, before the builder reached it
+        index.remove(ironSword);
+        index.addBuilt(generation, ironSword, "iron sword");
+        index.finishBuild(generation);
+        Assertions.assertEquals(setOf(diamondSword), index.search("sword", 0));
+    }
+
+    @Test
+    public void testInvalidateWhileBuilding() {
+        final ShopNameIndex index = new ShopNameIndex();
+        final long stale = index.beginBuild();
+        index.addBuilt(stale, diamondSword, "diamond sword");
+        index.invalidate();
+        // The stale builder keeps feeding, it must be ignored
+        index.addBuilt(stale, ironSword, "iron sword");
+        index.finishBuild(stale);
+        Assertions.assertFalse(index.isBuilt());
+
+        final long generation = index.beginBuild();
+        Assertions.assertNotEquals(stale, generation);
+        index.addBuilt(generation, ironSword, "iron sword");
+        index.finishBuild(generation);
+        Assertions.assertEquals(setOf(ironSword), index.search("sword", 0));
+        index.invalidate();
+        Assertions.assertNull(index.search("sword", 0));
+    }
+
+    @Test
+    public void testSearchWaitsForBuild() throws Exception {
+        final ShopNameIndex index = new ShopNameIndex();
+        final long generation = index.beginBuild();
+        final CompletableFuture<Set<Shop>> searching = CompletableFuture.supplyAsync(() -> index.search("sword", 10000));
+        index.addBuilt(generation, diamondSword, "diamond sword");
+        index.finishBuild(generation);
+        Assertions.assertEquals(setOf(diamondSword), searching.get(10, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is a part of project QuickShop, the name is LongObjectHashMapTest.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.util.collection;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+public class LongObjectHashMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        final LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertNull(map.put(0L, "zero"));
+        Assertions.assertNull(map.put(-1L, "minus one"));
+        Assertions.assertNull(map.put(Long.MIN_VALUE, "min"));
+        Assertions.assertNull(map.put(Long.MAX_VALUE, "max"));
+        Assertions.assertEquals(4, map.size());
+        Assertions.assertEquals("zero", map.get(0L));
+        Assertions.assertEquals("minus one", map.get(-1L));
+        Assertions.assertEquals("min", map.get(Long.MIN_VALUE));
+        Assertions.assertEquals("max", map.get(Long.MAX_VALUE));
+        Assertions.assertNull(map.get(1L));
+        Assertions.assertFalse(map.containsKey(1L));
+
+        Assertions.assertEquals("zero", map.put(0L, "ZERO"));
+        Assertions.assertEquals(4, map.size());
+        Assertions.assertEquals("ZERO", map.get(0L));
+
+        Assertions.assertEquals("ZERO", map.remove(0L));
+        Assertions.assertNull(map.remove(0L));
+        Assertions.assertNull(map.get(0L));
+        Assertions.assertEquals(3, map.size());
+    }
+
+    @Test
+    public void testNullValue() {
+        final LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        //noinspection ConstantConditions
+        Assertions.assertThrows(NullPointerException.class, () -> map.put(1L, null));
+    }
+
+    @Test
+    public void testSameAsHashMap() {
+        // Random operations on a small key space make long probe chains, resizes and removals in the middle of chains
+        final Random random = new Random(20201018L);
+        final LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+        final Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            final long key = random.nextInt(4096) - 2048L;
+            switch (random.nextInt(3)) {
+                case 0:
+                case 1:
+                    Assertions.assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+                    break;
+                default:
+                    Assertions.assertEquals(expected.remove(key), map.remove(key));
+                    break;
+            }
+            Assertions.assertEquals(expected.size(), map.size());
+        }
+        for (long key = -2048; key < 2048; key++) {
+            Assertions.assertEquals(expected.get(key), map.get(key));
+        }
+        final List<Long> values = new ArrayList<>();
+        map.copyValuesTo(values);
+        final List<Long> iterated = new ArrayList<>();
+        map.forEachValue(iterated::add);
+        Assertions.assertEquals(new HashSet<>(expected.values()), new HashSet<>(values));
+        Assertions.assertEquals(values, iterated);
+    }
+
+    @Test
+    public void testGrowAndClear() {
+        final LongObjectHashMap<Integer> map = new LongObjectHashMap<>(1);
+        for (int i = 0; i < 10000; i++) {
+            map.put(((long) i << 32) | i, i);
+        }
+        Assertions.assertEquals(10000, map.size());
+        for (int i = 0; i < 10000; i++) {
+            Assertions.assertEquals(i, map.get(((long) i << 32) | i));
+        }
+        map.clear();
+        Assertions.assertTrue(map.isEmpty());
+        Assertions.assertNull(map.get(0L));
+        final List<Integer> values = new ArrayList<>();
+        map.copyValuesTo(values);
+        Assertions.assertTrue(values.isEmpty());
+    }
+
+}
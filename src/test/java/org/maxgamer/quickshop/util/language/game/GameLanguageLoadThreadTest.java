@@ -0,0 +1,101 @@
+/*
+ * This file is a part of project QuickShop, the name is GameLanguageLoadThreadTest.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.util.language.game;
+
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.maxgamer.quickshop.util.mojangapi.MojangAPI;
+import org.maxgamer.quickshop.util.mojangapi.MojangMirror;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+public class GameLanguageLoadThreadTest {
+
+    @TempDir
+    Path temp;
+
+    @NotNull
+    private static GameLanguageLoadThread createLoadThread(@NotNull File cacheFolder, @NotNull String serverVersion, @NotNull MojangAPI mojangAPI) {
+        final GameLanguageLoadThread loadThread = new GameLanguageLoadThread();
+        loadThread.setLanguageCode(MojangMirror.LANGUAGE);
+        loadThread.setLogger(Logger.getLogger("GameLanguageLoadThreadTest"));
+        loadThread.setCacheFolder(cacheFolder);
+        loadThread.setServerVersion(serverVersion);
+        loadThread.setMojangAPI(mojangAPI);
+        return loadThread;
+    }
+
+    @Test
+    public void testDownloadThenSwap() throws IOException {
+        final MojangMirror mirror = new MojangMirror(temp.resolve("mirror"));
+        final File cache = Files.createDirectories(temp.resolve("cache")).toFile();
+        final GameLanguageLoadThread loadThread = createLoadThread(cache, MojangMirror.VERSION, mirror.createAPI(cache));
+        // Nothing cached, the Bukkit names are used until the download finished
+        Assertions.assertNull(loadThread.loadFromCache());
+        final AtomicReference<JsonObject> swapped = new AtomicReference<>();
+        loadThread.setOnLoaded(swapped::set);
+        loadThread.run();
+        Assertions.assertNotNull(swapped.get());
+        Assertions.assertEquals("Diamant", swapped.get().get("item.minecraft.diamond").getAsString());
+    }
+
+    @Test
+    public void testCacheHit() throws IOException {
+        final MojangMirror mirror = new MojangMirror(temp.resolve("mirror"));
+        final File cache = Files.createDirectories(temp.resolve("cache")).toFile();
+        createLoadThread(cache, MojangMirror.VERSION, mirror.createAPI(cache)).run();
+
+        // The mirror can't be reached anymore, the language must come from the cache
+        final MojangAPI offline = MojangMirror.createOfflineAPI(cache);
+        final JsonObject cached = createLoadThread(cache, MojangMirror.VERSION, offline).loadFromCache();
+        Assertions.assertNotNull(cached);
+        Assertions.assertEquals("Diamant", cached.get("item.minecraft.diamond").getAsString());
+
+        final GameLanguageLoadThread loadThread = createLoadThread(cache, MojangMirror.VERSION, offline);
+        final AtomicReference<JsonObject> swapped = new AtomicReference<>();
+        loadThread.setOnLoaded(swapped::set);
+        loadThread.run();
+        Assertions.assertNotNull(swapped.get());
+    }
+
+    @Test
+    public void testCacheMissOnServerVersionChanged() throws IOException {
+        final MojangMirror mirror = new MojangMirror(temp.resolve("mirror"));
+        final File cache = Files.createDirectories(temp.resolve("cache")).toFile();
+        createLoadThread(cache, MojangMirror.VERSION, mirror.createAPI(cache)).run();
+        Assertions.assertNull(createLoadThread(cache, "1.16.2", mirror.createAPI(cache)).loadFromCache());
+
+        // The new version is not in the mirror, the download fails and nothing swapped in
+        final GameLanguageLoadThread loadThread = createLoadThread(cache, "1.16.2", mirror.createAPI(cache));
+        final AtomicReference<JsonObject> swapped = new AtomicReference<>();
+        loadThread.setOnLoaded(swapped::set);
+        loadThread.run();
+        Assertions.assertNull(swapped.get());
+    }
+
+}
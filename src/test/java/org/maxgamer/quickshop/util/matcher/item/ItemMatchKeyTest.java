@@ -0,0 +1,71 @@
+/*
+ * This file is a part of project QuickShop, the name is ItemMatchKeyTest.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.util.matcher.item;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ItemMatchKeyTest {
+
+    @BeforeEach
+    public void setUp() {
+        // The item factory is needed to check the ItemMeta
+        MockBukkit.mock();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    @Test
+    public void testMayMatch() {
+        final ItemMatchKey key = new ItemMatchKey(new ItemStack(Material.STONE));
+        Assertions.assertTrue(key.mayMatch(new ItemStack(Material.STONE, 64)));
+        Assertions.assertFalse(key.mayMatch(new ItemStack(Material.DIRT)));
+        Assertions.assertFalse(key.mayMatch(null));
+
+        final ItemStack named = new ItemStack(Material.STONE);
+        final ItemMeta meta = named.getItemMeta();
+        Assertions.assertNotNull(meta);
+        meta.setDisplayName("Named");
+        named.setItemMeta(meta);
+        Assertions.assertFalse(key.mayMatch(named));
+        Assertions.assertTrue(new ItemMatchKey(named).mayMatch(named.clone()));
+    }
+
+    @Test
+    public void testKeyOwnsItsCopy() {
+        final ItemStack stack = new ItemStack(Material.STONE, 16);
+        final ItemMatchKey key = new ItemMatchKey(stack);
+        stack.setAmount(1);
+        stack.setType(Material.DIRT);
+        Assertions.assertEquals(16, key.getStack().getAmount());
+        Assertions.assertEquals(Material.STONE, key.getType());
+        Assertions.assertTrue(key.mayMatch(new ItemStack(Material.STONE)));
+    }
+
+}
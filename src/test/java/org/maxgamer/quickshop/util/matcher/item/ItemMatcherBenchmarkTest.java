@@ -0,0 +1,144 @@
+/*
+ * This file is a part of project QuickShop, the name is ItemMatcherBenchmarkTest.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.util.matcher.item;
+
+import be.seeseemelk.mockbukkit.MockBukkit;
+import org.bukkit.Material;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+/**
+ * Compares the old cloning matches against the ItemMatchKey path when scanning a double chest.
+ */
+public class ItemMatcherBenchmarkTest {
+
+    private static final int SLOTS = 54;
+
+    private static final int WARMUP_ROUNDS = 2_000;
+
+    private static final int ROUNDS = 10_000;
+
+    private QuickShopItemMatcherImpl matcher;
+
+    @BeforeEach
+    public void setUp() {
+        // The item factory is needed to create the ItemMeta
+        MockBukkit.mock();
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("damage", true);
+        config.set("displayname", true);
+        config.set("lores", true);
+        matcher = new QuickShopItemMatcherImpl(null, config, 0);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    @Test
+    public void benchmarkDoubleChestScan() {
+        final ItemStack item = named(Material.DIAMOND_SWORD, "Sword");
+        final ItemStack[] contents = new ItemStack[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            switch (i % 4) {
+                case 0:
+                    contents[i] = item.clone();
+                    break;
+                case 1:
+                    contents[i] = new ItemStack(Material.DIRT, 64);
+                    break;
+                case 2:
+                    contents[i] = named(Material.DIAMOND_SWORD, "Another sword");
+                    break;
+                default:
+                    // Empty slot
+                    break;
+            }
+        }
+        final ItemMatchKey key = new ItemMatchKey(item);
+        Assertions.assertEquals(countByCloning(item, contents), countByKey(key, contents));
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            countByCloning(item, contents);
+            countByKey(key, contents);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            countByCloning(item, contents);
+        }
+        final long cloning = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            countByKey(key, contents);
+        }
+        final long keyed = System.nanoTime() - start;
+        System.out.printf("Scanned %d slots %d times: cloning matches %.2f ms, ItemMatchKey %.2f ms%n",
+                SLOTS, ROUNDS, cloning / 1_000_000.0, keyed / 1_000_000.0);
+    }
+
+    /**
+     * The count before the ItemMatchKey, which clones both stacks for every slot
+     */
+    private int countByCloning(ItemStack item, ItemStack[] contents) {
+        int items = 0;
+        for (ItemStack iStack : contents) {
+            if (iStack == null || iStack.getType() == Material.AIR) {
+                continue;
+            }
+            ItemStack original = item.clone();
+            original.setAmount(1);
+            ItemStack tester = iStack.clone();
+            tester.setAmount(1);
+            if (matcher.matches(original, tester)) {
+                items += iStack.getAmount();
+            }
+        }
+        return items;
+    }
+
+    private int countByKey(ItemMatchKey key, ItemStack[] contents) {
+        int items = 0;
+        for (ItemStack iStack : contents) {
+            if (matcher.matches(key, iStack)) {
+                items += iStack.getAmount();
+            }
+        }
+        return items;
+    }
+
+    private static ItemStack named(Material material, String name) {
+        final ItemStack stack = new ItemStack(material);
+        final ItemMeta meta = stack.getItemMeta();
+        Assertions.assertNotNull(meta);
+        meta.setDisplayName(name);
+        meta.setLore(Collections.singletonList("Benchmark"));
+        stack.setItemMeta(meta);
+        return stack;
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is a part of project QuickShop, the name is MojangAPITest.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.util.mojangapi;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class MojangAPITest {
+
+    @TempDir
+    Path temp;
+
+    @Test
+    public void testAssetIndexFromMirror() throws IOException {
+        final MojangMirror mirror = new MojangMirror(temp.resolve("mirror"));
+        final MojangAPI api = mirror.createAPI(Files.createDirectories(temp.resolve("cache")).toFile());
+        final String assetIndex = api.getAssetIndexJson(MojangMirror.VERSION);
+        Assertions.assertNotNull(assetIndex);
+        Assertions.assertEquals(MojangMirror.LANGUAGE_HASH, new AssetJson(assetIndex).getLanguageHash(MojangMirror.LANGUAGE));
+        Assertions.assertNull(api.getAssetIndexJson("1.0"));
+    }
+
+    @Test
+    public void testDownloadAsset() throws IOException {
+        final MojangMirror mirror = new MojangMirror(temp.resolve("mirror"));
+        final File cache = Files.createDirectories(temp.resolve("cache")).toFile();
+        final MojangAPI api = mirror.createAPI(cache);
+        Assertions.assertEquals(MojangMirror.LANGUAGE_JSON, api.downloadTextFileFromMojang(MojangMirror.LANGUAGE_HASH));
+        final File cached = new File(cache, MojangMirror.LANGUAGE_HASH);
+        Assertions.assertTrue(cached.isFile());
+        Assertions.assertEquals(MojangMirror.LANGUAGE_JSON, new String(Files.readAllBytes(cached.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCachedAssetNotDownloaded() throws IOException {
+        final File cache = Files.createDirectories(temp.resolve("cache")).toFile();
+        Files.write(new File(cache, MojangMirror.LANGUAGE_HASH).toPath(), "{\"cached\": true}".getBytes(StandardCharsets.UTF_8));
+        // The mirror doesn't exist, so it only passes if the cache used
+        final MojangAPI api = MojangMirror.createOfflineAPI(cache);
+        Assertions.assertEquals("{\"cached\": true}", api.downloadTextFileFromMojang(MojangMirror.LANGUAGE_HASH));
+        Assertions.assertThrows(IOException.class, () -> api.downloadTextFileFromMojang("ffffffffffffffffffffffffffffffffffffffff"));
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is a part of project QuickShop, the name is MojangMirror.java
+ * Copyright (C) Ghost_chu <https://github.com/Ghost-chu>
+ * Copyright (C) Bukkit Commons Studio and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.maxgamer.quickshop.util.mojangapi;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Logger;
+
+/**
+ * A local file: mirror of the Mojang launcher meta and assets, with one version and one language
+ */
+public class MojangMirror {
+    public static final String VERSION = "1.16.1";
+
+    public static final String LANGUAGE = "de_de";
+
+    public static final String LANGUAGE_HASH = "0123456789abcdef0123456789abcdef01234567";
+
+    public static final String LANGUAGE_JSON = "{\"item.minecraft.diamond\": \"Diamant\"}";
+
+    private final Path root;
+
+    public MojangMirror(@NotNull Path root) throws IOException {
+        this.root = root;
+        final Path assets = Files.createDirectories(root.resolve("assets").resolve(LANGUAGE_HASH.substring(0, 2)));
+        Files.write(assets.resolve(LANGUAGE_HASH), LANGUAGE_JSON.getBytes(StandardCharsets.UTF_8));
+        final Path assetIndex = write("indexes/1.16.json", "{\"objects\": {\"minecraft/lang/" + LANGUAGE + ".json\": "
+                + "{\"hash\": \"" + LANGUAGE_HASH + "\", \"size\": " + LANGUAGE_JSON.length() + "}}}");
+        final Path versionJson = write(VERSION + ".json", "{\"id\": \"" + VERSION + "\", \"assetIndex\": "
+                + "{\"id\": \"1.16\", \"url\": \"" + assetIndex.toUri() + "\"}}");
+        write("version_manifest.json", "{\"latest\": {\"release\": \"" + VERSION + "\", \"snapshot\": \"" + VERSION + "\"}, "
+                + "\"versions\": [{\"id\": \"" + VERSION + "\", \"type\": \"release\", \"url\": \"" + versionJson.toUri() + "\", "
+                + "\"time\": \"2020-06-24T10:31:40+00:00\", \"releaseTime\": \"2020-06-24T10:31:40+00:00\"}]}");
+    }
+
+    @NotNull
+    private Path write(@NotNull String path, @NotNull String content) throws IOException {
+        final Path file = root.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    /**
+     * Create the MojangAPI reads this mirror
+     *
+     * @param cacheFolder The folder to cache the assets
+     * @return The MojangAPI
+     */
+    @NotNull
+    public MojangAPI createAPI(@NotNull File cacheFolder) {
+        return new MojangAPI(Logger.getLogger("MojangMirror"), cacheFolder,
+                root.resolve("version_manifest.json").toUri().toString(), root.resolve("assets").toUri().toString());
+    }
+
+    /**
+     * Create the MojangAPI reads a mirror which doesn't exist, every download fails
+     *
+     * @param cacheFolder The folder to cache the assets
+     * @return The MojangAPI
+     */
+    @NotNull
+    public static MojangAPI createOfflineAPI(@NotNull File cacheFolder) {
+        final File missing = new File(cacheFolder, "missing-mirror");
+        return new MojangAPI(Logger.getLogger("MojangMirror"), cacheFolder,
+                new File(missing, "version_manifest.json").toURI().toString(), missing.toURI() + "/");
+    }
+
+}